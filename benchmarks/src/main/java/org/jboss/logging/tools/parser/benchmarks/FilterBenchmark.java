@@ -0,0 +1,112 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.logging.tools.parser.CategoryFilter;
+import org.jboss.logging.tools.parser.DateTimeFilter;
+import org.jboss.logging.tools.parser.Filter;
+import org.jboss.logging.tools.parser.LevelFilter;
+import org.jboss.logging.tools.parser.LogResult;
+import org.jboss.logging.tools.parser.LogResultHandler;
+import org.jboss.logging.tools.parser.Parser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the cost of each filter. The {@code none} filter is the baseline to compare the other filters with.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FilterBenchmark {
+
+    @Param({"server", "full-date", "console"})
+    public String pattern;
+
+    @Param({"10000", "100000"})
+    public int records;
+
+    @Param({"none", "level", "category", "datetime"})
+    public String filter;
+
+    private byte[] corpus;
+    private int lines;
+    private Parser parser;
+
+    @Setup
+    public void setup() {
+        corpus = new LogGenerator(LogGenerator.pattern(pattern), 42L, 100).generate(records);
+        lines = ParserBenchmark.countLines(corpus);
+        parser = Parser.of(LogGenerator.pattern(pattern));
+        final Filter f = createFilter(filter);
+        if (f != null) {
+            parser.addFilter(f);
+        }
+    }
+
+    @Benchmark
+    public void parse(final ParserBenchmark.Throughput throughput, final Blackhole blackhole) throws IOException {
+        parser.parse(new ByteArrayInputStream(corpus), new LogResultHandler() {
+            @Override
+            public boolean handle(final LogResult result) {
+                blackhole.consume(result);
+                return true;
+            }
+        });
+        throughput.lines += lines;
+        throughput.bytes += corpus.length;
+    }
+
+    static Filter createFilter(final String name) {
+        if ("level".equals(name)) {
+            return new LevelFilter(org.jboss.logmanager.Level.WARN);
+        } else if ("category".equals(name)) {
+            return new CategoryFilter("org.jboss.jca");
+        } else if ("datetime".equals(name)) {
+            // Roughly the first 10% of a 100000 record corpus
+            final long start = LogGenerator.START_TIME + 60000L;
+            return new DateTimeFilter(new Date(start), new Date(start + 20L * 60000L));
+        }
+        return null;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.logging.Level;
+
+import org.jboss.logmanager.ExtLogRecord;
+import org.jboss.logmanager.formatters.PatternFormatter;
+
+/**
+ * Generates log output that looks like a JBoss AS server log. The output is written with a {@link PatternFormatter}
+ * so any format pattern can be used.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class LogGenerator {
+
+    /**
+     * The pattern for the JBoss AS server.log file.
+     */
+    public static final String SERVER_LOG_PATTERN = "%d{HH:mm:ss,SSS} %-5p [%c] (%t) %s%E%n";
+
+    /**
+     * The server.log pattern with the full date.
+     */
+    public static final String FULL_DATE_PATTERN = "%d{yyyy-MM-dd HH:mm:ss,SSS} %-5p [%c] (%t) %s%E%n";
+
+    /**
+     * The pattern for the JBoss AS console.
+     */
+    public static final String CONSOLE_PATTERN = "%d{HH:mm:ss,SSS} %-5p [%c] %s%E%n";
+
+    /**
+     * The time the first record is logged at, 2012-07-26 04:00:00 local time.
+     */
+    public static final long START_TIME;
+
+    static {
+        final java.util.Calendar calendar = java.util.Calendar.getInstance();
+        calendar.clear();
+        calendar.set(2012, java.util.Calendar.JULY, 26, 4, 0, 0);
+        START_TIME = calendar.getTimeInMillis();
+    }
+
+    /**
+     * Returns the format pattern for a name used in a benchmark parameter. The patterns themselves can't be used as
+     * parameters as they may contain commas.
+     *
+     * @param name the name of the pattern, {@code server}, {@code full-date} or {@code console}
+     *
+     * @return the format pattern
+     */
+    public static String pattern(final String name) {
+        if ("server".equals(name)) {
+            return SERVER_LOG_PATTERN;
+        } else if ("full-date".equals(name)) {
+            return FULL_DATE_PATTERN;
+        } else if ("console".equals(name)) {
+            return CONSOLE_PATTERN;
+        }
+        throw new IllegalArgumentException("Unknown pattern: " + name);
+    }
+
+    private static final String[] CATEGORIES = {
+            "org.jboss.as.server",
+            "org.jboss.as.server.deployment",
+            "org.jboss.as.connector.deployers.jdbc",
+            "org.jboss.as.ejb3",
+            "org.jboss.as.messaging",
+            "org.jboss.as.naming",
+            "org.jboss.as.weld",
+            "org.jboss.jca.core.connectionmanager.pool.strategy.OnePool",
+            "org.jboss.jca.core.connectionmanager.listener.TxConnectionListener",
+            "org.jboss.jca.core.api.connectionmanager.ccm.CachedConnectionManager",
+            "org.hornetq.core.server",
+            "org.hibernate.SQL",
+            "org.apache.catalina.core.ContainerBase",
+            "com.arjuna.ats.arjuna",
+            "org.example.app.OrderService",
+    };
+
+    private static final String[] THREADS = {
+            "MSC service thread 1-1",
+            "MSC service thread 1-4",
+            "ServerService Thread Pool -- 51",
+            "default-workqueue-9",
+            "default-workqueue-13",
+            "http--127.0.0.1-8080-1",
+            "http--127.0.0.1-8080-7",
+            "Thread-11 (HornetQ-client-global-threads-1032423179)",
+            "Periodic Recovery",
+    };
+
+    private static final String[] MESSAGES = {
+            "JBAS015876: Starting deployment of \"app-%d.war\"",
+            "JBAS010400: Bound data source [java:jboss/datasources/DS%d]",
+            "JBAS018210: Registering web context: /app%d",
+            "Returning connection to pool org.jboss.jca.core.connectionmanager.listener.TxConnectionListener@%x[state=NORMAL]",
+            "connectionClosed called mc=org.jboss.jca.adapters.jdbc.xa.XAManagedConnection@%x",
+            "unregisterConnection: %d handles left",
+            "select order0_.id as id1_0_ from ORDERS order0_ where order0_.customer_id=%d",
+            "HQ221000: live server is starting with configuration HornetQ Configuration (clustered=false,journalType=ASYNCIO)",
+            "Processing order %d for customer %d",
+            "ARJUNA012170: TransactionStatusManager started on port %d",
+    };
+
+    private final PatternFormatter formatter;
+    private final Random random;
+    private final int exceptionFrequency;
+
+    /**
+     * Creates a new generator.
+     *
+     * @param pattern            the format pattern to write the records with
+     * @param seed               the seed for the random values
+     * @param exceptionFrequency log an exception on 1 out of this many records, 0 for no exceptions
+     */
+    public LogGenerator(final String pattern, final long seed, final int exceptionFrequency) {
+        formatter = new PatternFormatter(pattern);
+        random = new Random(seed);
+        this.exceptionFrequency = exceptionFrequency;
+    }
+
+    /**
+     * Generates the log output.
+     *
+     * @param records the number of records to write
+     *
+     * @return the log output
+     */
+    public byte[] generate(final int records) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(records * 160);
+        long time = START_TIME;
+        try {
+            for (int i = 0; i < records; i++) {
+                time += random.nextInt(250);
+                out.write(formatter.format(createRecord(time)).getBytes());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private ExtLogRecord createRecord(final long time) {
+        final ExtLogRecord record = new ExtLogRecord(level(), message(), LogGenerator.class.getName());
+        record.setLoggerName(CATEGORIES[random.nextInt(CATEGORIES.length)]);
+        record.setThreadName(THREADS[random.nextInt(THREADS.length)]);
+        record.setMillis(time);
+        if (exceptionFrequency > 0 && random.nextInt(exceptionFrequency) == 0) {
+            record.setThrown(new IllegalStateException("Failed to process order " + random.nextInt(100000)));
+        }
+        return record;
+    }
+
+    private Level level() {
+        final int n = random.nextInt(100);
+        if (n < 40) return org.jboss.logmanager.Level.TRACE;
+        if (n < 70) return org.jboss.logmanager.Level.DEBUG;
+        if (n < 95) return org.jboss.logmanager.Level.INFO;
+        if (n < 99) return org.jboss.logmanager.Level.WARN;
+        return org.jboss.logmanager.Level.ERROR;
+    }
+
+    private String message() {
+        final String message = MESSAGES[random.nextInt(MESSAGES.length)];
+        return message.replace("%d", Integer.toString(random.nextInt(10000)))
+                .replace("%x", Integer.toHexString(random.nextInt()));
+    }
+}
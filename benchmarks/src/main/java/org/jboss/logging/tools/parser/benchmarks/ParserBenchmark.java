@@ -0,0 +1,138 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.logging.tools.parser.LogFormat;
+import org.jboss.logging.tools.parser.LogResult;
+import org.jboss.logging.tools.parser.LogResultHandler;
+import org.jboss.logging.tools.parser.Parser;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the cost of compiling a format pattern and the throughput of parsing.
+ * <p/>
+ * The {@code compile} benchmark compiles the pattern each time, the {@code cachedFormat} benchmark creates a parser for
+ * a pattern found in the cache of compiled formats.
+ * <p/>
+ * The {@code lines} and {@code bytes} secondary results are the lines and bytes parsed per second. Run with {@code
+ * -prof gc} and divide {@code gc.alloc.rate.norm} by the number of records to get the allocation per record.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+    @Param({"server", "full-date", "console"})
+    public String pattern;
+
+    @Param({"1000", "100000"})
+    public int records;
+
+    // Log an exception on 1 out of this many records, 0 for none
+    @Param({"0", "100", "5"})
+    public int exceptionFrequency;
+
+    private String formatPattern;
+    private byte[] corpus;
+    private int lines;
+    private Parser parser;
+
+    @Setup
+    public void setup() {
+        formatPattern = LogGenerator.pattern(pattern);
+        corpus = new LogGenerator(formatPattern, 42L, exceptionFrequency).generate(records);
+        lines = countLines(corpus);
+        parser = Parser.of(formatPattern);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Parser compile() {
+        return Parser.of(LogFormat.compile(formatPattern));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Parser cachedFormat() {
+        return Parser.of(formatPattern);
+    }
+
+    @Benchmark
+    public void parse(final Throughput throughput, final Blackhole blackhole) throws IOException {
+        parser.parse(new ByteArrayInputStream(corpus), new LogResultHandler() {
+            @Override
+            public boolean handle(final LogResult result) {
+                blackhole.consume(result);
+                return true;
+            }
+        });
+        throughput.lines += lines;
+        throughput.bytes += corpus.length;
+    }
+
+    static int countLines(final byte[] corpus) {
+        int lines = 0;
+        for (byte b : corpus) {
+            if (b == '\n') lines++;
+        }
+        return lines;
+    }
+
+    /**
+     * The lines and bytes parsed, reported as a rate.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+        public long lines;
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            lines = 0;
+            bytes = 0;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A growable buffer of bytes written and read as variable length integers and strings, used to encode the blocks of
+ * a {@link ResultFile}.
+ * <p/>
+ * Integers are written 7 bits at a time, the lowest bits first, with the high bit of each byte set if more bytes
+ * follow. Signed values are zig-zag encoded so small negative values are also short.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+class BlockBuffer {
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private byte[] bytes;
+    private int length;
+    private int position;
+
+    BlockBuffer(final int capacity) {
+        bytes = new byte[capacity];
+    }
+
+    BlockBuffer(final byte[] bytes, final int length) {
+        this.bytes = bytes;
+        this.length = length;
+    }
+
+    byte[] array() {
+        return bytes;
+    }
+
+    int length() {
+        return length;
+    }
+
+    void clear() {
+        length = 0;
+        position = 0;
+    }
+
+    void writeByte(final int b) {
+        ensureCapacity(1);
+        bytes[length++] = (byte) b;
+    }
+
+    void writeVarLong(final long value) {
+        ensureCapacity(10);
+        long v = value;
+        while ((v & ~0x7FL) != 0L) {
+            bytes[length++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        bytes[length++] = (byte) v;
+    }
+
+    void writeVarInt(final int value) {
+        writeVarLong(value & 0xFFFFFFFFL);
+    }
+
+    void writeSignedVarLong(final long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    void writeString(final String value) {
+        final byte[] encoded = value.getBytes(UTF_8);
+        writeVarInt(encoded.length);
+        ensureCapacity(encoded.length);
+        System.arraycopy(encoded, 0, bytes, length, encoded.length);
+        length += encoded.length;
+    }
+
+    int readByte() {
+        return bytes[position++] & 0xFF;
+    }
+
+    long readVarLong() {
+        long result = 0L;
+        int shift = 0;
+        byte b;
+        do {
+            b = bytes[position++];
+            result |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return result;
+    }
+
+    int readVarInt() {
+        return (int) readVarLong();
+    }
+
+    long readSignedVarLong() {
+        final long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1L);
+    }
+
+    /**
+     * Skips bytes.
+     *
+     * @param n the number of bytes to skip
+     *
+     * @return the position of the first byte skipped
+     */
+    int skip(final int n) {
+        final int result = position;
+        position += n;
+        return result;
+    }
+
+    String readString() {
+        final int n = readVarInt();
+        final String result = new String(bytes, position, n, UTF_8);
+        position += n;
+        return result;
+    }
+
+    private void ensureCapacity(final int n) {
+        if (length + n > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(length + n, bytes.length * 2));
+        }
+    }
+}
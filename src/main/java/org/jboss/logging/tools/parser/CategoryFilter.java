@@ -22,13 +22,27 @@
 
 package org.jboss.logging.tools.parser;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
 /**
  * Filters out records that don't start with category started.
+ * <p/>
+ * A filter can have any number of included and excluded prefixes. The longest prefix the category starts with decides
+ * whether the record is accepted, an excluded prefix wins over the same included prefix. If the category does not
+ * start with any of the prefixes the record is only accepted if there are no included prefixes. The prefixes are
+ * stored in a trie so checking a category costs the same however many prefixes there are.
  *
  * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
  */
 public class CategoryFilter implements Filter {
-    private final String category;
+    private static final byte NONE = 0;
+    private static final byte INCLUDE = 1;
+    private static final byte EXCLUDE = 2;
+
+    private final Node root;
+    private final boolean acceptUnmatched;
 
     /**
      * Creates a new category filter.
@@ -36,16 +50,112 @@ public class CategoryFilter implements Filter {
      * @param category the category the log record must start with
      */
     public CategoryFilter(final String category) {
-        this.category = category;
+        this(Collections.singleton(category), Collections.<String>emptySet());
+    }
+
+    /**
+     * Creates a new category filter.
+     *
+     * @param includes the prefixes of the categories to accept, if empty all categories not excluded are accepted
+     * @param excludes the prefixes of the categories to filter out
+     */
+    public CategoryFilter(final Collection<String> includes, final Collection<String> excludes) {
+        root = new Node();
+        for (String include : includes) {
+            root.add(include, 0, INCLUDE);
+        }
+        for (String exclude : excludes) {
+            root.add(exclude, 0, EXCLUDE);
+        }
+        root.compress();
+        acceptUnmatched = includes.isEmpty();
     }
 
     @Override
     public boolean accept(final FormatPart formatPart, final String value) {
-        return value.startsWith(category);
+        byte decision = root.decision;
+        Node node = root;
+        final int len = value.length();
+        int i = 0;
+        while (i < len) {
+            final int pos = node.find(value.charAt(i));
+            if (pos < 0) {
+                break;
+            }
+            final String label = node.labels[pos];
+            if (!value.regionMatches(i, label, 0, label.length())) {
+                break;
+            }
+            i += label.length();
+            node = node.children[pos];
+            if (node.decision != NONE) {
+                decision = node.decision;
+            }
+        }
+        return (decision == NONE ? acceptUnmatched : decision == INCLUDE);
     }
 
     @Override
     public boolean allowType(final FormatType formatType) {
         return formatType == FormatType.CATEGORY;
     }
+
+    /**
+     * A node of the trie. Once built the trie is compressed so each edge is labelled with the characters of a chain of
+     * nodes with a single child and no decision.
+     */
+    private static class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private String[] labels;
+        private byte decision;
+
+        void add(final String prefix, final int index, final byte decision) {
+            if (index == prefix.length()) {
+                if (this.decision != EXCLUDE) {
+                    this.decision = decision;
+                }
+                return;
+            }
+            final char c = prefix.charAt(index);
+            int pos = Arrays.binarySearch(keys, c);
+            if (pos < 0) {
+                pos = -(pos + 1);
+                final char[] newKeys = new char[keys.length + 1];
+                final Node[] newChildren = new Node[children.length + 1];
+                System.arraycopy(keys, 0, newKeys, 0, pos);
+                System.arraycopy(children, 0, newChildren, 0, pos);
+                newKeys[pos] = c;
+                newChildren[pos] = new Node();
+                System.arraycopy(keys, pos, newKeys, pos + 1, keys.length - pos);
+                System.arraycopy(children, pos, newChildren, pos + 1, children.length - pos);
+                keys = newKeys;
+                children = newChildren;
+            }
+            children[pos].add(prefix, index + 1, decision);
+        }
+
+        void compress() {
+            labels = new String[children.length];
+            for (int i = 0; i < children.length; i++) {
+                final StringBuilder label = new StringBuilder().append(keys[i]);
+                Node child = children[i];
+                while (child.decision == NONE && child.children.length == 1) {
+                    label.append(child.keys[0]);
+                    child = child.children[0];
+                }
+                labels[i] = label.toString();
+                children[i] = child;
+                child.compress();
+            }
+        }
+
+        int find(final char c) {
+            // Most nodes have a single child
+            if (keys.length == 1) {
+                return (keys[0] == c ? 0 : -1);
+            }
+            return Arrays.binarySearch(keys, c);
+        }
+    }
 }
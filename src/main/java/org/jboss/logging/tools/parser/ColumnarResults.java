@@ -0,0 +1,433 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Stores log results in columns rather than as objects, which takes a lot less memory for a large number of results.
+ * <p/>
+ * The text of each result is stored in a shared character arena. Each format part is a column: the values of the
+ * format types with few distinct values are stored as int codes into a dictionary per column, the other values as the
+ * bounds of the value in the text. The date of each result is also stored as a timestamp. The results are returned as
+ * {@link LogResult} views of a row.
+ * <p/>
+ * Pass the results to the store by using it as the {@link LogResultHandler} of a parse, for example {@link
+ * Parser#parse(java.io.File, LogResultHandler)}. The store is not thread-safe.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class ColumnarResults implements LogResultHandler, Iterable<LogResult> {
+
+    /**
+     * The timestamp of a row whose date could not be parsed.
+     */
+    public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private static final int PAGE_SIZE = 1 << 20;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final FormatPart[] columns;
+    private final boolean[] coded;
+    // Either the dictionary code or the start and end of the value in the text, for each row
+    private final int[][] columnData;
+    private final List<List<String>> dictionaries;
+    private final List<Map<String, Integer>> codes;
+    private final int dateColumn;
+    private final SimpleDateFormat dateFormat;
+    private final List<char[]> pages;
+    // Rows whose values are not ranges of the text
+    private final Map<Integer, List<LogRecordPart>> overflow;
+    private int[] lineNumbers;
+    private long[] textAddresses;
+    private int[] textLengths;
+    private long[] timestamps;
+    private int size;
+    private int pagePosition;
+
+    /**
+     * Creates a store for the results of the parser.
+     *
+     * @param parser the parser
+     */
+    public ColumnarResults(final Parser parser) {
+        final int columnCount = parser.getGroupCount();
+        columns = new FormatPart[columnCount];
+        coded = new boolean[columnCount];
+        columnData = new int[columnCount][];
+        dictionaries = new ArrayList<List<String>>(columnCount);
+        codes = new ArrayList<Map<String, Integer>>(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            columns[i] = parser.getGroup(i);
+            coded[i] = ValueDictionary.isDictionaryType(columns[i].getFormatType());
+            columnData[i] = new int[coded[i] ? INITIAL_CAPACITY : INITIAL_CAPACITY * 2];
+            dictionaries.add(coded[i] ? new ArrayList<String>() : null);
+            codes.add(coded[i] ? new HashMap<String, Integer>() : null);
+        }
+        dateColumn = parser.findGroup(FormatType.DATE);
+        if (dateColumn >= 0) {
+            final String pattern = columns[dateColumn].getArgument();
+            dateFormat = new SimpleDateFormat(pattern == null ? FormatTokenizer.DEFAULT_DATE_PATTERN : pattern);
+            timestamps = new long[INITIAL_CAPACITY];
+        } else {
+            dateFormat = null;
+        }
+        pages = new ArrayList<char[]>();
+        overflow = new HashMap<Integer, List<LogRecordPart>>();
+        lineNumbers = new int[INITIAL_CAPACITY];
+        textAddresses = new long[INITIAL_CAPACITY];
+        textLengths = new int[INITIAL_CAPACITY];
+    }
+
+    @Override
+    public boolean handle(final LogResult result) {
+        add(result);
+        return true;
+    }
+
+    /**
+     * Adds a result.
+     *
+     * @param result the result to add
+     */
+    public void add(final LogResult result) {
+        final int row = size;
+        ensureCapacity(row + 1);
+        final String text = result.getText();
+        lineNumbers[row] = result.getLineNumber();
+        textAddresses[row] = store(text);
+        textLengths[row] = text.length();
+        int[] bounds = null;
+        if (result.getPartCount() == columns.length) {
+            bounds = result.getBounds();
+            if (bounds == null) {
+                bounds = locate(result, text);
+            }
+        }
+        if (bounds == null) {
+            overflow.put(row, new ArrayList<LogRecordPart>(result.getFormatParts()));
+        }
+        for (int i = 0; i < columns.length; i++) {
+            if (coded[i]) {
+                columnData[i][row] = (bounds == null ? -1 : code(i, result.getValue(i)));
+            } else {
+                columnData[i][row * 2] = (bounds == null ? 0 : bounds[i * 2]);
+                columnData[i][row * 2 + 1] = (bounds == null ? 0 : bounds[i * 2 + 1]);
+            }
+        }
+        if (timestamps != null) {
+            timestamps[row] = (bounds == null ? NO_TIMESTAMP : parseTimestamp(result.getValue(dateColumn)));
+        }
+        size++;
+    }
+
+    /**
+     * The number of rows.
+     *
+     * @return the number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The number of columns, one for each format part with a value.
+     *
+     * @return the number of columns
+     */
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    /**
+     * Returns the format part of a column.
+     *
+     * @param column the column
+     *
+     * @return the format part
+     */
+    public FormatPart getColumn(final int column) {
+        return columns[column];
+    }
+
+    /**
+     * Returns a view of a row.
+     *
+     * @param row the row
+     *
+     * @return the result
+     */
+    public LogResult get(final int row) {
+        checkRow(row);
+        return new Row(row);
+    }
+
+    /**
+     * Returns the line number of a row.
+     *
+     * @param row the row
+     *
+     * @return the line number
+     */
+    public int getLineNumber(final int row) {
+        checkRow(row);
+        return lineNumbers[row];
+    }
+
+    /**
+     * Returns the text of a row.
+     *
+     * @param row the row
+     *
+     * @return the text
+     */
+    public String getText(final int row) {
+        checkRow(row);
+        final long address = textAddresses[row];
+        return new String(pages.get((int) (address >>> 32)), (int) address, textLengths[row]);
+    }
+
+    /**
+     * Returns a value of a row.
+     *
+     * @param row    the row
+     * @param column the column
+     *
+     * @return the value
+     */
+    public String getValue(final int row, final int column) {
+        checkRow(row);
+        return value(row, column, null);
+    }
+
+    /**
+     * Returns the dictionary code of a value. Rows with the same value in a column have the same code.
+     *
+     * @param row    the row
+     * @param column the column
+     *
+     * @return the code or -1 if the values of the column are not coded
+     */
+    public int getCode(final int row, final int column) {
+        checkRow(row);
+        return (coded[column] ? columnData[column][row] : -1);
+    }
+
+    /**
+     * Returns the values of the dictionary of a column, the index of a value being its code.
+     *
+     * @param column the column
+     *
+     * @return the values or an empty list if the values of the column are not coded
+     */
+    public List<String> getDictionary(final int column) {
+        final List<String> dictionary = dictionaries.get(column);
+        return (dictionary == null ? Collections.<String>emptyList() : Collections.unmodifiableList(dictionary));
+    }
+
+    /**
+     * Returns the date of a row in milliseconds. Only the fields in the date pattern are used, a date written without
+     * the day is on the 1st of January 1970.
+     *
+     * @param row the row
+     *
+     * @return the timestamp or {@link #NO_TIMESTAMP} if the format has no date or the date could not be parsed
+     */
+    public long getTimestamp(final int row) {
+        checkRow(row);
+        return (timestamps == null ? NO_TIMESTAMP : timestamps[row]);
+    }
+
+    @Override
+    public Iterator<LogResult> iterator() {
+        return new Iterator<LogResult>() {
+            private int row;
+
+            @Override
+            public boolean hasNext() {
+                return row < size;
+            }
+
+            @Override
+            public LogResult next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return new Row(row++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private String value(final int row, final int column, final String text) {
+        final List<LogRecordPart> parts = overflow.get(row);
+        if (parts != null) {
+            return parts.get(column).getValue();
+        }
+        if (coded[column]) {
+            return dictionaries.get(column).get(columnData[column][row]);
+        }
+        final int start = columnData[column][row * 2];
+        final int end = columnData[column][row * 2 + 1];
+        if (text != null) {
+            return text.substring(start, end);
+        }
+        final long address = textAddresses[row];
+        return new String(pages.get((int) (address >>> 32)), (int) address + start, end - start);
+    }
+
+    private int code(final int column, final String value) {
+        final Map<String, Integer> columnCodes = codes.get(column);
+        Integer code = columnCodes.get(value);
+        if (code == null) {
+            final List<String> dictionary = dictionaries.get(column);
+            code = dictionary.size();
+            dictionary.add(value);
+            columnCodes.put(value, code);
+        }
+        return code;
+    }
+
+    private long parseTimestamp(final String value) {
+        final Date date = dateFormat.parse(value, new ParsePosition(0));
+        return (date == null ? NO_TIMESTAMP : date.getTime());
+    }
+
+    /**
+     * Finds the bounds of the values of a result whose parts have been created, searching the text in order.
+     *
+     * @return the bounds or {@code null} if a value is not in the text
+     */
+    private int[] locate(final LogResult result, final String text) {
+        final int[] bounds = new int[columns.length * 2];
+        int position = 0;
+        for (int i = 0; i < columns.length; i++) {
+            final String value = result.getValue(i);
+            final int start = text.indexOf(value, position);
+            if (start < 0) {
+                return null;
+            }
+            bounds[i * 2] = start;
+            bounds[i * 2 + 1] = start + value.length();
+            position = start + value.length();
+        }
+        return bounds;
+    }
+
+    /**
+     * Copies the text to the arena.
+     *
+     * @return the page in the high 32 bits and the offset in the page in the low 32 bits
+     */
+    private long store(final String text) {
+        final int len = text.length();
+        char[] page = (pages.isEmpty() ? null : pages.get(pages.size() - 1));
+        if (page == null || pagePosition + len > page.length) {
+            page = new char[Math.max(PAGE_SIZE, len)];
+            pages.add(page);
+            pagePosition = 0;
+        }
+        text.getChars(0, len, page, pagePosition);
+        final long address = ((long) (pages.size() - 1) << 32) | pagePosition;
+        pagePosition += len;
+        return address;
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (capacity <= lineNumbers.length) {
+            return;
+        }
+        final int newCapacity = Math.max(capacity, lineNumbers.length + (lineNumbers.length >> 1));
+        lineNumbers = Arrays.copyOf(lineNumbers, newCapacity);
+        textAddresses = Arrays.copyOf(textAddresses, newCapacity);
+        textLengths = Arrays.copyOf(textLengths, newCapacity);
+        if (timestamps != null) {
+            timestamps = Arrays.copyOf(timestamps, newCapacity);
+        }
+        for (int i = 0; i < columns.length; i++) {
+            columnData[i] = Arrays.copyOf(columnData[i], coded[i] ? newCapacity : newCapacity * 2);
+        }
+    }
+
+    private void checkRow(final int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException(String.format("Row %d is not between 0 and %d", row, size));
+        }
+    }
+
+    /**
+     * A view of a row.
+     */
+    private class Row extends LogResult {
+        private final int row;
+
+        Row(final int row) {
+            super(0, Collections.<LogRecordPart>emptyList(), null);
+            this.row = row;
+        }
+
+        @Override
+        public int getLineNumber() {
+            return lineNumbers[row];
+        }
+
+        @Override
+        public String getText() {
+            return ColumnarResults.this.getText(row);
+        }
+
+        @Override
+        public List<LogRecordPart> getFormatParts() {
+            final String text = getText();
+            final List<LogRecordPart> parts = new ArrayList<LogRecordPart>(columns.length);
+            for (int i = 0; i < columns.length; i++) {
+                parts.add(new LogRecordPart(columns[i].getFormatType(), value(row, i, text)));
+            }
+            return Collections.unmodifiableList(parts);
+        }
+
+        @Override
+        String getValue(final int index) {
+            return value(row, index, null);
+        }
+
+        @Override
+        int getPartCount() {
+            return columns.length;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.util.Arrays;
+
+/**
+ * A hash table of counters keyed by a time and a fixed number of values. The entries are stored in parallel arrays
+ * and looked up without creating a key, so counting a value already in the table does not allocate.
+ * <p/>
+ * If the table has a maximum size, once it is full a new key replaces the key with the lowest count, which is kept as
+ * the error of the count of the new key. This is the Space-Saving algorithm, the keys with the highest counts are kept
+ * and no count is under estimated. The entries of a table with a maximum size are kept in a min-heap ordered by count,
+ * so the key with the lowest count is found, and a count updated, in logarithmic time.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+class CounterTable {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int width;
+    private final int maxSize;
+    private long[] times;
+    private String[] values;
+    private long[] counts;
+    private long[] errors;
+    private int[] next;
+    // The index of the first entry in each bucket plus one, 0 for an empty bucket
+    private int[] heads;
+    // The entries ordered by count and the index of each entry in the heap, only used if there is a maximum size
+    private int[] heap;
+    private int[] heapIndexes;
+    private int size;
+
+    CounterTable(final int width, final int maxSize) {
+        this.width = width;
+        this.maxSize = maxSize;
+        final int capacity = (maxSize > 0 ? Math.min(maxSize, INITIAL_CAPACITY) : INITIAL_CAPACITY);
+        times = new long[capacity];
+        values = new String[capacity * width];
+        counts = new long[capacity];
+        errors = new long[capacity];
+        next = new int[capacity];
+        heads = new int[tableSize(capacity)];
+        if (maxSize > 0) {
+            heap = new int[capacity];
+            heapIndexes = new int[capacity];
+        }
+    }
+
+    /**
+     * Adds to the count of a key.
+     *
+     * @param time  the time of the key
+     * @param key   the values of the key, copied if the key is added to the table
+     * @param count the count to add
+     * @param error the error of the count to add
+     */
+    void add(final long time, final String[] key, final long count, final long error) {
+        final int hash = hash(time, key, 0);
+        final int bucket = hash & (heads.length - 1);
+        for (int entry = heads[bucket] - 1; entry >= 0; entry = next[entry] - 1) {
+            if (times[entry] == time && matches(entry, key)) {
+                counts[entry] += count;
+                errors[entry] += error;
+                if (heap != null) {
+                    siftDown(heapIndexes[entry]);
+                }
+                return;
+            }
+        }
+        if (maxSize <= 0 || size < maxSize) {
+            if (size == counts.length) {
+                grow();
+            }
+            final int entry = size++;
+            set(entry, time, key);
+            counts[entry] = count;
+            errors[entry] = error;
+            link(entry);
+            if (heap != null) {
+                heap[entry] = entry;
+                heapIndexes[entry] = entry;
+                siftUp(entry);
+            }
+        } else {
+            // Replace the key with the lowest count
+            final int min = heap[0];
+            unlink(min);
+            final long minCount = counts[min];
+            set(min, time, key);
+            counts[min] = minCount + count;
+            errors[min] = minCount + error;
+            link(min);
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Adds the counts of another table with the same width.
+     *
+     * @param other the other table
+     */
+    void addAll(final CounterTable other) {
+        final String[] key = new String[width];
+        for (int i = 0; i < other.size; i++) {
+            System.arraycopy(other.values, i * width, key, 0, width);
+            add(other.times[i], key, other.counts[i], other.errors[i]);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    long getTime(final int entry) {
+        return times[entry];
+    }
+
+    String getValue(final int entry, final int index) {
+        return values[entry * width + index];
+    }
+
+    long getCount(final int entry) {
+        return counts[entry];
+    }
+
+    long getError(final int entry) {
+        return errors[entry];
+    }
+
+    private boolean matches(final int entry, final String[] key) {
+        final int base = entry * width;
+        for (int i = 0; i < width; i++) {
+            final String value = values[base + i];
+            final String other = key[i];
+            if (value != other && (value == null || !value.equals(other))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void set(final int entry, final long time, final String[] key) {
+        times[entry] = time;
+        System.arraycopy(key, 0, values, entry * width, width);
+    }
+
+    private void link(final int entry) {
+        final int bucket = hash(times[entry], values, entry * width) & (heads.length - 1);
+        next[entry] = heads[bucket];
+        heads[bucket] = entry + 1;
+    }
+
+    private void unlink(final int entry) {
+        final int bucket = hash(times[entry], values, entry * width) & (heads.length - 1);
+        if (heads[bucket] == entry + 1) {
+            heads[bucket] = next[entry];
+            return;
+        }
+        for (int e = heads[bucket] - 1; e >= 0; e = next[e] - 1) {
+            if (next[e] == entry + 1) {
+                next[e] = next[entry];
+                return;
+            }
+        }
+    }
+
+    private void grow() {
+        final int capacity = (maxSize > 0 ? Math.min(maxSize, counts.length * 2) : counts.length * 2);
+        times = Arrays.copyOf(times, capacity);
+        values = Arrays.copyOf(values, capacity * width);
+        counts = Arrays.copyOf(counts, capacity);
+        errors = Arrays.copyOf(errors, capacity);
+        next = new int[capacity];
+        heads = new int[tableSize(capacity)];
+        for (int i = 0; i < size; i++) {
+            link(i);
+        }
+        if (heap != null) {
+            heap = Arrays.copyOf(heap, capacity);
+            heapIndexes = Arrays.copyOf(heapIndexes, capacity);
+        }
+    }
+
+    private void siftUp(int index) {
+        final int entry = heap[index];
+        while (index > 0) {
+            final int parent = (index - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[entry]) {
+                break;
+            }
+            move(heap[parent], index);
+            index = parent;
+        }
+        move(entry, index);
+    }
+
+    private void siftDown(int index) {
+        final int entry = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) {
+                child++;
+            }
+            if (counts[entry] <= counts[heap[child]]) {
+                break;
+            }
+            move(heap[child], index);
+            index = child;
+        }
+        move(entry, index);
+    }
+
+    private void move(final int entry, final int index) {
+        heap[index] = entry;
+        heapIndexes[entry] = index;
+    }
+
+    private int hash(final long time, final String[] key, final int offset) {
+        int h = (int) (time ^ (time >>> 32));
+        for (int i = 0; i < width; i++) {
+            final String value = key[offset + i];
+            h = h * 31 + (value == null ? 0 : value.hashCode());
+        }
+        // Spread the high bits to the low bits used to select the bucket
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSize(final int capacity) {
+        int size = 1;
+        while (size < capacity * 2) {
+            size <<= 1;
+        }
+        return size;
+    }
+}
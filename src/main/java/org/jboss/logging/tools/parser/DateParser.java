@@ -0,0 +1,108 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Parses the dates of results into timestamps. If the date pattern ends with the seconds and milliseconds, like
+ * {@code ss,SSS}, the start of the last second parsed is cached so the dates in the same second are parsed by adding
+ * the milliseconds.
+ * <p/>
+ * A date parser is not thread-safe.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+class DateParser {
+
+    /**
+     * The timestamp of a date that could not be parsed.
+     */
+    static final long INVALID = Long.MIN_VALUE;
+
+    private final SimpleDateFormat dateFormat;
+    // The length of the milliseconds at the end of the date
+    private final int millisLength;
+    private String cachedSecond;
+    private long cachedSecondMillis;
+
+    /**
+     * Creates a parser for the date format part.
+     *
+     * @param formatPart the date format part
+     */
+    DateParser(final FormatPart formatPart) {
+        final String argument = formatPart.getArgument();
+        final String pattern = (argument == null ? FormatTokenizer.DEFAULT_DATE_PATTERN : argument);
+        dateFormat = new SimpleDateFormat(pattern);
+        final int length = pattern.length();
+        millisLength = (length > 4 && pattern.endsWith("SSS") && !Character.isLetter(pattern.charAt(length - 4)) && pattern.charAt(length - 5) == 's' ? 3 : 0);
+    }
+
+    /**
+     * Parses the date.
+     *
+     * @param date the date
+     *
+     * @return the timestamp or {@link #INVALID} if the date could not be parsed
+     */
+    long parse(final String date) {
+        final int secondLength = date.length() - millisLength;
+        if (millisLength > 0 && cachedSecond != null && cachedSecond.length() == secondLength && date.startsWith(cachedSecond)) {
+            final int millis = parseMillis(date, secondLength);
+            if (millis >= 0) {
+                return cachedSecondMillis + millis;
+            }
+        }
+        final Date parsed = dateFormat.parse(date, new ParsePosition(0));
+        if (parsed == null) {
+            return INVALID;
+        }
+        final long time = parsed.getTime();
+        if (millisLength > 0) {
+            final int millis = parseMillis(date, secondLength);
+            if (millis >= 0) {
+                cachedSecond = date.substring(0, secondLength);
+                cachedSecondMillis = time - millis;
+            }
+        }
+        return time;
+    }
+
+    private static int parseMillis(final String date, final int start) {
+        if (start < 0) {
+            return -1;
+        }
+        int result = 0;
+        for (int i = start; i < date.length(); i++) {
+            final char c = date.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+
+/**
+ * Searches a file, whose records are in date order, for the first record that is not before the low date of a {@link
+ * DateTimeFilter}.
+ * <p/>
+ * The search is a binary search over the byte offsets of the file. At each step the offset is moved to the start of
+ * the next line and the lines are read until a line with a date is found.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+class DateRangeSearch {
+    private static final int PROBE_WINDOW_SIZE = 64 * 1024;
+
+    private final Parser parser;
+    private final File file;
+    private final DateTimeFilter filter;
+    private final FormatPart datePart;
+
+    DateRangeSearch(final Parser parser, final File file, final DateTimeFilter filter, final FormatPart datePart) {
+        this.parser = parser;
+        this.file = file;
+        this.filter = filter;
+        this.datePart = datePart;
+    }
+
+    /**
+     * Finds the offset of the line to start parsing at. Every line with a date before the offset has a date before the
+     * low date of the filter.
+     *
+     * @return the offset of the start of a line
+     *
+     * @throws IOException if an error occurs reading the file
+     */
+    long findStart() throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            long low = 0L;
+            long high = raf.length();
+            while (low < high) {
+                final long mid = (low + high) >>> 1;
+                final long next = nextLineAfterDateBefore(MappedLineReader.alignToLine(raf, mid));
+                if (next < 0) {
+                    high = mid;
+                } else {
+                    low = next;
+                }
+            }
+            return low;
+        } finally {
+            Parser.safeClose(raf);
+        }
+    }
+
+    /**
+     * Reads the lines starting at the offset until a line with a date is found.
+     *
+     * @param offset the offset of a line
+     *
+     * @return the offset of the line after the dated line if the date is before the low date, otherwise -1
+     *
+     * @throws IOException if an error occurs reading the file
+     */
+    private long nextLineAfterDateBefore(final long offset) throws IOException {
+        final MappedLineReader reader = new MappedLineReader(file, offset, Long.MAX_VALUE, Charset.defaultCharset(), PROBE_WINDOW_SIZE);
+        try {
+            CharSequence line;
+            while ((line = reader.readLine()) != null) {
+                final String date = parser.parseDate(line);
+                if (date != null) {
+                    final int result = filter.compare(datePart, date);
+                    if (result != DateTimeFilter.INVALID) {
+                        return (result == DateTimeFilter.BEFORE ? reader.getPosition() : -1L);
+                    }
+                }
+            }
+            return -1L;
+        } finally {
+            Parser.safeClose(reader);
+        }
+    }
+}
@@ -22,18 +22,45 @@
 
 package org.jboss.logging.tools.parser;
 
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 
 /**
  * Filters out log records based on the log record date.
+ * <p/>
+ * The date pattern of the format part is compiled once and the low and high dates are normalised to the precision of
+ * the pattern. For example with a pattern of {@code HH:mm:ss} only the time of the low and high dates is compared.
+ * Patterns with fixed width numeric fields in order of significance, like {@code yyyy-MM-dd HH:mm:ss,SSS}, are
+ * compared as strings without parsing the date.
  *
  * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
  */
 public class DateTimeFilter implements Filter {
 
+    /**
+     * The date is before the low date.
+     */
+    static final int BEFORE = -1;
+
+    /**
+     * The date is between the low and high dates, inclusive.
+     */
+    static final int WITHIN = 0;
+
+    /**
+     * The date is after the high date.
+     */
+    static final int AFTER = 1;
+
+    /**
+     * The value could not be parsed as a date.
+     */
+    static final int INVALID = 2;
+
     private final Date lowDate;
     private final Date hiDate;
+    private volatile Bounds bounds;
 
     /**
      * Create a new date/time filter.
@@ -48,21 +75,144 @@ public class DateTimeFilter implements Filter {
 
     @Override
     public boolean accept(final FormatPart formatPart, final String value) {
-        try {
-            final SimpleDateFormat sdf = new SimpleDateFormat(formatPart.getArgument());
-            final Date recordDate = sdf.parse(value);
-            // Format the dates and parse again to set defaults
-            final String lowDate = sdf.format(this.lowDate);
-            final String hiDate = sdf.format(this.hiDate);
-            return recordDate.compareTo(sdf.parse(lowDate)) >= 0 && recordDate.compareTo(sdf.parse(hiDate)) <= 0;
-        } catch (Exception ignore) {
-            // do nothing
+        return compare(formatPart, value) == WITHIN;
+    }
+
+    /**
+     * Compares the date value with the low and high dates.
+     *
+     * @param formatPart the date format part
+     * @param value      the date value from the log record
+     *
+     * @return {@link #BEFORE}, {@link #WITHIN}, {@link #AFTER} or {@link #INVALID} if the value is not a date
+     */
+    int compare(final FormatPart formatPart, final String value) {
+        final Bounds bounds = getBounds(formatPart);
+        if (bounds.lexicographic && bounds.matchesShape(value)) {
+            if (value.compareTo(bounds.low) < 0) {
+                return BEFORE;
+            }
+            return (value.compareTo(bounds.hi) > 0 ? AFTER : WITHIN);
         }
-        return false;
+        final long millis = bounds.parse(value);
+        if (millis == Long.MIN_VALUE) {
+            return INVALID;
+        }
+        if (millis < bounds.lowMillis) {
+            return BEFORE;
+        }
+        return (millis > bounds.hiMillis ? AFTER : WITHIN);
     }
 
     @Override
     public boolean allowType(final FormatType formatType) {
         return formatType == FormatType.DATE;
     }
+
+    private Bounds getBounds(final FormatPart formatPart) {
+        final String argument = formatPart.getArgument();
+        final String pattern = (argument == null ? FormatTokenizer.DEFAULT_DATE_PATTERN : argument);
+        Bounds result = bounds;
+        if (result == null || !result.pattern.equals(pattern)) {
+            result = new Bounds(pattern, lowDate, hiDate);
+            bounds = result;
+        }
+        return result;
+    }
+
+    /**
+     * The low and high dates compiled for a date pattern.
+     */
+    private static class Bounds {
+        private final String pattern;
+        private final ThreadLocal<SimpleDateFormat> formatter;
+        private final long lowMillis;
+        private final long hiMillis;
+        private final String low;
+        private final String hi;
+        // Digits are expected wherever the shape has a 0, other characters must match exactly
+        private final String shape;
+        private final boolean lexicographic;
+
+        Bounds(final String pattern, final Date lowDate, final Date hiDate) {
+            this.pattern = pattern;
+            formatter = new ThreadLocal<SimpleDateFormat>() {
+                @Override
+                protected SimpleDateFormat initialValue() {
+                    return new SimpleDateFormat(pattern);
+                }
+            };
+            // Format the dates and parse again to set defaults
+            final SimpleDateFormat sdf = formatter.get();
+            low = sdf.format(lowDate);
+            hi = sdf.format(hiDate);
+            lowMillis = parse(low);
+            hiMillis = parse(hi);
+            shape = fixedWidthShape(pattern);
+            lexicographic = shape != null && shape.length() == low.length() && shape.length() == hi.length();
+        }
+
+        long parse(final String value) {
+            try {
+                return formatter.get().parse(value).getTime();
+            } catch (ParseException ignore) {
+                return Long.MIN_VALUE;
+            }
+        }
+
+        boolean matchesShape(final String value) {
+            final int len = shape.length();
+            if (value.length() != len) {
+                return false;
+            }
+            for (int i = 0; i < len; i++) {
+                final char s = shape.charAt(i);
+                final char c = value.charAt(i);
+                if (s == '0' ? (c < '0' || c > '9') : s != c) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Creates the shape of dates formatted with the pattern if the dates can be compared as strings. The pattern
+         * may only contain fixed width numeric fields in order of decreasing significance and literal characters that
+         * are not letters, digits or quotes.
+         *
+         * @param pattern the date pattern
+         *
+         * @return the shape or {@code null} if the dates cannot be compared as strings
+         */
+        static String fixedWidthShape(final String pattern) {
+            final String fields = "yMdHmsS";
+            final int[] widths = {4, 2, 2, 2, 2, 2, 3};
+            final StringBuilder shape = new StringBuilder(pattern.length());
+            int lastField = -1;
+            final int len = pattern.length();
+            for (int i = 0; i < len; i++) {
+                final char c = pattern.charAt(i);
+                if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                    final int field = fields.indexOf(c);
+                    int count = 1;
+                    while (i + 1 < len && pattern.charAt(i + 1) == c) {
+                        count++;
+                        i++;
+                    }
+                    if (field <= lastField || count != widths[field]) {
+                        return null;
+                    }
+                    lastField = field;
+                    for (int j = 0; j < count; j++) {
+                        shape.append('0');
+                    }
+                } else if (c == '\'' || (c >= '0' && c <= '9')) {
+                    return null;
+                } else {
+                    shape.append(c);
+                }
+            }
+            return shape.toString();
+        }
+    }
 }
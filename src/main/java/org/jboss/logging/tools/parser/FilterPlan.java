@@ -0,0 +1,432 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The filters of a {@link Parser} compiled into a tree that is evaluated against all the values of a line.
+ * <p/>
+ * The filters of an {@link AndFilter} are evaluated in the order of their cost divided by the chance of rejecting the
+ * record, and the filters of an {@link OrFilter} in the order of their cost divided by the chance of accepting the
+ * record. For example a level filter is evaluated before a message pattern filter. A value is only extracted from the
+ * line when a filter needs it, and only once.
+ * <p/>
+ * A filter for values that are not in the format is not applicable and accepts every record, wherever it is in the
+ * tree. An and filter ignores it, an or filter with it accepts every record and a not filter of it rejects every
+ * record.
+ * <p/>
+ * If the plan is compiled with {@link ParserMetrics} each filter that is not an and, or or not filter counts the
+ * records it accepts and rejects. A filter skipped because the result was already decided is not counted.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+class FilterPlan {
+
+    /**
+     * The result of a {@link #partial(int, String) partial evaluation} where the record is rejected whatever the other
+     * values are.
+     */
+    static final int REJECT = 0;
+
+    /**
+     * The result of a {@link #partial(int, String) partial evaluation} where the record is accepted whatever the other
+     * values are.
+     */
+    static final int ACCEPT = 1;
+
+    /**
+     * The result of a {@link #partial(int, String) partial evaluation} that depends on the other values.
+     */
+    static final int UNKNOWN = 2;
+
+    private static final Comparator<Node> AND_ORDER = new Comparator<Node>() {
+        @Override
+        public int compare(final Node o1, final Node o2) {
+            return Double.compare(o1.cost / (1.0 - o1.pass), o2.cost / (1.0 - o2.pass));
+        }
+    };
+
+    private static final Comparator<Node> OR_ORDER = new Comparator<Node>() {
+        @Override
+        public int compare(final Node o1, final Node o2) {
+            return Double.compare(o1.cost / o1.pass, o2.cost / o2.pass);
+        }
+    };
+
+    private final Node root;
+    private final boolean[] filtered;
+    private final ThreadLocal<String[]> values;
+
+    private FilterPlan(final Node root, final boolean[] filtered) {
+        this.root = root;
+        this.filtered = filtered;
+        values = new ThreadLocal<String[]>() {
+            @Override
+            protected String[] initialValue() {
+                return new String[filtered.length];
+            }
+        };
+    }
+
+    /**
+     * Compiles the filters, which must all accept a record.
+     *
+     * @param groups  the format parts of the values in a line
+     * @param filters the filters
+     *
+     * @return the plan
+     */
+    static FilterPlan compile(final List<FormatPart> groups, final List<Filter> filters) {
+        return compile(groups, filters, null);
+    }
+
+    /**
+     * Compiles the filters, which must all accept a record, counting the records each filter accepts and rejects.
+     *
+     * @param groups  the format parts of the values in a line
+     * @param filters the filters
+     * @param metrics the metrics to count the results of the filters in or {@code null} to not count them
+     *
+     * @return the plan
+     */
+    static FilterPlan compile(final List<FormatPart> groups, final List<Filter> filters, final ParserMetrics metrics) {
+        final boolean[] filtered = new boolean[groups.size()];
+        final Node root = compile(groups, new AndFilter(filters), filtered, metrics);
+        return new FilterPlan(root, filtered);
+    }
+
+    /**
+     * Checks the values of the line against the filters.
+     *
+     * @param parser the parser to extract the values with
+     * @param line   the line
+     * @param bounds the bounds of the values in the line
+     *
+     * @return {@code true} if the record is accepted, otherwise {@code false}
+     */
+    boolean accept(final Parser parser, final CharSequence line, final int[] bounds) {
+        if (root instanceof Constant) {
+            return ((Constant) root).result;
+        }
+        final String[] values = this.values.get();
+        try {
+            return root.accept(parser, line, bounds, values);
+        } finally {
+            Arrays.fill(values, null);
+        }
+    }
+
+    /**
+     * Evaluates the filters with only the value of one group.
+     *
+     * @param group the group
+     * @param value the value of the group
+     *
+     * @return {@link #REJECT}, {@link #ACCEPT} or {@link #UNKNOWN} if the result depends on the other values
+     */
+    int partial(final int group, final String value) {
+        return root.partial(group, value);
+    }
+
+    /**
+     * Checks if any filter uses the value of the group.
+     *
+     * @param group the group
+     *
+     * @return {@code true} if the value is filtered, otherwise {@code false}
+     */
+    boolean isFiltered(final int group) {
+        return group >= 0 && group < filtered.length && filtered[group];
+    }
+
+    private static Node compile(final List<FormatPart> groups, final Filter filter, final boolean[] filtered,
+                                final ParserMetrics metrics) {
+        if (filter instanceof AndFilter || filter instanceof OrFilter) {
+            final boolean and = filter instanceof AndFilter;
+            final List<Node> children = new ArrayList<Node>();
+            for (Filter child : (and ? ((AndFilter) filter).getFilters() : ((OrFilter) filter).getFilters())) {
+                final Node node = compile(groups, child, filtered, metrics);
+                if (node instanceof Constant) {
+                    // A child that rejects every record decides an and, one that accepts every record decides an or
+                    if (((Constant) node).result != and) {
+                        return node;
+                    }
+                } else {
+                    children.add(node);
+                }
+            }
+            if (children.isEmpty()) {
+                return Constant.of(and);
+            }
+            if (children.size() == 1) {
+                return children.get(0);
+            }
+            Collections.sort(children, and ? AND_ORDER : OR_ORDER);
+            return new Group(and, children.toArray(new Node[children.size()]));
+        }
+        if (filter instanceof NotFilter) {
+            final Node node = compile(groups, ((NotFilter) filter).getFilter(), filtered, metrics);
+            return (node instanceof Constant ? Constant.of(!((Constant) node).result) : new Not(node));
+        }
+        final List<Integer> indexes = new ArrayList<Integer>();
+        double cost = 0.0;
+        for (int i = 0; i < groups.size(); i++) {
+            final FormatPart formatPart = groups.get(i);
+            if (filter.allowType(formatPart.getFormatType())) {
+                indexes.add(i);
+                filtered[i] = true;
+                cost += valueCost(formatPart.getFormatType()) + filterCost(filter);
+            }
+        }
+        if (indexes.isEmpty()) {
+            // The filter is not applicable to the format
+            return Constant.ACCEPT_ALL;
+        }
+        final int[] leafGroups = new int[indexes.size()];
+        final FormatPart[] leafParts = new FormatPart[leafGroups.length];
+        for (int i = 0; i < leafGroups.length; i++) {
+            leafGroups[i] = indexes.get(i);
+            leafParts[i] = groups.get(leafGroups[i]);
+        }
+        final ParserMetrics.FilterCounter counter = (metrics == null ? null : metrics.counter(filter));
+        return new Leaf(filter, leafGroups, leafParts, counter, cost, pass(filter));
+    }
+
+    /**
+     * The relative cost of extracting a value of the format type. Levels are short, dates need to be parsed and
+     * messages are long.
+     */
+    private static double valueCost(final FormatType formatType) {
+        switch (formatType) {
+            case LEVEL:
+                return 1.0;
+            case DATE:
+                return 3.0;
+            case MESSAGE:
+            case SIMPLE_MESSAGE:
+            case EXCEPTION:
+            case EXCEPTION_EXTENDED:
+                return 4.0;
+            default:
+                return 2.0;
+        }
+    }
+
+    /**
+     * The relative cost of the filter checking a value.
+     */
+    private static double filterCost(final Filter filter) {
+        if (filter instanceof MessagePatternFilter) {
+            return 8.0;
+        }
+        if (filter instanceof MessageFilter || filter instanceof DateTimeFilter) {
+            return 2.0;
+        }
+        return 1.0;
+    }
+
+    /**
+     * An estimate of the chance of the filter accepting a record.
+     */
+    private static double pass(final Filter filter) {
+        if (filter instanceof LevelFilter) {
+            return ((LevelFilter) filter).isExclusive() ? 0.1 : 0.5;
+        }
+        if (filter instanceof MessageFilter || filter instanceof MessagePatternFilter) {
+            return 0.1;
+        }
+        if (filter instanceof CategoryFilter || filter instanceof DateTimeFilter) {
+            return 0.3;
+        }
+        return 0.5;
+    }
+
+    private abstract static class Node {
+        final double cost;
+        final double pass;
+
+        Node(final double cost, final double pass) {
+            this.cost = cost;
+            this.pass = pass;
+        }
+
+        abstract boolean accept(Parser parser, CharSequence line, int[] bounds, String[] values);
+
+        abstract int partial(int group, String value);
+    }
+
+    private static class Constant extends Node {
+        static final Constant ACCEPT_ALL = new Constant(true);
+        static final Constant REJECT_ALL = new Constant(false);
+
+        private final boolean result;
+
+        private Constant(final boolean result) {
+            super(0.0, result ? 1.0 : 0.0);
+            this.result = result;
+        }
+
+        static Constant of(final boolean result) {
+            return (result ? ACCEPT_ALL : REJECT_ALL);
+        }
+
+        @Override
+        boolean accept(final Parser parser, final CharSequence line, final int[] bounds, final String[] values) {
+            return result;
+        }
+
+        @Override
+        int partial(final int group, final String value) {
+            return (result ? ACCEPT : REJECT);
+        }
+    }
+
+    private static class Leaf extends Node {
+        private final Filter filter;
+        private final int[] groups;
+        private final FormatPart[] parts;
+        private final ParserMetrics.FilterCounter counter;
+
+        Leaf(final Filter filter, final int[] groups, final FormatPart[] parts, final ParserMetrics.FilterCounter counter,
+             final double cost, final double pass) {
+            super(cost, pass);
+            this.filter = filter;
+            this.groups = groups;
+            this.parts = parts;
+            this.counter = counter;
+        }
+
+        @Override
+        boolean accept(final Parser parser, final CharSequence line, final int[] bounds, final String[] values) {
+            if (counter == null) {
+                return acceptValues(parser, line, bounds, values);
+            }
+            final boolean result = acceptValues(parser, line, bounds, values);
+            counter.count(result);
+            return result;
+        }
+
+        private boolean acceptValues(final Parser parser, final CharSequence line, final int[] bounds,
+                                     final String[] values) {
+            for (int i = 0; i < groups.length; i++) {
+                final int group = groups[i];
+                String value = values[group];
+                if (value == null) {
+                    value = parser.value(line, bounds, group);
+                    values[group] = value;
+                }
+                if (!filter.accept(parts[i], value)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        int partial(final int group, final String value) {
+            if (groups.length != 1 || groups[0] != group) {
+                return UNKNOWN;
+            }
+            return filter.accept(parts[0], value) ? ACCEPT : REJECT;
+        }
+    }
+
+    private static class Group extends Node {
+        private final boolean and;
+        private final Node[] children;
+
+        Group(final boolean and, final Node[] children) {
+            super(cost(children), pass(and, children));
+            this.and = and;
+            this.children = children;
+        }
+
+        @Override
+        boolean accept(final Parser parser, final CharSequence line, final int[] bounds, final String[] values) {
+            for (Node child : children) {
+                if (child.accept(parser, line, bounds, values) != and) {
+                    return !and;
+                }
+            }
+            return and;
+        }
+
+        @Override
+        int partial(final int group, final String value) {
+            // A rejection decides an and, an acceptance decides an or
+            final int decisive = (and ? REJECT : ACCEPT);
+            int result = (and ? ACCEPT : REJECT);
+            for (Node child : children) {
+                final int childResult = child.partial(group, value);
+                if (childResult == decisive) {
+                    return decisive;
+                }
+                if (childResult == UNKNOWN) {
+                    result = UNKNOWN;
+                }
+            }
+            return result;
+        }
+
+        private static double cost(final Node[] children) {
+            double cost = 0.0;
+            for (Node child : children) {
+                cost += child.cost;
+            }
+            return cost;
+        }
+
+        private static double pass(final boolean and, final Node[] children) {
+            double result = 1.0;
+            for (Node child : children) {
+                result *= (and ? child.pass : 1.0 - child.pass);
+            }
+            return (and ? result : 1.0 - result);
+        }
+    }
+
+    private static class Not extends Node {
+        private final Node node;
+
+        Not(final Node node) {
+            super(node.cost, 1.0 - node.pass);
+            this.node = node;
+        }
+
+        @Override
+        boolean accept(final Parser parser, final CharSequence line, final int[] bounds, final String[] values) {
+            return !node.accept(parser, line, bounds, values);
+        }
+
+        @Override
+        int partial(final int group, final String value) {
+            final int result = node.partial(group, value);
+            return (result == UNKNOWN ? UNKNOWN : (result == ACCEPT ? REJECT : ACCEPT));
+        }
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a line into the values for each format part without using a regular expression.
+ * <p/>
+ * The literal text between the format parts is used to find the end of each value. The search for the literal text
+ * starts after the minimum width of the value, which allows literal text like a space to be used in padding or in a
+ * date. A value ends at the first occurrence of the literal text following it, except for the last value which ends
+ * at the last occurrence.
+ * <p/>
+ * Not all formats can be tokenized. A format with two parts that are not separated by literal text, unless the second
+ * part may be empty, or a format with a new line anywhere except the end can only be parsed with a regular
+ * expression.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+class FormatTokenizer {
+
+    /**
+     * The default pattern used by the {@link org.jboss.logmanager.formatters.PatternFormatter} if the date format part
+     * does not have an argument.
+     */
+    static final String DEFAULT_DATE_PATTERN = "yyyy-MM-dd HH:mm:ss,SSS";
+
+    private final String prefix;
+    private final Field[] fields;
+
+    private FormatTokenizer(final String prefix, final Field[] fields) {
+        this.prefix = prefix;
+        this.fields = fields;
+    }
+
+    /**
+     * Tokenizes the line. The bounds of the value for group {@code i} are stored in {@code bounds[i * 2]}, the start
+     * index inclusive, and {@code bounds[i * 2 + 1]}, the end index exclusive. Leading and trailing whitespace is not
+     * included in the bounds.
+     *
+     * @param line   the line to tokenize
+     * @param bounds the array to store the bounds of the values in, must be at least twice the number of groups
+     *
+     * @return {@code true} if the line matched the format, otherwise {@code false}
+     */
+    boolean tokenize(final CharSequence line, final int[] bounds) {
+        final int len = line.length();
+        if (!startsWith(line, prefix, 0)) {
+            return false;
+        }
+        int pos = prefix.length();
+        for (Field field : fields) {
+            if (field.empty) {
+                bounds[field.group * 2] = pos;
+                bounds[field.group * 2 + 1] = pos;
+                continue;
+            }
+            final int start = pos;
+            final int end;
+            final String delimiter = field.delimiter;
+            if (delimiter.length() == 0) {
+                end = len;
+            } else if (field.last) {
+                end = lastIndexOf(line, delimiter, start + field.minimumWidth);
+            } else {
+                end = indexOf(line, delimiter, start + field.minimumWidth);
+            }
+            if (end < 0 || (end == start && !field.optional) || (field.maximumWidth > 0 && end - start > field.maximumWidth)) {
+                return false;
+            }
+            int valueStart = start;
+            int valueEnd = end;
+            while (valueStart < valueEnd && line.charAt(valueStart) <= ' ') {
+                valueStart++;
+            }
+            while (valueEnd > valueStart && line.charAt(valueEnd - 1) <= ' ') {
+                valueEnd--;
+            }
+            bounds[field.group * 2] = valueStart;
+            bounds[field.group * 2 + 1] = valueEnd;
+            pos = end + delimiter.length();
+        }
+        return true;
+    }
+
+    /**
+     * Calculates the least number of characters a date formatted with the pattern can have.
+     *
+     * @param pattern the {@link java.text.SimpleDateFormat} pattern
+     *
+     * @return the minimum width of a formatted date
+     */
+    static int minimumDateWidth(final String pattern) {
+        int width = 0;
+        boolean quoted = false;
+        final int len = pattern.length();
+        for (int i = 0; i < len; i++) {
+            final char c = pattern.charAt(i);
+            if (c == '\'') {
+                if (i + 1 < len && pattern.charAt(i + 1) == '\'') {
+                    width++;
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (!quoted && ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'))) {
+                int count = 1;
+                while (i + 1 < len && pattern.charAt(i + 1) == c) {
+                    count++;
+                    i++;
+                }
+                switch (c) {
+                    case 'y':
+                    case 'd':
+                    case 'H':
+                    case 'h':
+                    case 'k':
+                    case 'K':
+                    case 'm':
+                    case 's':
+                    case 'S':
+                    case 'D':
+                    case 'F':
+                    case 'w':
+                    case 'W':
+                    case 'u':
+                        width += count;
+                        break;
+                    case 'M':
+                        width += (count < 3 ? count : 1);
+                        break;
+                    default:
+                        // Text fields have at least one character
+                        width++;
+                        break;
+                }
+            } else {
+                width++;
+            }
+        }
+        return width;
+    }
+
+    private static boolean startsWith(final CharSequence line, final String s, final int offset) {
+        final int len = s.length();
+        if (offset + len > line.length()) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (line.charAt(offset + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(final CharSequence line, final String s, final int fromIndex) {
+        final char first = s.charAt(0);
+        final int max = line.length() - s.length();
+        for (int i = fromIndex; i <= max; i++) {
+            if (line.charAt(i) == first && startsWith(line, s, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(final CharSequence line, final String s, final int fromIndex) {
+        final char first = s.charAt(0);
+        for (int i = line.length() - s.length(); i >= fromIndex; i--) {
+            if (line.charAt(i) == first && startsWith(line, s, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Builds a tokenizer from the literal text and format parts of a format pattern.
+     */
+    static class Builder {
+        private final StringBuilder literal = new StringBuilder();
+        private final List<Field> fields = new ArrayList<Field>();
+        private String prefix;
+        private boolean supported = true;
+        private boolean newLine;
+
+        /**
+         * Appends literal text.
+         *
+         * @param text the text
+         */
+        void appendLiteral(final String text) {
+            if (newLine) {
+                supported = false;
+            }
+            literal.append(text);
+        }
+
+        /**
+         * Appends a format part.
+         *
+         * @param formatPart the format part
+         * @param group      the group the value of the format part is stored in, ignored if the part has no value
+         */
+        void appendPart(final FormatPart formatPart, final int group) {
+            final FormatType formatType = formatPart.getFormatType();
+            if (newLine) {
+                supported = false;
+            }
+            if (formatType == FormatType.NEW_LINE) {
+                // Lines are read without the line terminator, a new line is only supported at the end
+                newLine = true;
+            } else if (formatType == FormatType.PERCENTAGE) {
+                literal.append('%');
+            } else {
+                endLiteral();
+                int minimumWidth = formatPart.getMinimumWidth();
+                if (formatType == FormatType.DATE) {
+                    final String pattern = formatPart.getArgument();
+                    minimumWidth = Math.max(minimumWidth, minimumDateWidth(pattern == null ? DEFAULT_DATE_PATTERN : pattern));
+                }
+                final int maximumWidth = formatPart.getMaximumWidth() > 0 ? Math.max(formatPart.getMaximumWidth(), minimumWidth) : 0;
+                final boolean optional = formatType.toPattern().endsWith("*)");
+                fields.add(new Field(group, minimumWidth, maximumWidth, optional));
+            }
+        }
+
+        /**
+         * Builds the tokenizer.
+         *
+         * @return the tokenizer or {@code null} if the format cannot be tokenized
+         */
+        FormatTokenizer build() {
+            endLiteral();
+            if (!supported) {
+                return null;
+            }
+            final int size = fields.size();
+            for (int i = 0; i < size; i++) {
+                final Field field = fields.get(i);
+                if (field.empty) {
+                    continue;
+                }
+                // Adjacent optional fields are always empty, the same as a greedy regular expression would match
+                int next = i + 1;
+                while (field.delimiter.length() == 0 && next < size) {
+                    final Field nextField = fields.get(next++);
+                    if (!nextField.optional) {
+                        return null;
+                    }
+                    nextField.empty = true;
+                    field.delimiter = nextField.delimiter;
+                }
+                field.last = next >= size;
+            }
+            return new FormatTokenizer(prefix == null ? "" : prefix, fields.toArray(new Field[size]));
+        }
+
+        private void endLiteral() {
+            final String text = literal.toString();
+            literal.setLength(0);
+            if (fields.isEmpty()) {
+                if (prefix == null) {
+                    prefix = text;
+                } else {
+                    prefix = prefix + text;
+                }
+            } else {
+                final Field field = fields.get(fields.size() - 1);
+                field.delimiter = field.delimiter + text;
+            }
+        }
+    }
+
+    private static class Field {
+        final int group;
+        final int minimumWidth;
+        final int maximumWidth;
+        final boolean optional;
+        String delimiter = "";
+        boolean empty;
+        boolean last;
+
+        Field(final int group, final int minimumWidth, final int maximumWidth, final boolean optional) {
+            this.group = group;
+            this.minimumWidth = minimumWidth;
+            this.maximumWidth = maximumWidth;
+            this.optional = optional;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decompresses gzip files, including files of several gzip members such as concatenated archives. The members are read
+ * with {@link MultiMemberGzipInputStream} as {@link java.util.zip.GZIPInputStream} stops at the end of the first member
+ * before Java 7.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+class GzipCodec implements LogCodec {
+
+    static final GzipCodec INSTANCE = new GzipCodec();
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Override
+    public boolean accept(final byte[] header, final int length) {
+        return length >= 3 && (header[0] & 0xFF) == 0x1F && (header[1] & 0xFF) == 0x8B && header[2] == 8;
+    }
+
+    @Override
+    public InputStream decompress(final InputStream compressed) throws IOException {
+        return new MultiMemberGzipInputStream(compressed, BUFFER_SIZE, true);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations in buckets of powers of two. Bucket {@code 0} counts durations of {@code 0} nanoseconds
+ * and bucket {@code i} counts durations of at least {@code 2^(i-1)} and less than {@code 2^i} nanoseconds, so
+ * recording a duration is a bit count and an increment.
+ * <p/>
+ * Like a {@link StripedCounter} the buckets are spread over stripes picked by the id of the thread recording the
+ * duration, so threads recording durations at the same time rarely update the same cache line. Each stripe has the
+ * buckets and the total of its durations, and the counts are the sums of the stripes.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+class LatencyHistogram {
+    static final int BUCKETS = 64;
+
+    // The buckets of a stripe are followed by the total and padding to keep the next stripe off the cache line
+    private static final int TOTAL = BUCKETS;
+    private static final int STRIDE = BUCKETS + StripedCounter.PADDING;
+
+    private final AtomicLongArray stripes = new AtomicLongArray(StripedCounter.STRIPES * STRIDE);
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos the duration in nanoseconds
+     */
+    void record(final long nanos) {
+        // The clock may go backwards between processors
+        final long value = Math.max(0L, nanos);
+        final int base = StripedCounter.stripe() * STRIDE;
+        stripes.getAndIncrement(base + Math.min(BUCKETS - 1, Long.SIZE - Long.numberOfLeadingZeros(value)));
+        stripes.getAndAdd(base + TOTAL, value);
+    }
+
+    /**
+     * The total of the durations recorded.
+     *
+     * @return the total in nanoseconds
+     */
+    long getTotal() {
+        long result = 0L;
+        for (int base = 0; base < stripes.length(); base += STRIDE) {
+            result += stripes.get(base + TOTAL);
+        }
+        return result;
+    }
+
+    /**
+     * The counts of the buckets, the sums of the stripes, which are not a snapshot if durations are being recorded.
+     *
+     * @return the counts
+     */
+    long[] getCounts() {
+        final long[] result = new long[BUCKETS];
+        for (int base = 0; base < stripes.length(); base += STRIDE) {
+            for (int i = 0; i < BUCKETS; i++) {
+                result[i] += stripes.get(base + i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The upper bound of the bucket the percentile falls in.
+     *
+     * @param percentile the percentile, between {@code 0} and {@code 100}
+     *
+     * @return the duration in nanoseconds or {@code 0} if nothing has been recorded
+     */
+    long getPercentile(final double percentile) {
+        final long[] counts = getCounts();
+        long count = 0L;
+        for (long c : counts) {
+            count += c;
+        }
+        if (count == 0L) {
+            return 0L;
+        }
+        final long rank = Math.max(1L, (long) Math.ceil(count * Math.min(100.0, Math.max(0.0, percentile)) / 100.0));
+        long seen = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return (i == 0 ? 0L : (i >= BUCKETS - 1 ? Long.MAX_VALUE : (1L << i) - 1L));
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Sets the counts to zero. Durations recorded at the same time may be lost.
+     */
+    void reset() {
+        for (int i = 0; i < stripes.length(); i++) {
+            stripes.set(i, 0L);
+        }
+    }
+}
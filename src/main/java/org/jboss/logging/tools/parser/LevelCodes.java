@@ -0,0 +1,147 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.util.logging.Level;
+
+/**
+ * Maps the names of the standard levels to an int code without parsing them.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+class LevelCodes {
+
+    /**
+     * The code for a name that is not the name of a standard level.
+     */
+    static final int UNKNOWN = -1;
+
+    private static final String[] NAMES = {
+            "FATAL", "ERROR", "WARN", "INFO", "DEBUG", "TRACE",
+            "SEVERE", "WARNING", "CONFIG", "FINE", "FINER", "FINEST",
+            "ALL", "OFF",
+    };
+
+    private static final Level[] LEVELS;
+
+    static {
+        // Ensure the JBoss Log Manager levels are known before parsing their names
+        final Level fatal = org.jboss.logmanager.Level.FATAL;
+        LEVELS = new Level[NAMES.length];
+        for (int i = 0; i < NAMES.length; i++) {
+            LEVELS[i] = (i == 0 ? fatal : Level.parse(NAMES[i]));
+        }
+    }
+
+    private LevelCodes() {
+    }
+
+    /**
+     * The number of codes.
+     *
+     * @return the number of codes
+     */
+    static int size() {
+        return NAMES.length;
+    }
+
+    /**
+     * Returns the level for a code.
+     *
+     * @param code the code
+     *
+     * @return the level, the same instance {@link Level#parse(String)} returns for the name
+     */
+    static Level level(final int code) {
+        return LEVELS[code];
+    }
+
+    /**
+     * Returns the code for the name of a level.
+     *
+     * @param name the name of the level
+     *
+     * @return the code or {@link #UNKNOWN} if the name is not the name of a standard level
+     */
+    static int code(final CharSequence name) {
+        final int len = name.length();
+        if (len < 3 || len > 7) {
+            return UNKNOWN;
+        }
+        // The length and the first two characters select the only candidate
+        final int code;
+        switch (name.charAt(0)) {
+            case 'A':
+                code = 12;
+                break;
+            case 'C':
+                code = 8;
+                break;
+            case 'D':
+                code = 4;
+                break;
+            case 'E':
+                code = 1;
+                break;
+            case 'F':
+                if (len == 4) {
+                    code = 9;
+                } else if (len == 6) {
+                    code = 11;
+                } else {
+                    code = (name.charAt(1) == 'A' ? 0 : 10);
+                }
+                break;
+            case 'I':
+                code = 3;
+                break;
+            case 'O':
+                code = 13;
+                break;
+            case 'S':
+                code = 6;
+                break;
+            case 'T':
+                code = 5;
+                break;
+            case 'W':
+                code = (len == 4 ? 2 : 7);
+                break;
+            default:
+                return UNKNOWN;
+        }
+        return (equals(NAMES[code], name) ? code : UNKNOWN);
+    }
+
+    private static boolean equals(final String s, final CharSequence name) {
+        if (s.length() != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -31,6 +31,8 @@ import java.util.logging.Level;
 public class LevelFilter implements Filter {
     private final Level level;
     private final boolean exclusive;
+    // Whether the level with each code is accepted
+    private final boolean[] accepted;
 
     public LevelFilter(final Level level) {
         this(level, false);
@@ -39,13 +41,21 @@ public class LevelFilter implements Filter {
     public LevelFilter(final Level level, final boolean exclusive) {
         this.level = level;
         this.exclusive = exclusive;
+        accepted = new boolean[LevelCodes.size()];
+        for (int i = 0; i < accepted.length; i++) {
+            accepted[i] = accept(LevelCodes.level(i));
+        }
     }
 
     @Override
     public boolean accept(final FormatPart formatPart, final String value) {
+        final int code = LevelCodes.code(value);
+        if (code != LevelCodes.UNKNOWN) {
+            return accepted[code];
+        }
+        // Custom levels and numeric values are parsed
         try {
-            final Level level = org.jboss.logmanager.Level.parse(value);
-            return (exclusive ? (this.level == level) : (level == Level.ALL || (level.intValue() >= this.level.intValue())));
+            return accept(org.jboss.logmanager.Level.parse(value));
         } catch (Exception ignore) {
             // do nothing
         }
@@ -56,4 +66,12 @@ public class LevelFilter implements Filter {
     public boolean allowType(final FormatType formatType) {
         return formatType == FormatType.LEVEL;
     }
+
+    private boolean accept(final Level level) {
+        return (exclusive ? (this.level == level) : (level == Level.ALL || (level.intValue() >= this.level.intValue())));
+    }
+
+    boolean isExclusive() {
+        return exclusive;
+    }
 }
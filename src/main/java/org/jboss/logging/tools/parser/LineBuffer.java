@@ -0,0 +1,120 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.util.Arrays;
+
+/**
+ * A reusable buffer for the characters of a line. Sub-sequences are created as strings so only the parts of the line
+ * that are needed are copied.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+class LineBuffer implements CharSequence {
+    private char[] chars;
+    private int length;
+    private final CharSequence withNewLine = new CharSequence() {
+        @Override
+        public int length() {
+            return length + 1;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            return (index == length ? '\n' : chars[index]);
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return LineBuffer.this.toString().concat("\n");
+        }
+    };
+
+    LineBuffer() {
+        chars = new char[256];
+    }
+
+    /**
+     * Returns the array to write the characters to, ensuring it has at least the capacity requested. The contents of
+     * the array are preserved when the array has to be resized.
+     *
+     * @param capacity the minimum capacity required
+     *
+     * @return the array
+     */
+    char[] array(final int capacity) {
+        if (chars.length < capacity) {
+            chars = Arrays.copyOf(chars, Math.max(capacity, chars.length * 2));
+        }
+        return chars;
+    }
+
+    /**
+     * Sets the number of characters in the array that belong to the line.
+     *
+     * @param length the length of the line
+     */
+    void setLength(final int length) {
+        this.length = length;
+    }
+
+    /**
+     * A view of this line with a new line character appended.
+     *
+     * @return the line with a new line character
+     */
+    CharSequence withNewLine() {
+        return withNewLine;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(final int index) {
+        if (index >= length) {
+            throw new IndexOutOfBoundsException(Integer.toString(index));
+        }
+        return chars[index];
+    }
+
+    @Override
+    public String subSequence(final int start, final int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException(String.format("start=%d, end=%d, length=%d", start, end, length));
+        }
+        return new String(chars, start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+}
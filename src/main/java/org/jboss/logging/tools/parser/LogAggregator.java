@@ -0,0 +1,348 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Counts the results as they are parsed, grouped by the values of some of the format parts and optionally by time
+ * bucket, for example the errors per minute per category. The results are not retained, only a counter for each
+ * group.
+ * <p/>
+ * If a maximum number of groups is set, once that many groups have been counted a new group replaces the group with
+ * the lowest count. The groups with the highest counts are kept, so the {@link #getTop(int) top} groups can be found
+ * in a fixed amount of memory, and the count of a group is never under estimated. The {@link Group#getError() error}
+ * is the most the count may be over estimated by.
+ * <p/>
+ * An aggregator is not thread-safe. To aggregate concurrently, each thread counts with an aggregator created with
+ * {@link #newAggregator()} and the aggregators are {@link #merge(LogAggregator) merged}.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class LogAggregator implements LogResultHandler {
+
+    /**
+     * The time of the groups of results that are not counted by time or whose date could not be parsed.
+     */
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    private final LogFormat format;
+    private final long bucketMillis;
+    private final int maxGroups;
+    private final FormatType[] groupBy;
+    private final int[] groupIndexes;
+    private final int dateGroup;
+    private final CounterTable counters;
+    // The key of the result being counted
+    private final String[] key;
+    private final DateParser dateParser;
+    private long total;
+
+    /**
+     * Creates an aggregator.
+     *
+     * @param format       the format of the results
+     * @param bucketMillis the length of the time buckets in milliseconds, 0 to not count by time
+     * @param maxGroups    the maximum number of groups, 0 for no maximum
+     * @param groupBy      the types of the format parts to group the results by
+     *
+     * @throws IllegalArgumentException if the format does not contain one of the types, or does not contain a date
+     *                                  when counting by time
+     */
+    public LogAggregator(final LogFormat format, final long bucketMillis, final int maxGroups, final FormatType... groupBy) {
+        this.format = format;
+        this.bucketMillis = bucketMillis;
+        this.maxGroups = maxGroups;
+        this.groupBy = groupBy.clone();
+        final List<FormatPart> groups = format.getGroups();
+        groupIndexes = new int[groupBy.length];
+        for (int i = 0; i < groupBy.length; i++) {
+            groupIndexes[i] = findGroup(groups, groupBy[i]);
+            if (groupIndexes[i] < 0) {
+                throw new IllegalArgumentException(String.format("The format %s does not contain %s", format.getFormatPattern(), groupBy[i]));
+            }
+        }
+        if (bucketMillis > 0L) {
+            dateGroup = findGroup(groups, FormatType.DATE);
+            if (dateGroup < 0) {
+                throw new IllegalArgumentException(String.format("The format %s does not contain a date", format.getFormatPattern()));
+            }
+            dateParser = new DateParser(groups.get(dateGroup));
+        } else {
+            dateGroup = -1;
+            dateParser = null;
+        }
+        counters = new CounterTable(groupBy.length, maxGroups);
+        key = new String[groupBy.length];
+    }
+
+    /**
+     * Creates an empty aggregator that counts the same groups as this aggregator, so it can be {@link
+     * #merge(LogAggregator) merged} with this aggregator.
+     *
+     * @return a new aggregator
+     */
+    public LogAggregator newAggregator() {
+        return new LogAggregator(format, bucketMillis, maxGroups, groupBy);
+    }
+
+    @Override
+    public boolean handle(final LogResult result) {
+        for (int i = 0; i < groupIndexes.length; i++) {
+            key[i] = result.getValue(groupIndexes[i]);
+        }
+        counters.add(dateGroup < 0 ? NO_TIME : bucket(result.getValue(dateGroup)), key, 1L, 0L);
+        total++;
+        return true;
+    }
+
+    /**
+     * Adds the counts of another aggregator that counts the same groups, for example an aggregator that counted the
+     * results of another file or of part of a file on another thread.
+     *
+     * @param other the aggregator to merge
+     *
+     * @throws IllegalArgumentException if the other aggregator does not count the same groups
+     */
+    public void merge(final LogAggregator other) {
+        if (!format.equals(other.format) || bucketMillis != other.bucketMillis || !Arrays.equals(groupBy, other.groupBy)) {
+            throw new IllegalArgumentException("The aggregators do not count the same groups");
+        }
+        counters.addAll(other.counters);
+        total += other.total;
+    }
+
+    /**
+     * Parses the files concurrently with the executor, one file per task, counting the results of each file with a
+     * {@link #newAggregator() new aggregator} that is merged into this aggregator.
+     * <p/>
+     * The filters of the parser are invoked concurrently and must be thread-safe. The parser must not be modified
+     * until this method returns.
+     *
+     * @param parser   the parser to parse the files with
+     * @param files    the log files
+     * @param executor the executor used to parse the files
+     *
+     * @throws IOException if an error occurs reading one of the files
+     */
+    public void aggregate(final Parser parser, final Collection<File> files, final ExecutorService executor) throws IOException {
+        final List<Future<LogAggregator>> futures = new ArrayList<Future<LogAggregator>>(files.size());
+        try {
+            for (final File file : files) {
+                futures.add(executor.submit(new Callable<LogAggregator>() {
+                    @Override
+                    public LogAggregator call() throws IOException {
+                        final LogAggregator aggregator = newAggregator();
+                        parser.parse(file, aggregator);
+                        return aggregator;
+                    }
+                }));
+            }
+            for (Future<LogAggregator> future : futures) {
+                merge(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while parsing " + files);
+        } catch (ExecutionException e) {
+            throw ParallelParser.unwrap(e);
+        } finally {
+            for (Future<LogAggregator> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * The number of results counted.
+     *
+     * @return the number of results
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * The groups ordered by time, then by count with the highest count first.
+     *
+     * @return the groups
+     */
+    public List<Group> getGroups() {
+        final List<Group> result = groups();
+        Collections.sort(result, new Comparator<Group>() {
+            @Override
+            public int compare(final Group o1, final Group o2) {
+                if (o1.time != o2.time) {
+                    return (o1.time < o2.time ? -1 : 1);
+                }
+                return compareCounts(o1, o2);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * The groups with the highest counts, the highest count first. If a maximum number of groups is set the counts
+     * may be over estimated by up to the {@link Group#getError() error} of each group, and only the groups with a
+     * count higher than the error of the group are guaranteed to be in the top groups.
+     *
+     * @param k the number of groups
+     *
+     * @return the top groups
+     */
+    public List<Group> getTop(final int k) {
+        final List<Group> result = groups();
+        Collections.sort(result, new Comparator<Group>() {
+            @Override
+            public int compare(final Group o1, final Group o2) {
+                return compareCounts(o1, o2);
+            }
+        });
+        return (result.size() > k ? new ArrayList<Group>(result.subList(0, k)) : result);
+    }
+
+    private List<Group> groups() {
+        final int size = counters.size();
+        final List<Group> result = new ArrayList<Group>(size);
+        for (int i = 0; i < size; i++) {
+            final String[] values = new String[groupBy.length];
+            for (int j = 0; j < values.length; j++) {
+                values[j] = counters.getValue(i, j);
+            }
+            result.add(new Group(groupBy, counters.getTime(i), values, counters.getCount(i), counters.getError(i)));
+        }
+        return result;
+    }
+
+    private long bucket(final String date) {
+        final long millis = dateParser.parse(date);
+        if (millis == DateParser.INVALID) {
+            return NO_TIME;
+        }
+        // Round down, including dates before the epoch
+        final long remainder = millis % bucketMillis;
+        return millis - (remainder < 0 ? remainder + bucketMillis : remainder);
+    }
+
+    private static int compareCounts(final Group o1, final Group o2) {
+        return (o1.count == o2.count ? 0 : (o1.count > o2.count ? -1 : 1));
+    }
+
+    private static int findGroup(final List<FormatPart> groups, final FormatType formatType) {
+        for (int i = 0; i < groups.size(); i++) {
+            if (groups.get(i).getFormatType() == formatType) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The count of the results with the same values and in the same time bucket.
+     */
+    public static class Group {
+        private final FormatType[] groupBy;
+        private final long time;
+        private final String[] values;
+        private final long count;
+        private final long error;
+
+        Group(final FormatType[] groupBy, final long time, final String[] values, final long count, final long error) {
+            this.groupBy = groupBy;
+            this.time = time;
+            this.values = values;
+            this.count = count;
+            this.error = error;
+        }
+
+        /**
+         * The start of the time bucket in milliseconds.
+         *
+         * @return the time or {@link #NO_TIME} if the results are not counted by time or the date could not be parsed
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * The values of the format parts the results are grouped by, in the order of the types given to the
+         * aggregator.
+         *
+         * @return an unmodifiable list of the values
+         */
+        public List<String> getValues() {
+            return Collections.unmodifiableList(Arrays.asList(values));
+        }
+
+        /**
+         * The value of a format part the results are grouped by.
+         *
+         * @param formatType the type of the format part
+         *
+         * @return the value or {@code null} if the results are not grouped by the type
+         */
+        public String getValue(final FormatType formatType) {
+            for (int i = 0; i < groupBy.length; i++) {
+                if (groupBy[i] == formatType) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * The number of results.
+         *
+         * @return the count
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * The most the count may be over estimated by, always 0 if the aggregator has no maximum number of groups.
+         *
+         * @return the error of the count
+         */
+        public long getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s[time=%d, values=%s, count=%d, error=%d]", getClass().getSimpleName(), time, Arrays.asList(values), count, error);
+        }
+    }
+}
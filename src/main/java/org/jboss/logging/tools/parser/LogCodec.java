@@ -0,0 +1,62 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decompresses a compressed log file so it can be parsed without decompressing it to disk first. A codec is added to a
+ * parser with {@link Parser#addCodec(LogCodec)}, or to every parser by listing it in {@code
+ * META-INF/services/org.jboss.logging.tools.parser.LogCodec}. Gzip is supported by default.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public interface LogCodec {
+
+    /**
+     * The number of bytes at the start of a file passed to {@link #accept(byte[], int)}.
+     */
+    int HEADER_LENGTH = 16;
+
+    /**
+     * Checks the first bytes of a file, usually the magic number, to see if the file was compressed with this codec.
+     *
+     * @param header the first bytes of the file
+     * @param length the number of bytes read, less than {@link #HEADER_LENGTH} if the file is shorter
+     *
+     * @return {@code true} if the file was compressed with this codec, otherwise {@code false}
+     */
+    boolean accept(byte[] header, int length);
+
+    /**
+     * Creates a stream of the decompressed bytes.
+     *
+     * @param compressed the compressed stream
+     *
+     * @return the decompressed stream
+     *
+     * @throws IOException if an error occurs reading the stream
+     */
+    InputStream decompress(InputStream compressed) throws IOException;
+}
@@ -0,0 +1,98 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * Finds the codec a file was compressed with.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+final class LogCodecs {
+
+    private LogCodecs() {
+    }
+
+    /**
+     * The codecs every parser starts with, gzip followed by the codecs found with the {@link ServiceLoader}.
+     *
+     * @return the default codecs
+     */
+    static List<LogCodec> defaults() {
+        return Holder.DEFAULTS;
+    }
+
+    /**
+     * Finds the codec the file was compressed with.
+     *
+     * @param codecs the codecs to check, the first that accepts the file is returned
+     * @param file   the file
+     *
+     * @return the codec or {@code null} if the file is not compressed with any of the codecs
+     *
+     * @throws IOException if an error occurs reading the file
+     */
+    static LogCodec find(final List<LogCodec> codecs, final File file) throws IOException {
+        if (codecs.isEmpty()) {
+            return null;
+        }
+        final byte[] header = new byte[LogCodec.HEADER_LENGTH];
+        int length = 0;
+        final InputStream in = new FileInputStream(file);
+        try {
+            int read;
+            while (length < header.length && (read = in.read(header, length, header.length - length)) > 0) {
+                length += read;
+            }
+        } finally {
+            Parser.safeClose(in);
+        }
+        for (LogCodec codec : codecs) {
+            if (codec.accept(header, length)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    private static class Holder {
+        static final List<LogCodec> DEFAULTS;
+
+        static {
+            final List<LogCodec> codecs = new ArrayList<LogCodec>();
+            codecs.add(GzipCodec.INSTANCE);
+            for (LogCodec codec : ServiceLoader.load(LogCodec.class, LogCodecs.class.getClassLoader())) {
+                codecs.add(codec);
+            }
+            DEFAULTS = Collections.unmodifiableList(codecs);
+        }
+    }
+}
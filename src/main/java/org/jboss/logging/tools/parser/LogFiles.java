@@ -0,0 +1,193 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Finds sets of log files to parse together with {@link Parser#parse(java.util.Collection,
+ * java.util.concurrent.ExecutorService)}.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class LogFiles {
+
+    /**
+     * Sorts the files of a rotated set oldest first, by when they were last modified and then by name.
+     */
+    static final Comparator<File> OLDEST_FIRST = new Comparator<File>() {
+        @Override
+        public int compare(final File o1, final File o2) {
+            final long m1 = o1.lastModified();
+            final long m2 = o2.lastModified();
+            if (m1 != m2) {
+                return (m1 < m2 ? -1 : 1);
+            }
+            return o1.getName().compareTo(o2.getName());
+        }
+    };
+
+    // The suffixes of the rotated files, a number or a date and time, optionally compressed
+    private static final String ROTATION_SUFFIX = "(?:\\.(?:\\d+|\\d{4}-?\\d{2}-?\\d{2}(?:[-_.]?\\d{2}){0,3}(?:\\.\\d+)?)(?:\\.gz)?)?";
+
+    // The files written next to a log file by the indexes
+    private static final String[] INDEX_SUFFIXES = {".idx", ".tdx", ".tmp"};
+
+    private LogFiles() {
+    }
+
+    /**
+     * Lists the files in the directory whose names match the glob. The glob supports {@code *}, {@code ?}, {@code
+     * [...]} and {@code {a,b}}. The files are sorted by name.
+     *
+     * @param directory the directory
+     * @param glob      the glob the file names must match
+     *
+     * @return the matching files
+     */
+    public static List<File> list(final File directory, final String glob) {
+        final Pattern pattern = Pattern.compile(globToRegex(glob));
+        final File[] files = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(final File file) {
+                return file.isFile() && pattern.matcher(file.getName()).matches();
+            }
+        });
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        Arrays.sort(files);
+        return new ArrayList<File>(Arrays.asList(files));
+    }
+
+    /**
+     * Finds a log file and the files it was rotated to, the files in the same directory named after the log file with a
+     * number or a date appended, optionally gzipped. For example {@code server.log}, {@code server.log.1}, {@code
+     * server.log.2013-06-01} and {@code server.log.2.gz}. The index files written next to the log file, and other
+     * files whose names only start with the name of the log file, are not included.
+     * <p/>
+     * The files are sorted oldest first by when they were last modified, so the log file itself is usually last.
+     *
+     * @param log the log file
+     *
+     * @return the log file and the files it was rotated to
+     */
+    public static List<File> rotatedSet(final File log) {
+        final File absolute = log.getAbsoluteFile();
+        final String name = absolute.getName();
+        final File directory = absolute.getParentFile();
+        final Pattern pattern = Pattern.compile(Pattern.quote(name) + ROTATION_SUFFIX);
+        final File[] files = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(final File file) {
+                return file.isFile() && pattern.matcher(file.getName()).matches() && !isIndex(file.getName());
+            }
+        });
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        Arrays.sort(files, OLDEST_FIRST);
+        return new ArrayList<File>(Arrays.asList(files));
+    }
+
+    private static boolean isIndex(final String name) {
+        for (String suffix : INDEX_SUFFIXES) {
+            if (name.endsWith(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Converts a glob into a regular expression.
+     *
+     * @param glob the glob
+     *
+     * @return the regular expression
+     */
+    static String globToRegex(final String glob) {
+        final StringBuilder result = new StringBuilder(glob.length() * 2);
+        boolean inGroup = false;
+        boolean inClass = false;
+        for (int i = 0; i < glob.length(); i++) {
+            final char c = glob.charAt(i);
+            if (inClass) {
+                if (c == ']') {
+                    inClass = false;
+                    result.append(c);
+                } else if (c == '\\' || c == '[' || c == '&') {
+                    result.append('\\').append(c);
+                } else {
+                    result.append(c);
+                }
+                continue;
+            }
+            switch (c) {
+                case '*':
+                    result.append("[^/]*");
+                    break;
+                case '?':
+                    result.append("[^/]");
+                    break;
+                case '[':
+                    inClass = true;
+                    result.append('[');
+                    if (i + 1 < glob.length() && glob.charAt(i + 1) == '!') {
+                        result.append('^');
+                        i++;
+                    }
+                    break;
+                case '{':
+                    inGroup = true;
+                    result.append("(?:");
+                    break;
+                case '}':
+                    if (inGroup) {
+                        inGroup = false;
+                        result.append(')');
+                    } else {
+                        result.append("\\}");
+                    }
+                    break;
+                case ',':
+                    result.append(inGroup ? "|" : ",");
+                    break;
+                default:
+                    if (Character.isLetterOrDigit(c)) {
+                        result.append(c);
+                    } else {
+                        result.append('\\').append(c);
+                    }
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,472 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Follows a log file as it's written, like {@code tail -f}, passing the records appended to the file to a handler.
+ * <p/>
+ * The file is kept open and only the bytes appended since the last poll are read. Lines are numbered from the start
+ * of the file. A record is passed to the handler once the first line of the next record has been read, as until then
+ * continuation lines, like the rest of a stack trace, may still be appended to it. The last record of the file is
+ * passed once the file has been rotated or when {@link #follow() following} ends because the follower was closed.
+ * Complete records are passed in batches at least once per {@link #setMaxLatency(long) maximum latency}.
+ * <p/>
+ * The follower detects when the file has been rotated, either by being truncated, or by being renamed and replaced
+ * with a new file as the size and periodic rotating file handlers do. The rest of the rotated file is read and then
+ * the new file is followed from its start, with line numbers starting again at 1.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class LogFollower implements Closeable {
+
+    /**
+     * The default time to wait between polls in milliseconds.
+     */
+    public static final long DEFAULT_POLL_INTERVAL = 500L;
+
+    /**
+     * The default maximum number of results in a batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /**
+     * The default maximum time in milliseconds a result waits before being passed to the handler.
+     */
+    public static final long DEFAULT_MAX_LATENCY = 1000L;
+
+    /**
+     * The default maximum number of bytes read by one poll.
+     */
+    public static final int DEFAULT_MAX_READ_SIZE = 4 * 1024 * 1024;
+
+    // The bytes at the start of the file used to detect the file has been replaced
+    private static final int FINGERPRINT_SIZE = 512;
+
+    private final Parser parser;
+    private final File file;
+    private final LogResultBatchHandler handler;
+    private final Charset charset;
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    private final List<LogResult> batch = new ArrayList<LogResult>();
+    private final RecordAssembler assembler;
+    private long pollInterval = DEFAULT_POLL_INTERVAL;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private long maxLatency = DEFAULT_MAX_LATENCY;
+    private int maxReadSize = DEFAULT_MAX_READ_SIZE;
+    private boolean fromEnd;
+    // Guards opening and closing the file, which may be closed from another thread
+    private final Object lock = new Object();
+    private volatile boolean closed;
+    private volatile RandomAccessFile raf;
+    private volatile FileChannel channel;
+    private long position;
+    private int lineNumber;
+    private byte[] line = new byte[256];
+    private int lineLength;
+    private byte[] fingerprint = new byte[0];
+    private long batchStart;
+    // Whether the last poll stopped reading before the end of the file
+    private boolean behind;
+    // Whether the handler stopped following
+    private boolean stopped;
+
+    /**
+     * Creates a new follower.
+     *
+     * @param parser  the parser for the log records
+     * @param file    the log file
+     * @param handler the handler to pass the results to
+     */
+    public LogFollower(final Parser parser, final File file, final LogResultBatchHandler handler) {
+        this.parser = parser;
+        this.file = file;
+        this.handler = handler;
+        charset = Charset.defaultCharset();
+        assembler = new RecordAssembler(new LogResultHandler() {
+            @Override
+            public boolean handle(final LogResult result) {
+                if (batch.isEmpty()) {
+                    batchStart = System.currentTimeMillis();
+                }
+                batch.add(result);
+                // A full batch is passed on while reading so a large read does not hold all its results
+                return batch.size() < batchSize || handleBatch();
+            }
+        });
+    }
+
+    /**
+     * Follows the file until the follower is closed, the handler stops following or the thread is interrupted.
+     *
+     * @throws IOException if an error occurs reading the file
+     */
+    public void follow() throws IOException {
+        try {
+            while (!closed) {
+                if (!poll()) {
+                    break;
+                }
+                // Keep reading without waiting if the last poll did not reach the end of the file
+                if (!behind) {
+                    Thread.sleep(pollInterval);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while following " + file);
+        } catch (IOException e) {
+            // Closing the follower from another thread closes the file being read
+            if (!closed) {
+                throw e;
+            }
+        } finally {
+            close();
+        }
+        // Closed while following, the last record is complete
+        if (!stopped) {
+            assembler.flush();
+            if (!stopped && !batch.isEmpty()) {
+                handleBatch();
+            }
+        }
+    }
+
+    /**
+     * Reads the bytes appended to the file since the last poll, up to the {@link #setMaxReadSize(int) maximum read
+     * size}, and passes the results to the handler each time the batch is full or once the maximum latency has passed.
+     * The file is opened on the first poll.
+     *
+     * @return {@code false} if the follower was closed or the handler stopped following, otherwise {@code true}
+     *
+     * @throws IOException if an error occurs reading the file
+     */
+    public boolean poll() throws IOException {
+        if (closed) {
+            return false;
+        }
+        if (channel == null) {
+            if (!file.exists()) {
+                return true;
+            }
+            if (!open(fromEnd)) {
+                return false;
+            }
+        } else if (isRotated()) {
+            // Finish the rotated file before following the new file
+            read(Long.MAX_VALUE);
+            if (!stopped && (lineLength == 0 || endLine())) {
+                assembler.flush();
+            }
+            if (stopped) {
+                close();
+                return false;
+            }
+            safeCloseChannel();
+            if (!open(false)) {
+                return false;
+            }
+        }
+        final long start = position;
+        read(maxReadSize);
+        behind = position - start >= maxReadSize;
+        if (!stopped && !batch.isEmpty() && System.currentTimeMillis() - batchStart >= maxLatency) {
+            handleBatch();
+        }
+        if (stopped) {
+            close();
+            return false;
+        }
+        return !closed;
+    }
+
+    /**
+     * Stops following the file and closes it. May be invoked from another thread to stop {@link #follow() following},
+     * in which case the results that have not been passed to the handler, including the last record, are passed before
+     * {@code follow()} returns. Otherwise the results that have not been passed are discarded.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+        }
+        safeCloseChannel();
+    }
+
+    /**
+     * The time to wait between polls when {@link #follow() following} the file.
+     *
+     * @return the poll interval in milliseconds
+     */
+    public long getPollInterval() {
+        return pollInterval;
+    }
+
+    /**
+     * Sets the time to wait between polls when {@link #follow() following} the file.
+     *
+     * @param pollInterval the poll interval in milliseconds
+     */
+    public void setPollInterval(final long pollInterval) {
+        this.pollInterval = pollInterval;
+    }
+
+    /**
+     * The maximum number of results passed to the handler at once.
+     *
+     * @return the batch size
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the maximum number of results passed to the handler at once. A batch is passed to the handler as soon as it
+     * is full, even while a poll is still reading the file.
+     *
+     * @param batchSize the batch size
+     */
+    public void setBatchSize(final int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * The maximum time a complete record waits to be passed to the handler. The last record read is not complete until
+     * the first line of the next record has been read.
+     *
+     * @return the maximum latency in milliseconds
+     */
+    public long getMaxLatency() {
+        return maxLatency;
+    }
+
+    /**
+     * Sets the maximum time a complete record waits to be passed to the handler. The latency is only checked when the file is
+     * polled, so it should be longer than the poll interval.
+     *
+     * @param maxLatency the maximum latency in milliseconds
+     */
+    public void setMaxLatency(final long maxLatency) {
+        this.maxLatency = maxLatency;
+    }
+
+    /**
+     * The maximum number of bytes read from the file by one poll.
+     *
+     * @return the maximum read size
+     */
+    public int getMaxReadSize() {
+        return maxReadSize;
+    }
+
+    /**
+     * Sets the maximum number of bytes read from the file by one poll, which bounds the time a poll takes when a lot
+     * has been appended, for example on the first poll of a large file. When {@link #follow() following} the next poll
+     * starts without waiting if the last poll did not reach the end of the file.
+     *
+     * @param maxReadSize the maximum read size
+     */
+    public void setMaxReadSize(final int maxReadSize) {
+        this.maxReadSize = maxReadSize;
+    }
+
+    /**
+     * Indicates whether the follower starts at the end of the file.
+     *
+     * @return {@code true} if only records written after the file is opened are followed, otherwise {@code false}
+     */
+    public boolean isFromEnd() {
+        return fromEnd;
+    }
+
+    /**
+     * Sets whether the follower starts at the end of the file, only following records written after the file is
+     * opened, or at the start of the file. Must be set before the first poll.
+     *
+     * @param fromEnd {@code true} to start at the end of the file
+     */
+    public void setFromEnd(final boolean fromEnd) {
+        this.fromEnd = fromEnd;
+    }
+
+    /**
+     * Opens the file.
+     *
+     * @return {@code false} if the follower has been closed, otherwise {@code true}
+     */
+    private boolean open(final boolean atEnd) throws IOException {
+        final RandomAccessFile opened = new RandomAccessFile(file, "r");
+        final FileChannel openedChannel = opened.getChannel();
+        synchronized (lock) {
+            if (closed) {
+                Parser.safeClose(opened);
+                return false;
+            }
+            raf = opened;
+            channel = openedChannel;
+        }
+        position = 0L;
+        lineNumber = 0;
+        lineLength = 0;
+        fingerprint = new byte[0];
+        if (atEnd) {
+            position = openedChannel.size();
+            lineNumber = MappedLineReader.countLines(file, position);
+            updateFingerprint(openedChannel);
+        }
+        return true;
+    }
+
+    /**
+     * Reads the appended bytes, stopping early if the handler stops following.
+     *
+     * @param limit the maximum number of bytes to read
+     *
+     * @return {@code true} if any bytes were read, otherwise {@code false}
+     */
+    private boolean read(final long limit) throws IOException {
+        // A close from another thread clears the field, a read already started fails as the channel is closed
+        final FileChannel channel = this.channel;
+        if (channel == null) {
+            return false;
+        }
+        final long start = position;
+        int read;
+        buffer.clear();
+        buffer.limit((int) Math.min(buffer.capacity(), limit));
+        while (!stopped && (read = channel.read(buffer, position)) > 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                final byte b = buffer.get();
+                if (b == '\n') {
+                    if (!endLine()) {
+                        break;
+                    }
+                } else {
+                    if (lineLength == line.length) {
+                        line = Arrays.copyOf(line, lineLength * 2);
+                    }
+                    line[lineLength++] = b;
+                }
+            }
+            // Only the bytes handled are read, the rest are read again by the next poll
+            position += buffer.position();
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), limit - (position - start)));
+            if (!buffer.hasRemaining()) {
+                break;
+            }
+        }
+        if (fingerprint.length < FINGERPRINT_SIZE && position > fingerprint.length) {
+            updateFingerprint(channel);
+        }
+        return position > start;
+    }
+
+    /**
+     * Parses the line that has been read.
+     *
+     * @return {@code false} if the handler stopped following, otherwise {@code true}
+     */
+    private boolean endLine() {
+        int len = lineLength;
+        if (len > 0 && line[len - 1] == '\r') {
+            len--;
+        }
+        final String text = new String(line, 0, len, charset);
+        lineLength = 0;
+        return assembler.add(text, parser.parseRecord(++lineNumber, text));
+    }
+
+    /**
+     * Passes the batch to the handler.
+     *
+     * @return {@code false} if the handler stopped following, otherwise {@code true}
+     */
+    private boolean handleBatch() {
+        final List<LogResult> results = new ArrayList<LogResult>(batch);
+        batch.clear();
+        if (!handler.handle(results)) {
+            stopped = true;
+        }
+        return !stopped;
+    }
+
+    /**
+     * Checks whether the file has been truncated or replaced. The open file is compared with the file at the path.
+     */
+    private boolean isRotated() throws IOException {
+        if (!file.exists()) {
+            // The file has been renamed and not yet replaced
+            return false;
+        }
+        if (file.length() < position) {
+            return true;
+        }
+        final RandomAccessFile current = new RandomAccessFile(file, "r");
+        try {
+            final byte[] bytes = new byte[fingerprint.length];
+            current.readFully(bytes);
+            return !Arrays.equals(bytes, fingerprint);
+        } catch (EOFException e) {
+            // Truncated since the length was checked
+            return true;
+        } finally {
+            Parser.safeClose(current);
+        }
+    }
+
+    private void updateFingerprint(final FileChannel channel) throws IOException {
+        final int size = (int) Math.min(FINGERPRINT_SIZE, position);
+        final ByteBuffer bytes = ByteBuffer.allocate(size);
+        while (bytes.hasRemaining() && channel.read(bytes, bytes.position()) > 0) {
+            // read until full
+        }
+        fingerprint = Arrays.copyOf(bytes.array(), bytes.position());
+    }
+
+    private void safeCloseChannel() {
+        final FileChannel closedChannel;
+        final RandomAccessFile closedFile;
+        synchronized (lock) {
+            closedChannel = channel;
+            closedFile = raf;
+            channel = null;
+            raf = null;
+        }
+        Parser.safeClose(closedChannel);
+        Parser.safeClose(closedFile);
+    }
+}
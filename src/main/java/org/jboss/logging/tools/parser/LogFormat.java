@@ -0,0 +1,280 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A compiled format pattern. A format is immutable and thread-safe, so it can be shared by any number of {@link
+ * Parser parsers}, which hold the state of a query like the filters and the maximum number of results.
+ * <p/>
+ * The formats are cached by pattern, the least recently used formats are evicted once the cache is full.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public final class LogFormat {
+
+    /**
+     * The maximum number of formats cached.
+     */
+    static final int CACHE_SIZE = 64;
+
+    /**
+     * The regular expression for format strings.  Ain't regex grand?
+     */
+    private static final Pattern FORMAT_PATTERN = Pattern.compile(
+            // greedily match all non-format characters
+            "([^%]++)" +
+                    // match a format string...
+                    "|(?:%" +
+                    // optional minimum width plus justify flag
+                    "(?:(-)?(\\d+))?" +
+                    // optional maximum width
+                    "(?:\\.(\\d+))?" +
+                    // the actual format character
+                    "(.)" +
+                    // an optional argument string
+                    "(?:\\{([^}]*)\\})?" +
+                    // end format string
+                    ")"
+    );
+
+    private static final Map<String, LogFormat> CACHE = new LinkedHashMap<String, LogFormat>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, LogFormat> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private final String formatPattern;
+    private final List<FormatPart> parts;
+    // The format parts for each group in the pattern
+    private final List<FormatPart> groups;
+    private final Pattern pattern;
+    private final FormatTokenizer tokenizer;
+    private final RecordStartMatcher recordStartMatcher;
+    private final boolean useNewLine;
+
+    private LogFormat(final String formatPattern) {
+        this.formatPattern = formatPattern;
+        final List<FormatPart> parts = new ArrayList<FormatPart>();
+        final List<FormatPart> groups = new ArrayList<FormatPart>();
+        final FormatTokenizer.Builder tokenizerBuilder = new FormatTokenizer.Builder();
+        final StringBuilder stringPattern = new StringBuilder();
+        final StringBuilder prefix = new StringBuilder();
+        final Matcher formatMatcher = FORMAT_PATTERN.matcher(formatPattern);
+        boolean useNewLine = false;
+        boolean leadingNewLine = false;
+        while (formatMatcher.find()) {
+            final String otherText = formatMatcher.group(1);
+            if (otherText != null) {
+                stringPattern.append(sanitize(otherText));
+                tokenizerBuilder.appendLiteral(otherText);
+                if (groups.isEmpty()) {
+                    prefix.append(otherText);
+                }
+            } else {
+                final String hyphen = formatMatcher.group(2);
+                final String minWidthString = formatMatcher.group(3);
+                final String maxWidthString = formatMatcher.group(4);
+                final String formatCharString = formatMatcher.group(5);
+                final String argument = formatMatcher.group(6);
+                final int minimumWidth = minWidthString == null ? 0 : Integer.parseInt(minWidthString);
+                final boolean leftJustify = hyphen != null;
+                final int maximumWidth = maxWidthString == null ? 0 : Integer.parseInt(maxWidthString);
+                final char formatChar = formatCharString.charAt(0);
+                final FormatType formatType = FormatType.fromChar(formatChar);
+                if (formatType == FormatType.NEW_LINE) useNewLine = true;
+                if (groups.isEmpty()) {
+                    if (formatType == FormatType.PERCENTAGE) {
+                        prefix.append('%');
+                    } else if (formatType == FormatType.NEW_LINE) {
+                        leadingNewLine = true;
+                    }
+                }
+                final FormatPart formatPart = new FormatPart(formatType, argument, leftJustify, minimumWidth, maximumWidth);
+                parts.add(formatPart);
+                tokenizerBuilder.appendPart(formatPart, groups.size());
+                if (formatType != FormatType.NEW_LINE && formatType != FormatType.PERCENTAGE) {
+                    groups.add(formatPart);
+                }
+                stringPattern.append(formatType.toPattern());
+            }
+        }
+        this.parts = Collections.unmodifiableList(parts);
+        this.groups = Collections.unmodifiableList(groups);
+        this.useNewLine = useNewLine;
+        pattern = Pattern.compile(stringPattern.toString());
+        tokenizer = tokenizerBuilder.build();
+        // The first line of a record cannot be checked if the format starts with a new line
+        recordStartMatcher = (leadingNewLine ? null : RecordStartMatcher.of(prefix.toString(), groups.isEmpty() ? null : groups.get(0)));
+    }
+
+    /**
+     * Returns the compiled format for the pattern, compiling the pattern if it is not in the cache.
+     *
+     * @param formatPattern the pattern the log output was written with
+     *
+     * @return the compiled format
+     */
+    public static LogFormat of(final String formatPattern) {
+        synchronized (CACHE) {
+            final LogFormat format = CACHE.get(formatPattern);
+            if (format != null) {
+                return format;
+            }
+        }
+        // Compile outside the lock, a pattern compiled by two threads at once is only cached once
+        final LogFormat format = compile(formatPattern);
+        synchronized (CACHE) {
+            final LogFormat existing = CACHE.get(formatPattern);
+            if (existing != null) {
+                return existing;
+            }
+            CACHE.put(formatPattern, format);
+        }
+        return format;
+    }
+
+    /**
+     * Compiles the pattern without looking it up in or adding it to the cache, for example for a pattern only used
+     * once.
+     *
+     * @param formatPattern the pattern the log output was written with
+     *
+     * @return the compiled format
+     */
+    public static LogFormat compile(final String formatPattern) {
+        return new LogFormat(formatPattern);
+    }
+
+    /**
+     * Returns the pattern the format was compiled from.
+     *
+     * @return the format pattern
+     */
+    public String getFormatPattern() {
+        return formatPattern;
+    }
+
+    /**
+     * Returns the parts of the format, including the parts that have no value like a new line.
+     *
+     * @return an unmodifiable list of the format parts
+     */
+    public List<FormatPart> getFormatParts() {
+        return parts;
+    }
+
+    /**
+     * The format parts for each group in the pattern, the parts that have a value.
+     *
+     * @return an unmodifiable list of the format parts
+     */
+    List<FormatPart> getGroups() {
+        return groups;
+    }
+
+    Pattern getPattern() {
+        return pattern;
+    }
+
+    /**
+     * The tokenizer for the format.
+     *
+     * @return the tokenizer or {@code null} if the format can't be tokenized
+     */
+    FormatTokenizer getTokenizer() {
+        return tokenizer;
+    }
+
+    /**
+     * The matcher of the first line of a record.
+     *
+     * @return the matcher or {@code null} if the format starts with a new line
+     */
+    RecordStartMatcher getRecordStartMatcher() {
+        return recordStartMatcher;
+    }
+
+    /**
+     * Indicates whether the format contains a new line.
+     *
+     * @return {@code true} if the format contains a new line, otherwise {@code false}
+     */
+    boolean isUseNewLine() {
+        return useNewLine;
+    }
+
+    @Override
+    public int hashCode() {
+        return formatPattern.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return obj == this || (obj instanceof LogFormat && formatPattern.equals(((LogFormat) obj).formatPattern));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[%s]", getClass().getSimpleName(), formatPattern);
+    }
+
+    static String sanitize(final String pattern) {
+        final StringBuilder result = new StringBuilder();
+        for (char c : pattern.toCharArray()) {
+            switch (c) {
+                case '\\':
+                case '(':
+                case ')':
+                case '[':
+                case ']':
+                case '{':
+                case '}':
+                case '$':
+                case '^':
+                case '.':
+                case '*':
+                case '+':
+                case '|':
+                case '?':
+                    result.append('\\').append(c);
+                    break;
+                case '\t':
+                    result.append("\\t");
+                    break;
+                default:
+                    result.append(c);
+                    break;
+            }
+        }
+        return result.toString();
+    }
+}
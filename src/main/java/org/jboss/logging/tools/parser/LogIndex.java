@@ -0,0 +1,566 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A sparse index of a log file stored in a file next to the log file.
+ * <p/>
+ * The log file is divided into blocks of roughly {@value #BLOCK_SIZE} bytes that start at the beginning of a line.
+ * For each block the index records the byte offset, the number of lines before the block, the first and last date,
+ * the levels and the categories of the records in the block. A {@link Parser} uses the index to skip the blocks that
+ * cannot contain a record accepted by the {@link LevelFilter level}, {@link CategoryFilter category} or {@link
+ * DateTimeFilter date} filters.
+ * <p/>
+ * The index is extended when the log file grows. If the log file has been replaced, for example when it has been
+ * rotated, the index is rebuilt.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class LogIndex {
+
+    /**
+     * The approximate size of a block of the log file.
+     */
+    public static final int BLOCK_SIZE = 256 * 1024;
+
+    private static final int MAGIC = 0x4c504958;
+    private static final int VERSION = 1;
+    static final int FINGERPRINT_SIZE = 4096;
+
+    private final File logFile;
+    private final String formatPattern;
+    private final List<String> levels;
+    private final Map<String, Integer> levelIds;
+    private final List<String> categories;
+    private final Map<String, Integer> categoryIds;
+    private final List<Block> blocks;
+    private long indexedLength;
+    private int lineCount;
+    private int fingerprintSize;
+    private long fingerprint;
+
+    private LogIndex(final File logFile, final String formatPattern) {
+        this.logFile = logFile;
+        this.formatPattern = formatPattern;
+        levels = new ArrayList<String>();
+        levelIds = new HashMap<String, Integer>();
+        categories = new ArrayList<String>();
+        categoryIds = new HashMap<String, Integer>();
+        blocks = new ArrayList<Block>();
+    }
+
+    /**
+     * Opens the index for the log file, creating or extending the index if required, and writes the index to the
+     * {@link #getIndexFile(java.io.File) index file}.
+     *
+     * @param logFile       the log file
+     * @param formatPattern the pattern the log file was written with
+     *
+     * @return the index
+     *
+     * @throws IOException if an error occurs reading the log file or reading or writing the index file
+     */
+    public static LogIndex open(final File logFile, final String formatPattern) throws IOException {
+        final File indexFile = getIndexFile(logFile);
+        LogIndex index = null;
+        if (indexFile.exists()) {
+            index = read(logFile, indexFile);
+            if (index != null && (!index.formatPattern.equals(formatPattern) || !index.isValid())) {
+                index = null;
+            }
+        }
+        if (index == null) {
+            index = new LogIndex(logFile, formatPattern);
+        }
+        if (index.update()) {
+            index.write(indexFile);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the file the index for the log file is stored in.
+     *
+     * @param logFile the log file
+     *
+     * @return the index file
+     */
+    public static File getIndexFile(final File logFile) {
+        return new File(logFile.getPath() + ".idx");
+    }
+
+    /**
+     * Indexes the lines added to the log file since the index was last updated. Only complete lines are indexed.
+     *
+     * @return {@code true} if the index was changed, otherwise {@code false}
+     *
+     * @throws IOException if an error occurs reading the log file
+     */
+    public boolean update() throws IOException {
+        if (!isValid()) {
+            clear();
+        }
+        final long end = lastLineEnd(logFile, indexedLength);
+        if (end <= indexedLength) {
+            return false;
+        }
+        // Re-index the last block as it may not be full
+        long start = 0L;
+        int lineBase = 0;
+        if (!blocks.isEmpty()) {
+            final Block last = blocks.remove(blocks.size() - 1);
+            start = last.offset;
+            lineBase = last.lineNumber;
+        }
+        final Parser parser = Parser.of(formatPattern);
+        final int levelGroup = parser.findGroup(FormatType.LEVEL);
+        final int categoryGroup = parser.findGroup(FormatType.CATEGORY);
+        final int dateGroup = parser.findGroup(FormatType.DATE);
+        final int[] bounds = new int[parser.getGroupCount() * 2];
+        final MappedLineReader reader = new MappedLineReader(logFile, start, end, Charset.defaultCharset());
+        try {
+            BlockBuilder builder = null;
+            CharSequence line;
+            while ((line = reader.readLine()) != null) {
+                if (builder == null) {
+                    builder = new BlockBuilder(reader.getLineOffset(), lineBase + reader.getLineNumber() - 1);
+                }
+                if (parser.isRecordStart(line) && parser.tokenize(line, bounds)) {
+                    if (levelGroup >= 0) {
+                        builder.addLevel(id(levels, levelIds, parser.value(line, bounds, levelGroup)));
+                    }
+                    if (categoryGroup >= 0) {
+                        builder.categories.set(id(categories, categoryIds, parser.value(line, bounds, categoryGroup)));
+                    }
+                    if (dateGroup >= 0) {
+                        builder.addDate(parser.value(line, bounds, dateGroup));
+                    }
+                }
+                if (reader.getPosition() - builder.offset >= BLOCK_SIZE) {
+                    blocks.add(builder.build());
+                    builder = null;
+                }
+            }
+            if (builder != null) {
+                blocks.add(builder.build());
+            }
+            lineCount = lineBase + reader.getLineNumber();
+        } finally {
+            Parser.safeClose(reader);
+        }
+        indexedLength = end;
+        fingerprintSize = (int) Math.min(FINGERPRINT_SIZE, end);
+        fingerprint = fingerprint(logFile, fingerprintSize);
+        return true;
+    }
+
+    /**
+     * The log file this index is for.
+     *
+     * @return the log file
+     */
+    public File getLogFile() {
+        return logFile;
+    }
+
+    /**
+     * The pattern the log file was written with.
+     *
+     * @return the format pattern
+     */
+    public String getFormatPattern() {
+        return formatPattern;
+    }
+
+    /**
+     * The number of bytes of the log file that have been indexed.
+     *
+     * @return the indexed length
+     */
+    public long getIndexedLength() {
+        return indexedLength;
+    }
+
+    /**
+     * The number of lines that have been indexed.
+     *
+     * @return the number of lines
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Checks that the indexed part of the log file has not been changed, by checking the length and the first bytes of
+     * the log file.
+     *
+     * @return {@code true} if the index can be used for the log file, otherwise {@code false}
+     *
+     * @throws IOException if an error occurs reading the log file
+     */
+    public boolean isValid() throws IOException {
+        return logFile.length() >= indexedLength && fingerprint(logFile, fingerprintSize) == fingerprint;
+    }
+
+    /**
+     * Writes the index.
+     *
+     * @param indexFile the file to write the index to
+     *
+     * @throws IOException if an error occurs writing the file
+     */
+    public void write(final File indexFile) throws IOException {
+        final File tmp = new File(indexFile.getPath() + ".tmp");
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(new FileOutputStream(tmp))));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(formatPattern);
+            out.writeLong(indexedLength);
+            out.writeInt(lineCount);
+            out.writeInt(fingerprintSize);
+            out.writeLong(fingerprint);
+            writeStrings(out, levels);
+            writeStrings(out, categories);
+            out.writeInt(blocks.size());
+            for (Block block : blocks) {
+                out.writeLong(block.offset);
+                out.writeInt(block.lineNumber);
+                out.writeUTF(block.firstDate == null ? "" : block.firstDate);
+                out.writeUTF(block.lastDate == null ? "" : block.lastDate);
+                out.writeLong(block.levels);
+                out.writeInt(block.categories.length);
+                for (int id : block.categories) {
+                    out.writeInt(id);
+                }
+            }
+        } finally {
+            Parser.safeClose(out);
+        }
+        if (!tmp.renameTo(indexFile)) {
+            indexFile.delete();
+            if (!tmp.renameTo(indexFile)) {
+                throw new IOException("Could not write index file " + indexFile);
+            }
+        }
+    }
+
+    /**
+     * Reads the index file.
+     *
+     * @param logFile   the log file the index is for
+     * @param indexFile the index file
+     *
+     * @return the index or {@code null} if the file is not an index file or was written by a different version
+     *
+     * @throws IOException if an error occurs reading the file
+     */
+    static LogIndex read(final File logFile, final File indexFile) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(new FileInputStream(indexFile))));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            final LogIndex index = new LogIndex(logFile, in.readUTF());
+            index.indexedLength = in.readLong();
+            index.lineCount = in.readInt();
+            index.fingerprintSize = in.readInt();
+            index.fingerprint = in.readLong();
+            readStrings(in, index.levels, index.levelIds);
+            readStrings(in, index.categories, index.categoryIds);
+            final int blockCount = in.readInt();
+            for (int i = 0; i < blockCount; i++) {
+                final long offset = in.readLong();
+                final int lineNumber = in.readInt();
+                final String firstDate = in.readUTF();
+                final String lastDate = in.readUTF();
+                final long levels = in.readLong();
+                final int[] categories = new int[in.readInt()];
+                for (int j = 0; j < categories.length; j++) {
+                    categories[j] = in.readInt();
+                }
+                index.blocks.add(new Block(offset, lineNumber, firstDate.length() == 0 ? null : firstDate,
+                        lastDate.length() == 0 ? null : lastDate, levels, categories));
+            }
+            return index;
+        } catch (IOException e) {
+            // A corrupt index is rebuilt
+            return null;
+        } finally {
+            Parser.safeClose(in);
+        }
+    }
+
+    /**
+     * Finds the ranges of the log file that may contain records accepted by the parser's filters.
+     *
+     * @param parser the parser
+     *
+     * @return the ranges of the log file as pairs of start and end offsets with the number of lines before each range
+     */
+    List<Range> findRanges(final Parser parser) {
+        final boolean[] acceptedLevels = accepted(parser, FormatType.LEVEL, levels);
+        final boolean[] acceptedCategories = accepted(parser, FormatType.CATEGORY, categories);
+        final DateTimeFilter dateFilter = parser.findDateTimeFilter();
+        final FormatPart datePart = (dateFilter == null ? null : parser.getGroup(parser.findGroup(FormatType.DATE)));
+        final List<Range> ranges = new ArrayList<Range>();
+        Range current = null;
+        for (int i = 0; i < blocks.size(); i++) {
+            final Block block = blocks.get(i);
+            boolean candidate = block.acceptsLevel(acceptedLevels) && block.acceptsCategory(acceptedCategories);
+            if (candidate && datePart != null && parser.isDateOrdered()) {
+                if (block.firstDate != null && dateFilter.compare(datePart, block.firstDate) == DateTimeFilter.AFTER) {
+                    // The rest of the blocks are after the date range
+                    break;
+                }
+                candidate = block.lastDate == null || dateFilter.compare(datePart, block.lastDate) != DateTimeFilter.BEFORE;
+            }
+            if (candidate) {
+                final long end = (i + 1 < blocks.size() ? blocks.get(i + 1).offset : indexedLength);
+                if (current != null && current.end == block.offset) {
+                    current.end = end;
+                } else {
+                    current = new Range(block.offset, end, block.lineNumber);
+                    ranges.add(current);
+                }
+            }
+        }
+        return ranges;
+    }
+
+    private void clear() {
+        levels.clear();
+        levelIds.clear();
+        categories.clear();
+        categoryIds.clear();
+        blocks.clear();
+        indexedLength = 0L;
+        lineCount = 0;
+        fingerprintSize = 0;
+        fingerprint = 0L;
+    }
+
+    /**
+     * Finds the end of the last complete line of the log file, a line being written may not be complete.
+     *
+     * @param logFile the log file
+     * @param start   the offset to search back to
+     *
+     * @return the offset after the last line terminator or {@code start} if there is no complete line after it
+     */
+    static long lastLineEnd(final File logFile, final long start) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(logFile, "r");
+        try {
+            final byte[] buffer = new byte[8192];
+            long end = raf.length();
+            while (end > start) {
+                final int len = (int) Math.min(buffer.length, end - start);
+                raf.seek(end - len);
+                raf.readFully(buffer, 0, len);
+                for (int i = len - 1; i >= 0; i--) {
+                    if (buffer[i] == '\n') {
+                        return end - len + i + 1;
+                    }
+                }
+                end -= len;
+            }
+            return start;
+        } finally {
+            Parser.safeClose(raf);
+        }
+    }
+
+    private static boolean[] accepted(final Parser parser, final FormatType formatType, final List<String> values) {
+        final int group = parser.findGroup(formatType);
+        final FilterPlan filterPlan = parser.getFilterPlan();
+        if (!filterPlan.isFiltered(group)) {
+            return null;
+        }
+        final boolean[] result = new boolean[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = filterPlan.partial(group, values.get(i)) != FilterPlan.REJECT;
+        }
+        return result;
+    }
+
+    private static int id(final List<String> values, final Map<String, Integer> ids, final String value) {
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = values.size();
+            values.add(value);
+            ids.put(value, id);
+        }
+        return id;
+    }
+
+    /**
+     * Computes a checksum of the first bytes of the file.
+     *
+     * @param file the file
+     * @param size the number of bytes
+     *
+     * @return the checksum or {@code -1} if the file is shorter than the size
+     */
+    static long fingerprint(final File file, final int size) throws IOException {
+        final byte[] bytes = new byte[size];
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            if (raf.length() < size) {
+                return -1L;
+            }
+            raf.readFully(bytes);
+        } finally {
+            Parser.safeClose(raf);
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+
+    private static void writeStrings(final DataOutputStream out, final List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static void readStrings(final DataInputStream in, final List<String> values, final Map<String, Integer> ids) throws IOException {
+        final int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            id(values, ids, in.readUTF());
+        }
+    }
+
+    /**
+     * A range of the log file.
+     */
+    static class Range {
+        final long start;
+        long end;
+        final int lineNumber;
+
+        Range(final long start, final long end, final int lineNumber) {
+            this.start = start;
+            this.end = end;
+            this.lineNumber = lineNumber;
+        }
+    }
+
+    private static class Block {
+        // Levels with an id of 64 or more set every bit
+        private static final int MAX_LEVELS = 64;
+
+        final long offset;
+        final int lineNumber;
+        final String firstDate;
+        final String lastDate;
+        final long levels;
+        final int[] categories;
+
+        Block(final long offset, final int lineNumber, final String firstDate, final String lastDate, final long levels, final int[] categories) {
+            this.offset = offset;
+            this.lineNumber = lineNumber;
+            this.firstDate = firstDate;
+            this.lastDate = lastDate;
+            this.levels = levels;
+            this.categories = categories;
+        }
+
+        boolean acceptsLevel(final boolean[] accepted) {
+            if (accepted == null || levels == -1L) {
+                return true;
+            }
+            for (int i = 0; i < accepted.length && i < MAX_LEVELS; i++) {
+                if (accepted[i] && (levels & (1L << i)) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean acceptsCategory(final boolean[] accepted) {
+            if (accepted == null) {
+                return true;
+            }
+            for (int id : categories) {
+                if (accepted[id]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class BlockBuilder {
+        final long offset;
+        final int lineNumber;
+        final BitSet categories = new BitSet();
+        String firstDate;
+        String lastDate;
+        long levels;
+
+        BlockBuilder(final long offset, final int lineNumber) {
+            this.offset = offset;
+            this.lineNumber = lineNumber;
+        }
+
+        void addLevel(final int id) {
+            levels |= (id < Block.MAX_LEVELS ? 1L << id : -1L);
+        }
+
+        void addDate(final String date) {
+            if (firstDate == null) {
+                firstDate = date;
+            }
+            lastDate = date;
+        }
+
+        Block build() {
+            final int[] ids = new int[categories.cardinality()];
+            int i = 0;
+            for (int id = categories.nextSetBit(0); id >= 0; id = categories.nextSetBit(id + 1)) {
+                ids[i++] = id;
+            }
+            return new Block(offset, lineNumber, firstDate, lastDate, levels, ids);
+        }
+    }
+}
@@ -22,7 +22,9 @@
 
 package org.jboss.logging.tools.parser;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -33,12 +35,104 @@ public class LogResult implements Iterable<LogRecordPart> {
 
     private final int lineNumber;
     private final String text;
-    private final List<LogRecordPart> parts;
+    // The parts are created from the bounds of the values in the text when they are first requested
+    private final List<FormatPart> groups;
+    private final int[] bounds;
+    private final ValueDictionary dictionary;
+    private final File source;
+    private volatile List<LogRecordPart> parts;
 
     protected LogResult(final int lineNumber, final List<LogRecordPart> parts, final String text) {
+        this(lineNumber, text, parts, null, null, null, null);
+    }
+
+    /**
+     * Creates a result with the parts created from the text when they are first requested.
+     *
+     * @param lineNumber the line number
+     * @param text       the text of the record
+     * @param groups     the format parts of the values
+     * @param bounds     the start and end of the value of each format part in the text
+     * @param dictionary the dictionary to share values through or {@code null}
+     */
+    LogResult(final int lineNumber, final String text, final List<FormatPart> groups, final int[] bounds, final ValueDictionary dictionary) {
+        this(lineNumber, text, null, groups, bounds, dictionary, null);
+    }
+
+    private LogResult(final int lineNumber, final String text, final List<LogRecordPart> parts, final List<FormatPart> groups,
+                      final int[] bounds, final ValueDictionary dictionary, final File source) {
         this.lineNumber = lineNumber;
         this.text = text;
         this.parts = parts;
+        this.groups = groups;
+        this.bounds = bounds;
+        this.dictionary = dictionary;
+        this.source = source;
+    }
+
+    /**
+     * Creates a copy of this result with a different line number.
+     *
+     * @param lineNumber the new line number
+     *
+     * @return the new result
+     */
+    LogResult withLineNumber(final int lineNumber) {
+        return copy(lineNumber, text, parts, bounds);
+    }
+
+    /**
+     * Creates a copy of this result read from the file.
+     *
+     * @param source the file the result was read from
+     *
+     * @return the new result
+     */
+    LogResult withSource(final File source) {
+        final List<LogRecordPart> current = parts;
+        return new LogResult(lineNumber, text, current, (current == null ? groups : null), (current == null ? bounds : null), dictionary, source);
+    }
+
+    /**
+     * Creates a copy of this result with the lines following the first line of the record. The lines are added to the
+     * exception, or the message if the format has no exception, and to the text.
+     *
+     * @param lines the following lines separated by a new line
+     *
+     * @return the new result
+     */
+    LogResult withContinuation(final String lines) {
+        final String newText = text + '\n' + lines;
+        final List<LogRecordPart> current = parts;
+        int target = -1;
+        boolean exception = false;
+        final int size = (current == null ? groups.size() : current.size());
+        for (int i = 0; i < size; i++) {
+            final FormatType formatType = (current == null ? groups.get(i).getFormatType() : current.get(i).getFormatType());
+            if (formatType == FormatType.EXCEPTION || formatType == FormatType.EXCEPTION_EXTENDED) {
+                target = i;
+                exception = true;
+            } else if (!exception && (formatType == FormatType.MESSAGE || formatType == FormatType.SIMPLE_MESSAGE)) {
+                target = i;
+            }
+        }
+        if (target < 0) {
+            return copy(lineNumber, newText, current, bounds);
+        }
+        // The value stays a range of the text if it's empty or ends the first line
+        if (current == null && (bounds[target * 2] == bounds[target * 2 + 1] || bounds[target * 2 + 1] == text.length())) {
+            final int[] newBounds = bounds.clone();
+            if (newBounds[target * 2] == newBounds[target * 2 + 1]) {
+                newBounds[target * 2] = text.length() + 1;
+            }
+            newBounds[target * 2 + 1] = newText.length();
+            return copy(lineNumber, newText, null, newBounds);
+        }
+        final List<LogRecordPart> newParts = new ArrayList<LogRecordPart>(parts());
+        final LogRecordPart part = newParts.get(target);
+        final String value = part.getValue();
+        newParts.set(target, new LogRecordPart(part.getFormatType(), value.length() == 0 ? lines : value + '\n' + lines));
+        return copy(lineNumber, newText, newParts, null);
     }
 
     public int getLineNumber() {
@@ -49,12 +143,78 @@ public class LogResult implements Iterable<LogRecordPart> {
         return text;
     }
 
+    /**
+     * Returns the file the result was read from.
+     *
+     * @return the file or {@code null} if the result was not read from one of several files
+     */
+    public File getSource() {
+        return source;
+    }
+
     public List<LogRecordPart> getFormatParts() {
-        return new ArrayList<LogRecordPart>(parts);
+        return Collections.unmodifiableList(parts());
     }
 
     @Override
     public Iterator<LogRecordPart> iterator() {
         return getFormatParts().iterator();
     }
+
+    /**
+     * Returns the value of a part without creating the other parts.
+     *
+     * @param index the index of the part
+     *
+     * @return the value
+     */
+    String getValue(final int index) {
+        if (parts == null) {
+            final int start = bounds[index * 2];
+            final int end = bounds[index * 2 + 1];
+            if (dictionary != null && ValueDictionary.isDictionaryType(groups.get(index).getFormatType())) {
+                return dictionary.get(text, start, end);
+            }
+            return text.substring(start, end);
+        }
+        return parts.get(index).getValue();
+    }
+
+    /**
+     * The number of parts.
+     *
+     * @return the number of parts
+     */
+    int getPartCount() {
+        return (parts == null ? groups.size() : parts.size());
+    }
+
+    /**
+     * Returns the bounds of the values of the parts in the text if the parts are still to be created.
+     *
+     * @return the bounds or {@code null} if the parts have been created
+     */
+    int[] getBounds() {
+        return (parts == null ? bounds : null);
+    }
+
+    private LogResult copy(final int lineNumber, final String text, final List<LogRecordPart> parts, final int[] bounds) {
+        if (parts == null) {
+            return new LogResult(lineNumber, text, null, groups, bounds, dictionary, source);
+        }
+        return new LogResult(lineNumber, text, parts, null, null, null, source);
+    }
+
+    private List<LogRecordPart> parts() {
+        List<LogRecordPart> result = parts;
+        if (result == null) {
+            final int size = groups.size();
+            result = new ArrayList<LogRecordPart>(size);
+            for (int i = 0; i < size; i++) {
+                result.add(new LogRecordPart(groups.get(i).getFormatType(), getValue(i)));
+            }
+            parts = result;
+        }
+        return result;
+    }
 }
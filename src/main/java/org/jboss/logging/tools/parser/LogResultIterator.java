@@ -0,0 +1,124 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An iterator that parses the log records as they are requested. The iterator must be {@link #close() closed} if it's
+ * not read to the end.
+ * <p/>
+ * Errors reading the underlying stream are thrown as an {@link IllegalStateException}.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class LogResultIterator implements Iterator<LogResult>, Closeable {
+    private final Parser parser;
+    private final BufferedReader reader;
+    private final RecordAssembler assembler;
+    private final DateTimeFilter dateFilter;
+    private int lineCounter;
+    private LogResult next;
+    private boolean closed;
+
+    LogResultIterator(final Parser parser, final BufferedReader reader) {
+        this(parser, reader, 0, null);
+    }
+
+    /**
+     * Creates an iterator over a reader that starts after the first lines of the log.
+     *
+     * @param parser     the parser
+     * @param reader     the reader
+     * @param lineCount  the number of lines before the first line of the reader
+     * @param dateFilter the date filter of a log in date order, the iterator ends once the records are after its range,
+     *                   or {@code null} to read to the end
+     */
+    LogResultIterator(final Parser parser, final BufferedReader reader, final int lineCount, final DateTimeFilter dateFilter) {
+        this.parser = parser;
+        this.reader = reader;
+        this.dateFilter = dateFilter;
+        lineCounter = lineCount;
+        assembler = new RecordAssembler(new LogResultHandler() {
+            @Override
+            public boolean handle(final LogResult result) {
+                next = result;
+                return true;
+            }
+        });
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !closed) {
+            try {
+                String line;
+                while (next == null && (line = reader.readLine()) != null) {
+                    final LogResult record = parser.parseRecord(++lineCounter, line);
+                    assembler.add(line, record);
+                    // Stop once the records are after the date range
+                    if (record == Parser.REJECTED && dateFilter != null && parser.isAfter(dateFilter, line)) {
+                        assembler.flush();
+                        close();
+                        break;
+                    }
+                }
+                if (next == null) {
+                    assembler.flush();
+                    close();
+                }
+            } catch (IOException e) {
+                Parser.safeClose(this);
+                throw new IllegalStateException("Failed to read the log stream.", e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public LogResult next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final LogResult result = next;
+        next = null;
+        return result;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            reader.close();
+        }
+    }
+}
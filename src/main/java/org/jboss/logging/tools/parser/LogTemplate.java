@@ -0,0 +1,101 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+/**
+ * A message template found by a {@link TemplateClusterer}, the tokens the messages assigned to the template have in
+ * common with the variable tokens replaced with {@value #WILDCARD}.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class LogTemplate {
+
+    /**
+     * The text of a variable token in a template.
+     */
+    public static final String WILDCARD = "<*>";
+
+    // A token is only a variable if it is this instance, so a message containing the text of the wildcard is kept
+    static final String VARIABLE = new String(WILDCARD);
+
+    private final int id;
+    // Replaced, not modified, when the template is generalized as encoded messages share the tokens
+    private String[] tokens;
+    private long count;
+
+    LogTemplate(final int id, final String[] tokens) {
+        this.id = id;
+        this.tokens = tokens;
+    }
+
+    /**
+     * The id of the template, unique within the clusterer that found it.
+     *
+     * @return the id
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * The template, the tokens separated by a space with the variable tokens replaced with {@value #WILDCARD}.
+     *
+     * @return the template
+     */
+    public String getTemplate() {
+        final StringBuilder result = new StringBuilder();
+        for (int i = 0; i < tokens.length; i++) {
+            if (i > 0) {
+                result.append(' ');
+            }
+            result.append(tokens[i]);
+        }
+        return result.toString();
+    }
+
+    /**
+     * The number of messages assigned to the template.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    String[] getTokens() {
+        return tokens;
+    }
+
+    void setTokens(final String[] tokens) {
+        this.tokens = tokens;
+    }
+
+    void increment() {
+        count++;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[id=%d, count=%d, template=%s]", getClass().getSimpleName(), id, count, getTemplate());
+    }
+}
@@ -25,7 +25,6 @@ package org.jboss.logging.tools.parser;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.Calendar;
-import java.util.Collection;
 
 import org.jboss.logmanager.Level;
 
@@ -40,12 +39,17 @@ public class Main {
         // parser.addFilter(FormatType.LEVEL, new LevelFilter(org.jboss.logmanager.Level.INFO));
         // parser.addFilter(FormatType.CATEGORY, new CategoryFilter("org.jboss.as.server"));
         // parser.setCategory("org.jboss.jca.core.connectionmanager.pool.strategy.OnePool");
-        final Collection<LogResult> logResults = parser.parse(Main.class.getResourceAsStream("/last-5000.txt"));
-        // final Collection<LogResult> logResults = parser.parse(new FileInputStream("/home/jperkins/servers/jboss-as-7.1.1.Final/standalone/log/server.log"));
-        int count = 0;
-        for (LogResult logResult : logResults) {
-            System.out.printf("Count: %03d [%04d]: %s%n", ++count, logResult.getLineNumber(), logResult.getText());
-        }
+        final LogResultHandler handler = new LogResultHandler() {
+            private int count = 0;
+
+            @Override
+            public boolean handle(final LogResult logResult) {
+                System.out.printf("Count: %03d [%04d]: %s%n", ++count, logResult.getLineNumber(), logResult.getText());
+                return true;
+            }
+        };
+        parser.parse(Main.class.getResourceAsStream("/last-5000.txt"), handler);
+        // parser.parse(new FileInputStream("/home/jperkins/servers/jboss-as-7.1.1.Final/standalone/log/server.log"), handler);
 
     }
 }
@@ -0,0 +1,309 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Reads the lines of a file, or a range of a file, by memory mapping the file and scanning the bytes for the line
+ * terminator.
+ * <p/>
+ * Each line is decoded into the same {@link LineBuffer}, the line returned is only valid until the next line is read.
+ * Lines are terminated with a {@code \n}, a trailing {@code \r} is removed from the line.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+class MappedLineReader implements Closeable {
+
+    /**
+     * The maximum number of bytes mapped at a time.
+     */
+    static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long end;
+    private final int windowSize;
+    private final CharsetDecoder decoder;
+    private final boolean asciiCompatible;
+    private final LineBuffer line = new LineBuffer();
+    private MappedByteBuffer window;
+    private long windowOffset;
+    private long position;
+    private long lineOffset;
+    private int lineNumber;
+
+    MappedLineReader(final File file) throws IOException {
+        this(file, 0L, Long.MAX_VALUE, Charset.defaultCharset());
+    }
+
+    MappedLineReader(final File file, final long start, final long end, final Charset charset) throws IOException {
+        this(file, start, end, charset, WINDOW_SIZE);
+    }
+
+    MappedLineReader(final File file, final long start, final long end, final Charset charset, final int windowSize) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        channel = this.file.getChannel();
+        this.end = Math.min(end, channel.size());
+        this.windowSize = windowSize;
+        decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        asciiCompatible = isAsciiCompatible(charset);
+        position = start;
+    }
+
+    /**
+     * Reads the next line.
+     *
+     * @return the line or {@code null} if there are no more lines
+     *
+     * @throws IOException if an error occurs reading the file
+     */
+    CharSequence readLine() throws IOException {
+        if (position >= end) {
+            return null;
+        }
+        while (true) {
+            if (window == null || position >= windowOffset + window.limit()) {
+                map(position, windowSize);
+            }
+            final int start = (int) (position - windowOffset);
+            final int limit = window.limit();
+            // Scan for the terminator while copying ASCII characters to the line, non-ASCII lines are decoded after
+            char[] chars = line.array(0);
+            boolean ascii = asciiCompatible;
+            int i = start;
+            byte b;
+            while (i < limit && (b = window.get(i)) != '\n') {
+                if (ascii) {
+                    final int index = i - start;
+                    if (b < 0) {
+                        ascii = false;
+                    } else {
+                        if (index == chars.length) {
+                            chars = line.array(index + 1);
+                        }
+                        chars[index] = (char) b;
+                    }
+                }
+                i++;
+            }
+            final long next;
+            if (i < limit) {
+                next = windowOffset + i + 1;
+            } else if (windowOffset + limit >= end) {
+                // The last line doesn't have a terminator
+                next = end;
+            } else {
+                // The line continues past the window, map a window starting at the line
+                map(position, (start == 0 ? (int) Math.min(Integer.MAX_VALUE, limit * 2L) : windowSize));
+                continue;
+            }
+            int lineEnd = i;
+            if (lineEnd > start && window.get(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+            if (ascii) {
+                line.setLength(lineEnd - start);
+            } else {
+                decode(decoder, window, start, lineEnd, line);
+            }
+            lineOffset = position;
+            lineNumber++;
+            position = next;
+            return line;
+        }
+    }
+
+    /**
+     * The offset in the file of the last line read.
+     *
+     * @return the offset of the last line
+     */
+    long getLineOffset() {
+        return lineOffset;
+    }
+
+    /**
+     * The offset in the file of the next line to be read.
+     *
+     * @return the offset of the next line
+     */
+    long getPosition() {
+        return position;
+    }
+
+    /**
+     * The number of lines read.
+     *
+     * @return the number of lines read
+     */
+    int getLineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        file.close();
+    }
+
+    /**
+     * Finds the start of the first line that starts at or after the offset.
+     *
+     * @param file   the file
+     * @param offset the offset in the file
+     *
+     * @return the start of the line or the length of the file if there are no more lines
+     *
+     * @throws IOException if an error occurs reading the file
+     */
+    static long alignToLine(final RandomAccessFile file, final long offset) throws IOException {
+        if (offset <= 0) {
+            return 0L;
+        }
+        // If the previous byte is a new line the offset is already the start of a line
+        final byte[] buffer = new byte[512];
+        long position = offset - 1;
+        file.seek(position);
+        int len;
+        while ((len = file.read(buffer)) > 0) {
+            for (int i = 0; i < len; i++) {
+                if (buffer[i] == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += len;
+        }
+        return file.length();
+    }
+
+    /**
+     * Counts the lines that end before the offset.
+     *
+     * @param file   the file
+     * @param offset the offset in the file
+     *
+     * @return the number of line terminators before the offset
+     *
+     * @throws IOException if an error occurs reading the file
+     */
+    static int countLines(final File file, final long offset) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = raf.getChannel();
+            final long end = Math.min(offset, channel.size());
+            int count = 0;
+            long position = 0;
+            while (position < end) {
+                final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, end - position));
+                final int limit = buffer.limit();
+                for (int i = 0; i < limit; i++) {
+                    if (buffer.get(i) == '\n') count++;
+                }
+                position += limit;
+            }
+            return count;
+        } finally {
+            Parser.safeClose(raf);
+        }
+    }
+
+    private void map(final long offset, final int size) throws IOException {
+        windowOffset = offset;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(size, end - offset));
+    }
+
+    /**
+     * Decodes a range of bytes into the line.
+     *
+     * @param decoder the decoder
+     * @param bytes   the bytes
+     * @param start   the start of the range
+     * @param end     the end of the range
+     * @param line    the line to decode the bytes into
+     *
+     * @throws CharacterCodingException if the bytes can't be decoded
+     */
+    static void decode(final CharsetDecoder decoder, final ByteBuffer bytes, final int start, final int end, final LineBuffer line) throws CharacterCodingException {
+        final int len = end - start;
+        final ByteBuffer in = bytes.duplicate();
+        in.limit(end).position(start);
+        decoder.reset();
+        CharBuffer out = CharBuffer.wrap(line.array((int) (len * decoder.averageCharsPerByte()) + 1));
+        while (true) {
+            CoderResult result = in.hasRemaining() ? decoder.decode(in, out, true) : CoderResult.UNDERFLOW;
+            if (result.isUnderflow()) {
+                result = decoder.flush(out);
+            }
+            if (result.isUnderflow()) {
+                break;
+            }
+            if (result.isOverflow()) {
+                final int decoded = out.position();
+                out = CharBuffer.wrap(line.array(out.capacity() * 2 + 1));
+                out.position(decoded);
+            } else {
+                result.throwException();
+            }
+        }
+        line.setLength(out.position());
+    }
+
+    /**
+     * Checks whether the charset encodes ASCII characters as single bytes of the same value.
+     *
+     * @param charset the charset
+     *
+     * @return {@code true} if ASCII bytes can be copied to characters without decoding, otherwise {@code false}
+     */
+    static boolean isAsciiCompatible(final Charset charset) {
+        final byte[] bytes = new byte[128];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        final String s = new String(bytes, charset);
+        if (s.length() != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (s.charAt(i) != i) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+/**
+ * Filters out records whose message does not contain the text.
+ * <p/>
+ * Only the first line of the message is checked.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class MessageFilter implements Filter {
+    private final String text;
+
+    /**
+     * Creates a new message filter.
+     *
+     * @param text the text the message must contain
+     */
+    public MessageFilter(final String text) {
+        this.text = text;
+    }
+
+    @Override
+    public boolean accept(final FormatPart formatPart, final String value) {
+        return value.contains(text);
+    }
+
+    @Override
+    public boolean allowType(final FormatType formatType) {
+        return formatType == FormatType.MESSAGE || formatType == FormatType.SIMPLE_MESSAGE;
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Parses several files concurrently and merges the results into date order. Each file is expected to be in date order,
+ * like a log file and the files it was rotated to.
+ * <p/>
+ * Each file is parsed by a {@link LogResultIterator} in batches of {@value #BATCH_SIZE} results. While the results of
+ * a batch are merged the next batch of the file is read by a task, so at most two batches of each file are held in
+ * memory. A task only reads one batch and never waits on another task, so any executor can be used whatever the number
+ * of files. If the parser has a {@link Parser#getMaxResults() maximum number of results} only the {@link
+ * Parser#tail(File) tail} of each file is merged, so no file produces more results than the maximum.
+ * <p/>
+ * The dates of the records can only be compared between files if the date pattern has a date field, like the day. If
+ * it only has time fields, for example the default {@code HH:mm:ss,SSS} of a log rotated daily, or the format has no
+ * date, the files are not merged but read one after the other in the order of a {@link LogFiles#rotatedSet(File)
+ * rotated set}, oldest first.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+class MultiFileParser {
+
+    /**
+     * The number of results read from a file by a task.
+     */
+    static final int BATCH_SIZE = 1024;
+
+    private final Parser parser;
+    private final List<File> files;
+    private final int dateGroup;
+    private final String datePattern;
+
+    MultiFileParser(final Parser parser, final Collection<File> files) {
+        this.parser = parser;
+        this.files = new ArrayList<File>(files);
+        final int group = parser.findGroup(FormatType.DATE);
+        final String pattern = (group < 0 ? null : parser.getGroup(group).getArgument());
+        datePattern = (pattern == null ? FormatTokenizer.DEFAULT_DATE_PATTERN : pattern);
+        if (group >= 0 && hasDateField(datePattern)) {
+            dateGroup = group;
+        } else {
+            dateGroup = -1;
+            Collections.sort(this.files, LogFiles.OLDEST_FIRST);
+        }
+    }
+
+    /**
+     * Checks if a {@link SimpleDateFormat} pattern has a date field, like the year, month or day, rather than only
+     * time fields. Quoted text is ignored.
+     *
+     * @param pattern the date pattern
+     *
+     * @return {@code true} if the pattern has a date field, otherwise {@code false}
+     */
+    static boolean hasDateField(final String pattern) {
+        boolean quoted = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            final char c = pattern.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (!quoted && "GyYMLwWDdFEu".indexOf(c) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses the files and passes the results to the handler in date order. Results with the same date are passed in
+     * the order of the files. If the dates can't be compared between files the results of each file are passed in
+     * the order of the rotated set.
+     *
+     * @param executor the executor to parse the files with
+     * @param handler  the handler to pass the results to
+     *
+     * @throws IOException if an error occurs reading one of the files
+     */
+    void parse(final ExecutorService executor, final LogResultHandler handler) throws IOException {
+        final List<FileSource> sources = new ArrayList<FileSource>(files.size());
+        try {
+            // The first batch of every file is read concurrently
+            for (int i = 0; i < files.size(); i++) {
+                final FileSource source = new FileSource(i, files.get(i));
+                sources.add(source);
+                source.fetch(executor);
+            }
+            if (dateGroup < 0) {
+                for (FileSource source : sources) {
+                    while (source.next(executor)) {
+                        if (!handler.handle(source.current)) {
+                            return;
+                        }
+                    }
+                }
+                return;
+            }
+            // Merge the files by taking the earliest result at the head of each file
+            final PriorityQueue<FileSource> queue = new PriorityQueue<FileSource>(Math.max(1, files.size()));
+            for (FileSource source : sources) {
+                if (source.next(executor)) {
+                    queue.add(source);
+                }
+            }
+            FileSource head;
+            while ((head = queue.poll()) != null) {
+                if (!handler.handle(head.current)) {
+                    return;
+                }
+                if (head.next(executor)) {
+                    queue.add(head);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while parsing " + files);
+        } catch (ExecutionException e) {
+            throw ParallelParser.unwrap(e);
+        } finally {
+            for (FileSource source : sources) {
+                source.close();
+            }
+        }
+    }
+
+    /**
+     * A batch of results of a file and their timestamps.
+     */
+    private static class Batch {
+        final LogResult[] results = new LogResult[BATCH_SIZE];
+        final long[] timestamps = new long[BATCH_SIZE];
+        int size;
+        boolean last;
+    }
+
+    /**
+     * The results of a file, read a batch at a time, with the position of the merge in the current batch.
+     */
+    private class FileSource implements Comparable<FileSource> {
+        private final int index;
+        private final File file;
+        // Only used by one task at a time, the tasks of a file are run one after the other
+        private Iterator<LogResult> iterator;
+        private Closeable closeable;
+        private SimpleDateFormat dateFormat;
+        private long lastTimestamp = Long.MIN_VALUE;
+        private Future<Batch> pending;
+        private Batch batch;
+        private int position;
+        private LogResult current;
+        private long timestamp;
+
+        FileSource(final int index, final File file) {
+            this.index = index;
+            this.file = file;
+        }
+
+        /**
+         * Starts reading the next batch.
+         */
+        void fetch(final ExecutorService executor) {
+            pending = executor.submit(new Callable<Batch>() {
+                @Override
+                public Batch call() throws IOException {
+                    return read();
+                }
+            });
+        }
+
+        /**
+         * Moves to the next result, waiting for the next batch if the current batch has been merged.
+         *
+         * @return {@code true} if there is a next result, otherwise {@code false}
+         */
+        boolean next(final ExecutorService executor) throws InterruptedException, ExecutionException {
+            position++;
+            if (batch == null || position >= batch.size) {
+                if (pending == null) {
+                    current = null;
+                    return false;
+                }
+                batch = pending.get();
+                pending = null;
+                position = 0;
+                if (!batch.last) {
+                    fetch(executor);
+                }
+                if (batch.size == 0) {
+                    current = null;
+                    return false;
+                }
+            }
+            current = batch.results[position];
+            timestamp = batch.timestamps[position];
+            // Release the result once it has been merged
+            batch.results[position] = null;
+            return true;
+        }
+
+        /**
+         * Stops reading the file, waiting for a batch being read to finish so the file can be closed.
+         */
+        void close() {
+            if (pending != null) {
+                pending.cancel(false);
+                try {
+                    pending.get();
+                } catch (CancellationException ignore) {
+                    // the batch was never read
+                } catch (ExecutionException ignore) {
+                    // the error is only reported if the batch is merged
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                pending = null;
+            }
+            Parser.safeClose(closeable);
+        }
+
+        private Batch read() throws IOException {
+            if (iterator == null) {
+                if (parser.getMaxResults() > 0) {
+                    iterator = parser.tail(file).iterator();
+                } else {
+                    final LogResultIterator results = parser.iterator(file);
+                    iterator = results;
+                    closeable = results;
+                }
+                if (dateGroup >= 0) {
+                    dateFormat = new SimpleDateFormat(datePattern);
+                }
+            }
+            final Batch result = new Batch();
+            try {
+                while (result.size < BATCH_SIZE && iterator.hasNext()) {
+                    final LogResult logResult = iterator.next().withSource(file);
+                    if (dateFormat != null) {
+                        // A date that can't be parsed is given the timestamp of the result before it, keeping the order
+                        final Date date = dateFormat.parse(logResult.getValue(dateGroup), new ParsePosition(0));
+                        if (date != null) {
+                            lastTimestamp = date.getTime();
+                        }
+                        result.timestamps[result.size] = lastTimestamp;
+                    }
+                    result.results[result.size++] = logResult;
+                }
+                result.last = !iterator.hasNext();
+            } catch (IllegalStateException e) {
+                // The iterator wraps errors reading the file
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw e;
+            }
+            return result;
+        }
+
+        @Override
+        public int compareTo(final FileSource other) {
+            if (timestamp != other.timestamp) {
+                return (timestamp < other.timestamp ? -1 : 1);
+            }
+            return (index < other.index ? -1 : (index == other.index ? 0 : 1));
+        }
+    }
+}
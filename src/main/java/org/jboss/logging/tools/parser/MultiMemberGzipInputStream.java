@@ -0,0 +1,261 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decompresses a gzip stream. Unlike {@link java.util.zip.GZIPInputStream} before Java 7, which stops at the end of the
+ * first member, every member of a stream of several members, for example archives that were concatenated, is read.
+ * Like {@link java.util.zip.GZIPInputStream} anything following the last member that is not a gzip header is ignored.
+ * <p/>
+ * The stream can also be limited to a single member, in which case {@link #getCompressedSize()} is the length of the
+ * member once the end of the stream is reached.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+class MultiMemberGzipInputStream extends InputStream {
+
+    private static final int GZIP_MAGIC = 0x8B1F;
+    private static final int FHCRC = 0x02;
+    private static final int FEXTRA = 0x04;
+    private static final int FNAME = 0x08;
+    private static final int FCOMMENT = 0x10;
+    private static final int RESERVED = 0xE0;
+
+    private final InputStream in;
+    private final boolean multipleMembers;
+    private final Inflater inflater;
+    private final CRC32 crc;
+    private final byte[] input;
+    private final byte[] single;
+    private int inputPosition;
+    private int inputLimit;
+    private long inputRead;
+    private boolean eof;
+    private boolean closed;
+
+    /**
+     * Creates a stream of the decompressed bytes and reads the header of the first member.
+     *
+     * @param in              the compressed stream
+     * @param bufferSize      the size of the buffer the compressed bytes are read into
+     * @param multipleMembers {@code true} to read every member, {@code false} to read only the first member
+     *
+     * @throws ZipException if the stream does not start with a gzip header
+     * @throws IOException  if an error occurs reading the stream
+     */
+    MultiMemberGzipInputStream(final InputStream in, final int bufferSize, final boolean multipleMembers) throws IOException {
+        this.in = in;
+        this.multipleMembers = multipleMembers;
+        inflater = new Inflater(true);
+        crc = new CRC32();
+        input = new byte[bufferSize];
+        single = new byte[1];
+        try {
+            if (!readHeader()) {
+                throw new ZipException("Not in GZIP format");
+            }
+        } catch (IOException e) {
+            inflater.end();
+            throw e;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (eof) {
+            return -1;
+        }
+        if (len == 0) {
+            return 0;
+        }
+        while (true) {
+            final int n;
+            try {
+                n = inflater.inflate(b, off, len);
+            } catch (DataFormatException e) {
+                throw new ZipException(e.getMessage() == null ? "Invalid compressed data" : e.getMessage());
+            }
+            if (n > 0) {
+                crc.update(b, off, n);
+                return n;
+            }
+            if (inflater.finished()) {
+                inputPosition = inputLimit - inflater.getRemaining();
+                readTrailer();
+                if (!multipleMembers || !nextMember()) {
+                    eof = true;
+                    return -1;
+                }
+            } else if (inflater.needsDictionary()) {
+                throw new ZipException("Invalid compressed data");
+            } else if (inflater.needsInput()) {
+                if (inputPosition == inputLimit && !fill()) {
+                    throw new EOFException("Unexpected end of ZLIB input stream");
+                }
+                inflater.setInput(input, inputPosition, inputLimit - inputPosition);
+                inputPosition = inputLimit;
+            }
+        }
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        return eof ? 0 : 1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            inflater.end();
+            in.close();
+        }
+    }
+
+    /**
+     * The number of compressed bytes read, including the headers and trailers. Once the end of the stream has been
+     * reached this is the length of the members read, the bytes following them are not counted.
+     *
+     * @return the number of compressed bytes read
+     */
+    long getCompressedSize() {
+        return inputRead - (inputLimit - inputPosition);
+    }
+
+    private boolean nextMember() throws IOException {
+        inflater.reset();
+        crc.reset();
+        try {
+            return readHeader();
+        } catch (EOFException e) {
+            // Trailing bytes that are too short to be a header are ignored
+            return false;
+        }
+    }
+
+    /**
+     * Reads the header of a member.
+     *
+     * @return {@code true} if a header was read, {@code false} if the end of the stream was reached or the bytes are
+     *         not a gzip header
+     */
+    private boolean readHeader() throws IOException {
+        crc.reset();
+        if (inputPosition == inputLimit && !fill()) {
+            return false;
+        }
+        if (readShort() != GZIP_MAGIC || readByte() != 8) {
+            return false;
+        }
+        final int flags = readByte();
+        if ((flags & RESERVED) != 0) {
+            throw new ZipException("Unsupported GZIP flags");
+        }
+        // Modification time, extra flags and operating system
+        skip(6);
+        if ((flags & FEXTRA) != 0) {
+            skip(readShort());
+        }
+        if ((flags & FNAME) != 0) {
+            skipString();
+        }
+        if ((flags & FCOMMENT) != 0) {
+            skipString();
+        }
+        if ((flags & FHCRC) != 0) {
+            final int expected = (int) crc.getValue() & 0xFFFF;
+            if (readShort() != expected) {
+                throw new ZipException("Corrupt GZIP header");
+            }
+        }
+        crc.reset();
+        return true;
+    }
+
+    private void readTrailer() throws IOException {
+        final long expected = crc.getValue();
+        if (readInt() != expected || readInt() != (inflater.getBytesWritten() & 0xFFFFFFFFL)) {
+            throw new ZipException("Corrupt GZIP trailer");
+        }
+    }
+
+    private long readInt() throws IOException {
+        return readShort() | ((long) readShort() << 16);
+    }
+
+    private int readShort() throws IOException {
+        return readByte() | (readByte() << 8);
+    }
+
+    private int readByte() throws IOException {
+        if (inputPosition == inputLimit && !fill()) {
+            throw new EOFException();
+        }
+        final int b = input[inputPosition++] & 0xFF;
+        crc.update(b);
+        return b;
+    }
+
+    private void skip(final int n) throws IOException {
+        for (int i = 0; i < n; i++) {
+            readByte();
+        }
+    }
+
+    private void skipString() throws IOException {
+        while (readByte() != 0) {
+            // skip
+        }
+    }
+
+    private boolean fill() throws IOException {
+        final int n = in.read(input, 0, input.length);
+        if (n <= 0) {
+            inputPosition = inputLimit = 0;
+            return false;
+        }
+        inputRead += n;
+        inputPosition = 0;
+        inputLimit = n;
+        return true;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+/**
+ * A filter that accepts the log records its filter does not accept.
+ * <p/>
+ * When added to a {@link Parser} a filter for values that are not in the format of the parser is not applicable and
+ * accepts every record, so the not filter rejects every record.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class NotFilter implements Filter {
+    private final Filter filter;
+
+    /**
+     * Creates a new not filter.
+     *
+     * @param filter the filter to negate
+     */
+    public NotFilter(final Filter filter) {
+        this.filter = filter;
+    }
+
+    @Override
+    public boolean accept(final FormatPart formatPart, final String value) {
+        return !filter.accept(formatPart, value);
+    }
+
+    @Override
+    public boolean allowType(final FormatType formatType) {
+        return filter.allowType(formatType);
+    }
+
+    Filter getFilter() {
+        return filter;
+    }
+}
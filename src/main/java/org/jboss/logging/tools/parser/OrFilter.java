@@ -0,0 +1,85 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A filter that accepts a log record if any of its filters accept the record.
+ * <p/>
+ * When added to a {@link Parser} the filters are evaluated against the whole record, cheapest first. A filter for
+ * values that are not in the format of the parser is not applicable and accepts every record, so the or filter accepts
+ * every record too. When invoked directly one of the filters that allow the format type must accept the value.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class OrFilter implements Filter {
+    private final List<Filter> filters;
+
+    /**
+     * Creates a new or filter.
+     *
+     * @param filters the filters, one of which must accept the record
+     */
+    public OrFilter(final Filter... filters) {
+        this(Arrays.asList(filters));
+    }
+
+    /**
+     * Creates a new or filter.
+     *
+     * @param filters the filters, one of which must accept the record
+     */
+    public OrFilter(final Collection<? extends Filter> filters) {
+        this.filters = Collections.unmodifiableList(new ArrayList<Filter>(filters));
+    }
+
+    @Override
+    public boolean accept(final FormatPart formatPart, final String value) {
+        final FormatType formatType = formatPart.getFormatType();
+        for (Filter filter : filters) {
+            if (filter.allowType(formatType) && filter.accept(formatPart, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean allowType(final FormatType formatType) {
+        for (Filter filter : filters) {
+            if (filter.allowType(formatType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    List<Filter> getFilters() {
+        return filters;
+    }
+}
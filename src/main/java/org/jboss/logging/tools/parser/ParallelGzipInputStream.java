@@ -0,0 +1,425 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Decompresses a gzip file of several members, for example archives that were concatenated or a file written by a
+ * tool that compresses blocks as separate members such as {@code bgzip}, by inflating the members concurrently. The
+ * bytes are read in order while the members after the one being read are inflated.
+ * <p/>
+ * The members are found by searching the file for the gzip magic number. The magic number may also appear in the
+ * compressed data, so an offset it is found at is only the start of a member if the member before it ends there, which
+ * is known once that member has been inflated and its CRC and size checked. The first member is always inflated as it
+ * is read, and the members are only inflated ahead once it has ended at the start of another member, so a file of a
+ * single member is never inflated more than once. A member inflated ahead is only used if it starts where the member
+ * before it ended and its own CRC and size are correct, otherwise it is discarded.
+ * <p/>
+ * At most {@code window} members are inflated ahead, each into a buffer of at most {@code maxMemberSize} bytes. A
+ * member that is larger, or that could not be inflated ahead, is inflated as it is read, so any error in it is
+ * reported when it is reached.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+class ParallelGzipInputStream extends InputStream {
+
+    /**
+     * The default maximum number of bytes a member inflated ahead may inflate to.
+     */
+    static final int DEFAULT_MAX_MEMBER_SIZE = 8 * 1024 * 1024;
+
+    private static final int FTEXT_MASK = 0xE0;
+    private static final int INPUT_SIZE = 64 * 1024;
+    private static final int MIN_MEMBER_SIZE = 4 * INPUT_SIZE;
+
+    private final ExecutorService executor;
+    private final ByteBuffer data;
+    private final long[] offsets;
+    private final int window;
+    private final int maxMemberSize;
+    private final LinkedList<Candidate> pending;
+    private final byte[] single;
+    // Guards the number of members being inflated, the mapped file must not be read once the stream is closed
+    private final Object lock;
+    private int running;
+    private int nextOffset;
+    private long position;
+    private boolean speculate;
+    private MultiMemberGzipInputStream member;
+    private byte[] buffer;
+    private int bufferPosition;
+    private int bufferLimit;
+    private volatile boolean closed;
+
+    private ParallelGzipInputStream(final ExecutorService executor, final ByteBuffer data, final long[] offsets, final int window, final int maxMemberSize) {
+        this.executor = executor;
+        this.data = data;
+        this.offsets = offsets;
+        this.window = window;
+        this.maxMemberSize = maxMemberSize;
+        pending = new LinkedList<Candidate>();
+        single = new byte[1];
+        lock = new Object();
+        buffer = new byte[0];
+    }
+
+    /**
+     * Opens the gzip file to decompress it with the executor.
+     *
+     * @param file     the gzip file
+     * @param executor the executor to inflate the members with
+     * @param window   the maximum number of members to inflate ahead of the member being read
+     *
+     * @return the decompressed stream or {@code null} if the file is too large to map or can't have more than one
+     *         member, in which case it can't be decompressed concurrently
+     *
+     * @throws IOException if an error occurs reading the file
+     */
+    static ParallelGzipInputStream open(final File file, final ExecutorService executor, final int window) throws IOException {
+        return open(file, executor, window, DEFAULT_MAX_MEMBER_SIZE);
+    }
+
+    /**
+     * Opens the gzip file to decompress it with the executor.
+     *
+     * @param file          the gzip file
+     * @param executor      the executor to inflate the members with
+     * @param window        the maximum number of members to inflate ahead of the member being read
+     * @param maxMemberSize the maximum number of bytes a member inflated ahead may inflate to
+     *
+     * @return the decompressed stream or {@code null} if the file is too large to map or can't have more than one
+     *         member, in which case it can't be decompressed concurrently
+     *
+     * @throws IOException if an error occurs reading the file
+     */
+    static ParallelGzipInputStream open(final File file, final ExecutorService executor, final int window, final int maxMemberSize) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final long length = raf.length();
+            if (length > Integer.MAX_VALUE) {
+                return null;
+            }
+            final ByteBuffer data = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0L, length);
+            final long[] offsets = findMembers(data);
+            if (offsets.length < 2 || offsets[0] != 0L) {
+                return null;
+            }
+            return new ParallelGzipInputStream(executor, data, offsets, Math.max(1, window), Math.max(1, maxMemberSize));
+        } finally {
+            Parser.safeClose(raf);
+        }
+    }
+
+    /**
+     * Finds the offsets that may be the start of a member.
+     *
+     * @param data the file
+     *
+     * @return the offsets
+     */
+    static long[] findMembers(final ByteBuffer data) {
+        final int limit = data.limit() - 10;
+        long[] offsets = new long[16];
+        int count = 0;
+        for (int i = 0; i < limit; i++) {
+            if (isHeader(data, i)) {
+                if (count == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                }
+                offsets[count++] = i;
+            }
+        }
+        return Arrays.copyOf(offsets, count);
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        while (true) {
+            if (bufferPosition < bufferLimit) {
+                final int n = Math.min(len, bufferLimit - bufferPosition);
+                System.arraycopy(buffer, bufferPosition, b, off, n);
+                bufferPosition += n;
+                return n;
+            }
+            if (member != null) {
+                final int n = member.read(b, off, len);
+                if (n >= 0) {
+                    return n;
+                }
+                // The CRC and size of the member were correct, so it ends at the start of the next member if any
+                position += member.getCompressedSize();
+                member.close();
+                member = null;
+                speculate = true;
+            }
+            if (!nextMember()) {
+                return -1;
+            }
+        }
+    }
+
+    @Override
+    public int available() {
+        return bufferLimit - bufferPosition;
+    }
+
+    /**
+     * Closes the stream, waiting for the members being inflated to stop.
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            synchronized (lock) {
+                closed = true;
+            }
+            cancelPending();
+            Parser.safeClose(member);
+            member = null;
+            buffer = null;
+            boolean interrupted = false;
+            synchronized (lock) {
+                while (running > 0) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Starts reading the member at the position, which is the end of the member read before it.
+     *
+     * @return {@code true} if there is a member at the position, otherwise {@code false}
+     */
+    private boolean nextMember() throws IOException {
+        if (position >= data.limit() || !isHeader(data, (int) position)) {
+            // Like GZIPInputStream, anything following the last member is ignored
+            position = data.limit();
+            cancelPending();
+            return false;
+        }
+        if (speculate) {
+            fill();
+            // Offsets before the position were in the compressed data of the members already read
+            Candidate candidate = pending.peek();
+            while (candidate != null && candidate.offset < position) {
+                pending.poll().future.cancel(true);
+                fill();
+                candidate = pending.peek();
+            }
+            if (candidate != null && candidate.offset == position) {
+                pending.poll();
+                final Member inflated = get(candidate.future);
+                fill();
+                if (inflated != null) {
+                    position = inflated.end;
+                    buffer = inflated.bytes;
+                    bufferPosition = 0;
+                    bufferLimit = inflated.length;
+                    return true;
+                }
+            }
+        }
+        // The member is too large to inflate ahead, is corrupt or is the first member
+        member = new MultiMemberGzipInputStream(new ByteBufferInputStream(data, (int) position), INPUT_SIZE, false);
+        return true;
+    }
+
+    private void cancelPending() {
+        for (Candidate candidate : pending) {
+            candidate.future.cancel(true);
+        }
+        pending.clear();
+    }
+
+    private void fill() {
+        while (pending.size() < window && nextOffset < offsets.length) {
+            final int index = nextOffset++;
+            if (offsets[index] >= position) {
+                pending.add(new Candidate(offsets[index], executor.submit(new Inflate(index))));
+            }
+        }
+    }
+
+    private static Member get(final Future<Member> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while decompressing");
+        } catch (ExecutionException e) {
+            throw ParallelParser.unwrap(e);
+        }
+    }
+
+    private static boolean isHeader(final ByteBuffer data, final int offset) {
+        return offset + 10 <= data.limit() && data.get(offset) == 0x1F && (data.get(offset + 1) & 0xFF) == 0x8B
+                && data.get(offset + 2) == 8 && (data.get(offset + 3) & FTEXT_MASK) == 0;
+    }
+
+    private static class Candidate {
+        final long offset;
+        final Future<Member> future;
+
+        Candidate(final long offset, final Future<Member> future) {
+            this.offset = offset;
+            this.future = future;
+        }
+    }
+
+    private static class Member {
+        final byte[] bytes;
+        final int length;
+        final long end;
+
+        Member(final byte[] bytes, final int length, final long end) {
+            this.bytes = bytes;
+            this.length = length;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Inflates the member at an offset. The result is {@code null} if the offset is not the start of a valid member or
+     * the member inflates to more than the maximum member size.
+     */
+    private class Inflate implements Callable<Member> {
+        private final int offset;
+        private final int sizeHint;
+
+        Inflate(final int index) {
+            offset = (int) offsets[index];
+            // If the member ends where the next one starts, its trailer ends with the inflated size
+            final int end = (index + 1 < offsets.length ? (int) offsets[index + 1] : data.limit());
+            final int size = (end - offset >= 18 ? data.duplicate().order(ByteOrder.LITTLE_ENDIAN).getInt(end - 4) : 0);
+            sizeHint = (size > 0 && size <= maxMemberSize ? size : Math.min(MIN_MEMBER_SIZE, maxMemberSize));
+        }
+
+        @Override
+        public Member call() throws InterruptedIOException {
+            synchronized (lock) {
+                if (closed) {
+                    return null;
+                }
+                running++;
+            }
+            MultiMemberGzipInputStream in = null;
+            try {
+                in = new MultiMemberGzipInputStream(new ByteBufferInputStream(data, offset), INPUT_SIZE, false);
+                // The spare byte shows whether the member is larger than the maximum size
+                byte[] output = new byte[sizeHint + 1];
+                int length = 0;
+                int n;
+                while ((n = in.read(output, length, output.length - length)) > 0) {
+                    if (closed) {
+                        return null;
+                    }
+                    if (Thread.interrupted()) {
+                        throw new InterruptedIOException();
+                    }
+                    length += n;
+                    if (length == output.length) {
+                        if (length > maxMemberSize) {
+                            return null;
+                        }
+                        output = Arrays.copyOf(output, (int) Math.min(output.length * 2L, maxMemberSize + 1L));
+                    }
+                }
+                return new Member(output, length, offset + in.getCompressedSize());
+            } catch (InterruptedIOException e) {
+                throw e;
+            } catch (IOException e) {
+                return null;
+            } finally {
+                Parser.safeClose(in);
+                synchronized (lock) {
+                    running--;
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the mapped file from an offset.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer data;
+
+        ByteBufferInputStream(final ByteBuffer data, final int offset) {
+            this.data = data.duplicate();
+            this.data.position(offset);
+        }
+
+        @Override
+        public int read() {
+            return data.hasRemaining() ? data.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (!data.hasRemaining()) {
+                return -1;
+            }
+            final int n = Math.min(len, data.remaining());
+            data.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return data.remaining();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Parses a file by splitting it into chunks that start at the beginning of a line and parsing the chunks
+ * concurrently.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+class ParallelParser {
+
+    /**
+     * The default size of each chunk of the file.
+     */
+    static final long DEFAULT_CHUNK_SIZE = 8L * 1024L * 1024L;
+
+    private final Parser parser;
+    private final File file;
+    private final int maxResults;
+    private final long chunkSize;
+
+    ParallelParser(final Parser parser, final File file, final int maxResults, final long chunkSize) {
+        this.parser = parser;
+        this.file = file;
+        this.maxResults = maxResults;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Parses the file.
+     *
+     * @param executor the executor to parse the chunks with
+     *
+     * @return the results
+     *
+     * @throws IOException if an error occurs reading the file
+     */
+    Collection<LogResult> parse(final ExecutorService executor) throws IOException {
+        final List<Future<Chunk>> futures = new ArrayList<Future<Chunk>>();
+        try {
+            final long[] boundaries = split();
+            for (int i = 0; i < boundaries.length - 1; i++) {
+                futures.add(executor.submit(new Chunk(boundaries[i], boundaries[i + 1])));
+            }
+            final Collection<LogResult> results;
+            if (maxResults > 0) {
+                results = new RingBuffer<LogResult>(maxResults);
+            } else {
+                results = new ArrayList<LogResult>();
+            }
+            // Merge the chunks, offsetting the line numbers by the lines in the previous chunks
+            int lineCount = 0;
+            for (Future<Chunk> future : futures) {
+                final Chunk chunk = future.get();
+                for (LogResult result : chunk.results) {
+                    results.add(lineCount == 0 ? result : result.withLineNumber(lineCount + result.getLineNumber()));
+                }
+                lineCount += chunk.lineCount;
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while parsing " + file);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } finally {
+            for (Future<Chunk> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Unwraps the cause of a failed task. Runtime exceptions and errors are thrown.
+     *
+     * @param e the exception thrown getting the result of the task
+     *
+     * @return the I/O exception that caused the task to fail
+     */
+    static IOException unwrap(final ExecutionException e) {
+        final Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        throw new IllegalStateException(cause);
+    }
+
+    /**
+     * Splits the file into chunks. Each boundary, other than the end of the file, is the start of a line.
+     *
+     * @return the boundaries of the chunks, starting with 0 and ending with the file length
+     *
+     * @throws IOException if an error occurs reading the file
+     */
+    private long[] split() throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final long length = raf.length();
+            final List<Long> boundaries = new ArrayList<Long>();
+            boundaries.add(0L);
+            long position = chunkSize;
+            while (position < length) {
+                final long start = MappedLineReader.alignToLine(raf, position);
+                if (start >= length) {
+                    break;
+                }
+                boundaries.add(start);
+                position = start + chunkSize;
+            }
+            boundaries.add(length);
+            final long[] result = new long[boundaries.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = boundaries.get(i);
+            }
+            return result;
+        } finally {
+            Parser.safeClose(raf);
+        }
+    }
+
+    private class Chunk implements Callable<Chunk> {
+        private final long start;
+        private final long end;
+        private Collection<LogResult> results;
+        private int lineCount;
+
+        Chunk(final long start, final long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public Chunk call() throws IOException {
+            if (maxResults > 0) {
+                results = new RingBuffer<LogResult>(maxResults);
+            } else {
+                results = new ArrayList<LogResult>();
+            }
+            // A record that starts in this chunk is completed with the lines at the start of the next chunk
+            final MappedLineReader reader = new MappedLineReader(file, start, Long.MAX_VALUE, Charset.defaultCharset());
+            try {
+                final RecordAssembler assembler = new RecordAssembler(new LogResultHandler() {
+                    @Override
+                    public boolean handle(final LogResult result) {
+                        return results.add(result);
+                    }
+                });
+                CharSequence line;
+                while ((line = reader.readLine()) != null) {
+                    final boolean inChunk = reader.getLineOffset() < end;
+                    if (inChunk) {
+                        lineCount = reader.getLineNumber();
+                    }
+                    final LogResult record = parser.parseRecord(reader.getLineNumber(), line);
+                    if (record != null && !inChunk) {
+                        break;
+                    }
+                    assembler.add(line, record);
+                }
+                assembler.flush();
+            } finally {
+                Parser.safeClose(reader);
+            }
+            return this;
+        }
+    }
+}
@@ -24,81 +24,82 @@ package org.jboss.logging.tools.parser;
 
 import java.io.BufferedReader;
 import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * A parser for log files.
+ * <p/>
+ * A log record may span more than one line, for example a record with a stack trace. The lines following the first
+ * line of a record are added to the exception, or the message if the format has no exception, of the record. The
+ * {@link LogResult#getLineNumber() line number} of a result is the line number of the first line.
  *
  * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
  */
 public class Parser {
 
     /**
-     * The regular expression for format strings.  Ain't regex grand?
-     */
-    private static final Pattern FORMAT_PATTERN = Pattern.compile(
-            // greedily match all non-format characters
-            "([^%]++)" +
-                    // match a format string...
-                    "|(?:%" +
-                    // optional minimum width plus justify flag
-                    "(?:(-)?(\\d+))?" +
-                    // optional maximum width
-                    "(?:\\.(\\d+))?" +
-                    // the actual format character
-                    "(.)" +
-                    // an optional argument string
-                    "(?:\\{([^}]*)\\})?" +
-                    // end format string
-                    ")"
-    );
-
-    private final List<FormatPart> parts;
+     * The result of {@link #parseRecord(int, CharSequence) parsing} the first line of a record that was not accepted by
+     * the filters.
+     */
+    static final LogResult REJECTED = new LogResult(0, Collections.<LogRecordPart>emptyList(), "");
+
+    private final LogFormat format;
+    // The format parts for each group in the pattern
+    private final List<FormatPart> groups;
     private final Pattern pattern;
+    private final FormatTokenizer tokenizer;
+    private final RecordStartMatcher recordStartMatcher;
     private final List<Filter> filters = new ArrayList<Filter>();
+    private final List<LogCodec> codecs = new ArrayList<LogCodec>(LogCodecs.defaults());
     private final boolean useNewLine;
+    private final int dateGroup;
+    // The bounds of the values of the line being parsed
+    private final ThreadLocal<int[]> bounds;
+    private FilterPlan filterPlan;
+    private ParserMetrics metrics;
+    private ValueDictionary dictionary = new ValueDictionary(ValueDictionary.DEFAULT_SIZE);
+    private int dictionarySize = ValueDictionary.DEFAULT_SIZE;
     private int maxResults;
+    private boolean useTokenizer;
+    private boolean dateOrdered;
 
-    private Parser(final int maxResults, final String pattern) {
+    private Parser(final int maxResults, final LogFormat format) {
         this.maxResults = maxResults;
-        parts = new ArrayList<FormatPart>();
-        final StringBuilder stringPattern = new StringBuilder();
-        final Matcher formatMatcher = FORMAT_PATTERN.matcher(pattern);
-        boolean useNewLine = false;
-        while (formatMatcher.find()) {
-            final String otherText = formatMatcher.group(1);
-            if (otherText != null) {
-                stringPattern.append(sanitize(otherText));
-            } else {
-                final String hyphen = formatMatcher.group(2);
-                final String minWidthString = formatMatcher.group(3);
-                final String maxWidthString = formatMatcher.group(4);
-                final String formatCharString = formatMatcher.group(5);
-                final String argument = formatMatcher.group(6);
-                final int minimumWidth = minWidthString == null ? 0 : Integer.parseInt(minWidthString);
-                final boolean leftJustify = hyphen != null;
-                final int maximumWidth = maxWidthString == null ? 0 : Integer.parseInt(maxWidthString);
-                final char formatChar = formatCharString.charAt(0);
-                final FormatType formatType = FormatType.fromChar(formatChar);
-                if (formatType == FormatType.NEW_LINE) useNewLine = true;
-                parts.add(new FormatPart(formatType, argument, leftJustify, minimumWidth, maximumWidth));
-                stringPattern.append(formatType.toPattern());
+        this.format = format;
+        groups = format.getGroups();
+        pattern = format.getPattern();
+        tokenizer = format.getTokenizer();
+        recordStartMatcher = format.getRecordStartMatcher();
+        useNewLine = format.isUseNewLine();
+        dateGroup = findGroup(FormatType.DATE);
+        useTokenizer = tokenizer != null;
+        filterPlan = FilterPlan.compile(groups, filters);
+        final int size = groups.size() * 2;
+        bounds = new ThreadLocal<int[]>() {
+            @Override
+            protected int[] initialValue() {
+                return new int[size];
             }
-        }
-        this.useNewLine = useNewLine;
-        System.out.println(stringPattern);
-        this.pattern = Pattern.compile(stringPattern.toString());
+        };
     }
 
     /**
-     * Creates a new parser for the format pattern.
+     * Creates a new parser for the format pattern. The pattern is {@link LogFormat#of(String) compiled} once and
+     * shared by the parsers for the same pattern.
      *
      * @param formatPattern the pattern the log output was written with
      *
@@ -117,11 +118,47 @@ public class Parser {
      * @return a new parser
      */
     public static Parser of(final int maxResults, final String formatPattern) {
-        return new Parser(maxResults, formatPattern);
+        return new Parser(maxResults, LogFormat.of(formatPattern));
+    }
+
+    /**
+     * Creates a new parser for the compiled format. Creating a parser for a compiled format is cheap, so a parser, which
+     * holds the filters and limits of a query, can be created for each query and the format shared between them.
+     *
+     * @param format the format the log output was written with
+     *
+     * @return a new parser
+     */
+    public static Parser of(final LogFormat format) {
+        return of(0, format);
+    }
+
+    /**
+     * Creates a new parser for the compiled format.
+     *
+     * @param maxResults the maximum number of results returned by the parser, 0 for all results
+     * @param format     the format the log output was written with
+     *
+     * @return a new parser
+     */
+    public static Parser of(final int maxResults, final LogFormat format) {
+        return new Parser(maxResults, format);
+    }
+
+    /**
+     * Returns the compiled format the parser parses.
+     *
+     * @return the format
+     */
+    public LogFormat getFormat() {
+        return format;
     }
 
     /**
      * Parses the output stream and returns a collection of results.
+     * <p/>
+     * If the {@link #getMaxResults() maximum number of results} is greater than 0 only the last results are retained
+     * while the stream is being read.
      *
      * @param resourceStream the log output stream
      *
@@ -130,64 +167,728 @@ public class Parser {
      * @throws IOException if an error occurs reading the stream
      */
     public Collection<LogResult> parse(final InputStream resourceStream) throws IOException {
-        final List<LogResult> results = new ArrayList<LogResult>();
+        final Collection<LogResult> results;
+        if (maxResults > 0) {
+            results = new RingBuffer<LogResult>(maxResults);
+        } else {
+            results = new ArrayList<LogResult>();
+        }
+        parse(resourceStream, new LogResultHandler() {
+            @Override
+            public boolean handle(final LogResult result) {
+                return results.add(result);
+            }
+        });
+        return results;
+    }
+
+    /**
+     * Parses the output stream passing each result to the handler as soon as it has been parsed. Parsing stops when the
+     * end of the stream has been reached or the handler returns {@code false}.
+     * <p/>
+     * The {@link #getMaxResults() maximum number of results} is not used as the handler decides which results to keep.
+     * The stream is closed when this method returns.
+     *
+     * @param resourceStream the log output stream
+     * @param handler        the handler to pass the results to
+     *
+     * @throws IOException if an error occurs reading the stream
+     */
+    public void parse(final InputStream resourceStream, final LogResultHandler handler) throws IOException {
         final BufferedReader reader = new BufferedReader(new InputStreamReader(resourceStream));
         try {
+            final RecordAssembler assembler = new RecordAssembler(handler);
             int lineCounter = 0;
             String line;
             while ((line = reader.readLine()) != null) {
-                final Matcher matcher;
-                // Append a new line character if we expect it
-                if (useNewLine) {
-                    matcher = pattern.matcher(line.concat("\n"));
-                } else {
-                    matcher = pattern.matcher(line);
+                if (!assembler.add(line, parseRecord(++lineCounter, line))) {
+                    return;
                 }
-                boolean add = false;
-                final List<LogRecordPart> logRecordParts = new ArrayList<LogRecordPart>();
-                while (matcher.find()) {
-                    add = true;
-                    if (matcher.groupCount() + 1 > parts.size()) {
-                        throw new IllegalStateException("Parsing error: Group count is greater than the format size.");
-                    }
-                    for (int i = 0; i < matcher.groupCount(); i++) {
-                        final FormatPart formatPart = parts.get(i);
-                        final FormatType formatType = formatPart.getFormatType();
-                        final String value = matcher.group(i + 1).trim();
-                        for (Filter filter : filters) {
-                            if (filter.allowType(formatType)) {
-                                if (!filter.accept(formatPart, value)) {
-                                    add = false;
-                                }
-                            }
-                        }
-                        logRecordParts.add(new LogRecordPart(formatType, value));
-                    }
+            }
+            assembler.flush();
+        } finally {
+            safeClose(reader);
+        }
+    }
+
+    /**
+     * Creates an iterator that parses the output stream as the results are requested. The stream is closed when the
+     * last result has been read or the iterator is {@link LogResultIterator#close() closed}.
+     * <p/>
+     * The {@link #getMaxResults() maximum number of results} is not used.
+     *
+     * @param resourceStream the log output stream
+     *
+     * @return an iterator over the log results
+     */
+    public LogResultIterator iterator(final InputStream resourceStream) {
+        return new LogResultIterator(this, new BufferedReader(new InputStreamReader(resourceStream)));
+    }
+
+    /**
+     * Creates an iterator that parses the file as the results are requested, decompressing the file if it was
+     * compressed with one of the codecs. If the log is {@link #setDateOrdered(boolean) in date order} and a {@link
+     * DateTimeFilter} has been added, the iterator starts at the first record in the date range and ends after the last
+     * record in the range.
+     *
+     * @param file the log file
+     *
+     * @return an iterator over the log results
+     *
+     * @throws IOException if an error occurs opening the file
+     */
+    LogResultIterator iterator(final File file) throws IOException {
+        final LogCodec codec = LogCodecs.find(codecs, file);
+        if (codec != null) {
+            return iterator(decompress(codec, file));
+        }
+        final DateTimeFilter dateFilter = (dateOrdered ? findDateTimeFilter() : null);
+        long start = 0L;
+        int lineBase = 0;
+        if (dateFilter != null) {
+            start = new DateRangeSearch(this, file, dateFilter, groups.get(dateGroup)).findStart();
+            lineBase = MappedLineReader.countLines(file, start);
+        }
+        final FileInputStream in = new FileInputStream(file);
+        boolean ok = false;
+        try {
+            in.getChannel().position(start);
+            final LogResultIterator result = new LogResultIterator(this, new BufferedReader(new InputStreamReader(in)), lineBase, dateFilter);
+            ok = true;
+            return result;
+        } finally {
+            if (!ok) {
+                safeClose(in);
+            }
+        }
+    }
+
+    /**
+     * Parses the file and returns a collection of results. The file is memory mapped and only the values needed to
+     * filter a line are decoded until the line has been accepted.
+     * <p/>
+     * If the {@link #getMaxResults() maximum number of results} is greater than 0 only the last results are retained
+     * while the file is being read.
+     *
+     * @param file the log file
+     *
+     * @return a collection of log results
+     *
+     * @throws IOException if an error occurs reading the file
+     */
+    public Collection<LogResult> parse(final File file) throws IOException {
+        final Collection<LogResult> results;
+        if (maxResults > 0) {
+            results = new RingBuffer<LogResult>(maxResults);
+        } else {
+            results = new ArrayList<LogResult>();
+        }
+        parse(file, new LogResultHandler() {
+            @Override
+            public boolean handle(final LogResult result) {
+                return results.add(result);
+            }
+        });
+        return results;
+    }
+
+    /**
+     * Parses the file passing each result to the handler as soon as it has been parsed. Parsing stops when the end of
+     * the file has been reached or the handler returns {@code false}.
+     * <p/>
+     * If the log is {@link #setDateOrdered(boolean) in date order} and a {@link DateTimeFilter} has been added, the
+     * file is searched for the first record in the date range and parsing stops after the last record in the range.
+     * <p/>
+     * A file compressed with one of the {@link #addCodec(LogCodec) codecs}, for example a gzip archive of a rotated
+     * log, is decompressed as it is parsed. The whole of a compressed file is always parsed.
+     * <p/>
+     * The {@link #getMaxResults() maximum number of results} is not used as the handler decides which results to keep.
+     *
+     * @param file    the log file
+     * @param handler the handler to pass the results to
+     *
+     * @throws IOException if an error occurs reading the file
+     */
+    public void parse(final File file, final LogResultHandler handler) throws IOException {
+        final LogCodec codec = LogCodecs.find(codecs, file);
+        if (codec != null) {
+            parse(decompress(codec, file), handler);
+            return;
+        }
+        final DateTimeFilter dateFilter = (dateOrdered ? findDateTimeFilter() : null);
+        long start = 0L;
+        int lineBase = 0;
+        if (dateFilter != null) {
+            start = new DateRangeSearch(this, file, dateFilter, groups.get(dateGroup)).findStart();
+            lineBase = MappedLineReader.countLines(file, start);
+        }
+        parse(file, start, Long.MAX_VALUE, lineBase, handler);
+    }
+
+    /**
+     * Parses the indexed log file, skipping the parts of the file the index shows do not contain records accepted by
+     * the filters. The lines added to the file after it was indexed are parsed in full.
+     * <p/>
+     * Dates are only used to skip parts of the file if the log is {@link #setDateOrdered(boolean) in date order}. If
+     * the index is for a different format pattern or is no longer valid for the file, the whole file is parsed.
+     *
+     * @param index the index of the log file
+     *
+     * @return a collection of log results
+     *
+     * @throws IOException if an error occurs reading the file
+     */
+    public Collection<LogResult> parse(final LogIndex index) throws IOException {
+        final Collection<LogResult> results;
+        if (maxResults > 0) {
+            results = new RingBuffer<LogResult>(maxResults);
+        } else {
+            results = new ArrayList<LogResult>();
+        }
+        parse(index, new LogResultHandler() {
+            @Override
+            public boolean handle(final LogResult result) {
+                return results.add(result);
+            }
+        });
+        return results;
+    }
+
+    /**
+     * Parses the indexed log file passing each result to the handler as soon as it has been parsed.
+     *
+     * @param index   the index of the log file
+     * @param handler the handler to pass the results to
+     *
+     * @throws IOException if an error occurs reading the file
+     * @see #parse(LogIndex)
+     */
+    public void parse(final LogIndex index, final LogResultHandler handler) throws IOException {
+        final File file = index.getLogFile();
+        if (!format.getFormatPattern().equals(index.getFormatPattern()) || !index.isValid()) {
+            parse(file, handler);
+            return;
+        }
+        for (LogIndex.Range range : index.findRanges(this)) {
+            if (!parse(file, range.start, range.end, range.lineNumber, handler)) {
+                return;
+            }
+        }
+        parse(file, index.getIndexedLength(), Long.MAX_VALUE, index.getLineCount(), handler);
+    }
+
+    /**
+     * Searches the indexed log file for the records containing the words and phrases of the query, only parsing the
+     * records the index shows contain all the words. The records added to the file after it was indexed are parsed in
+     * full. The records found must also be accepted by the filters.
+     * <p/>
+     * The query is a list of words and phrases in double quotes, for example {@code IllegalStateException "user 42"}.
+     * A record is found if every word and phrase is in its message, exception or thread name. Words match whole words
+     * of letters and digits ignoring case, a term like {@code java.lang.IllegalStateException} is searched for as the
+     * phrase of its words. If the index is for a different format pattern or is no longer valid for the file, the
+     * whole file is parsed.
+     *
+     * @param index the index of the log file
+     * @param query the words and phrases to search for
+     *
+     * @return a collection of log results
+     *
+     * @throws IOException              if an error occurs reading the file or the index
+     * @throws IllegalArgumentException if the query has no words
+     */
+    public Collection<LogResult> search(final TextIndex index, final String query) throws IOException {
+        final Collection<LogResult> results;
+        if (maxResults > 0) {
+            results = new RingBuffer<LogResult>(maxResults);
+        } else {
+            results = new ArrayList<LogResult>();
+        }
+        search(index, query, new LogResultHandler() {
+            @Override
+            public boolean handle(final LogResult result) {
+                return results.add(result);
+            }
+        });
+        return results;
+    }
+
+    /**
+     * Searches the indexed log file passing each record found to the handler as soon as it has been parsed.
+     *
+     * @param index   the index of the log file
+     * @param query   the words and phrases to search for
+     * @param handler the handler to pass the results to
+     *
+     * @throws IOException              if an error occurs reading the file or the index
+     * @throws IllegalArgumentException if the query has no words
+     * @see #search(TextIndex, String)
+     */
+    public void search(final TextIndex index, final String query, final LogResultHandler handler) throws IOException {
+        final TextQuery textQuery = TextQuery.parse(query);
+        final int[] fields = TextIndex.fields(this);
+        // The index only finds the records with all the terms, the words must also be in one value and in order
+        final LogResultHandler matching = new LogResultHandler() {
+            @Override
+            public boolean handle(final LogResult result) {
+                return !textQuery.matches(result, fields) || handler.handle(result);
+            }
+        };
+        final File file = index.getLogFile();
+        if (!format.getFormatPattern().equals(index.getFormatPattern()) || !index.isValid()) {
+            parse(file, matching);
+            return;
+        }
+        final int[] records = index.find(textQuery);
+        int i = 0;
+        while (i < records.length) {
+            // Records next to each other are parsed together
+            int last = i;
+            while (last + 1 < records.length && records[last + 1] == records[last] + 1) {
+                last++;
+            }
+            final long start = index.getOffset(records[i]);
+            final long end = index.getOffset(records[last]) + 1L;
+            if (!parse(file, start, end, index.getLinesBefore(records[i]), matching)) {
+                return;
+            }
+            i = last + 1;
+        }
+        parse(file, index.getIndexedLength(), Long.MAX_VALUE, index.getLineCount(), matching);
+    }
+
+    /**
+     * Parses the records that start between the offsets.
+     *
+     * @return {@code false} if the handler stopped parsing, otherwise {@code true}
+     */
+    private boolean parse(final File file, final long start, final long end, final int lineBase, final LogResultHandler handler) throws IOException {
+        final DateTimeFilter dateFilter = (dateOrdered ? findDateTimeFilter() : null);
+        final MappedLineReader reader = new MappedLineReader(file, start, Long.MAX_VALUE, Charset.defaultCharset());
+        try {
+            final RecordAssembler assembler = new RecordAssembler(handler);
+            CharSequence line;
+            while ((line = reader.readLine()) != null) {
+                final LogResult record = parseRecord(lineBase + reader.getLineNumber(), line);
+                // The lines following the end are only read to complete the last record
+                if (record != null && reader.getLineOffset() >= end) {
+                    break;
+                }
+                if (!assembler.add(line, record)) {
+                    return false;
                 }
-                lineCounter++;
-                if (add) {
-                    results.add(new LogResult(lineCounter, logRecordParts, line));
+                // Stop once the records are after the date range
+                if (record == REJECTED && dateFilter != null && isAfter(dateFilter, line)) {
+                    assembler.flush();
+                    return false;
+                }
+            }
+            return assembler.flush();
+        } finally {
+            safeClose(reader);
+        }
+    }
+
+    /**
+     * Parses the file starting with the last line and stops once the {@link #getMaxResults() maximum number of
+     * results} have been found. If the maximum number of results is 0, or the file is compressed, the whole file is
+     * parsed.
+     * <p/>
+     * Note that the lines before the first result found are still counted to determine the {@link
+     * LogResult#getLineNumber() line number}, but they are not parsed.
+     *
+     * @param file the log file
+     *
+     * @return a collection of log results
+     *
+     * @throws IOException if an error occurs reading the file
+     */
+    public Collection<LogResult> tail(final File file) throws IOException {
+        // A compressed file can't be read backwards
+        if (maxResults <= 0 || LogCodecs.find(codecs, file) != null) {
+            return parse(file);
+        }
+        final LinkedList<LogResult> found = new LinkedList<LogResult>();
+        final ReverseLineReader reader = new ReverseLineReader(file);
+        try {
+            // Line numbers are negative, counting back from the end of the file, until the lines before are counted
+            int linesRead = 0;
+            // The lines following the first line of a record are read before the first line
+            final LinkedList<String> continuation = new LinkedList<String>();
+            String line;
+            while (found.size() < maxResults && (line = reader.readLine()) != null) {
+                final LogResult result = parseRecord(-(++linesRead), line);
+                if (result == null) {
+                    continuation.addFirst(line);
+                } else {
+                    if (result != REJECTED) {
+                        found.addFirst(continuation.isEmpty() ? result : result.withContinuation(join(continuation)));
+                    }
+                    continuation.clear();
                 }
             }
-            // Trim the results
-            if (maxResults > 0 && results.size() > maxResults) {
-                final int start = results.size() - maxResults;
-                final int end = results.size();
-                return results.subList(start, end);
+            final long lineCount = MappedLineReader.countLines(file, reader.getLineOffset()) + linesRead;
+            final List<LogResult> results = new ArrayList<LogResult>(found.size());
+            for (LogResult result : found) {
+                results.add(result.withLineNumber((int) (lineCount + result.getLineNumber() + 1)));
             }
+            return results;
         } finally {
             safeClose(reader);
         }
+    }
+
+    /**
+     * Parses the file by splitting it into chunks and parsing the chunks concurrently with the executor. The results
+     * are in the same order, and have the same line numbers, as they would if the file was parsed with {@link
+     * #parse(java.io.File)}.
+     * <p/>
+     * A compressed file can't be split into chunks, so it is parsed as it is decompressed. The members of a gzip file of
+     * several members, for example concatenated archives or a file written by {@code bgzip}, are inflated concurrently
+     * with the executor while the inflated members are parsed, once the first member has been found to end at the start
+     * of another. A file of a single member, which includes files written by {@code gzip} and {@code pigz}, is inflated
+     * as it is parsed.
+     * <p/>
+     * The filters are invoked concurrently and must be thread-safe. The parser must not be modified until this method
+     * returns.
+     *
+     * @param file     the log file
+     * @param executor the executor used to parse the chunks
+     *
+     * @return a collection of log results
+     *
+     * @throws IOException if an error occurs reading the file
+     */
+    public Collection<LogResult> parse(final File file, final ExecutorService executor) throws IOException {
+        final LogCodec codec = LogCodecs.find(codecs, file);
+        if (codec == null) {
+            return new ParallelParser(this, file, maxResults, ParallelParser.DEFAULT_CHUNK_SIZE).parse(executor);
+        }
+        InputStream in = null;
+        if (codec == GzipCodec.INSTANCE) {
+            in = ParallelGzipInputStream.open(file, executor, Runtime.getRuntime().availableProcessors() * 2);
+        }
+        return parse(in == null ? decompress(codec, file) : in);
+    }
+
+    /**
+     * Parses several files concurrently with the executor and merges the results into date order as they are parsed,
+     * reading each file in batches so only a few results of each file are held at once. Each file is expected to be
+     * in date order, for example a log file and the files it was rotated to, see {@link
+     * LogFiles#rotatedSet(java.io.File)}. Results with the same date are in the order of the files. The {@link
+     * LogResult#getSource() source} of each result is the file it was read from and the line number is the line number
+     * in that file.
+     * <p/>
+     * Dates are only compared between files if the date pattern has a date field, like the day. Otherwise, for example
+     * with a {@code HH:mm:ss,SSS} pattern and daily rotation, or if the format has no date, the files are read one
+     * after the other oldest first, see {@link LogFiles#rotatedSet(java.io.File)}.
+     * <p/>
+     * If {@link #getMaxResults() max results} is greater than 0, only the {@link #tail(java.io.File) tail} of each file
+     * is merged and only the last results of the merge are returned.
+     * <p/>
+     * The filters are invoked concurrently and must be thread-safe. The parser must not be modified until this method
+     * returns.
+     *
+     * @param files    the log files
+     * @param executor the executor used to parse the files
+     *
+     * @return a collection of log results
+     *
+     * @throws IOException if an error occurs reading one of the files
+     */
+    public Collection<LogResult> parse(final Collection<File> files, final ExecutorService executor) throws IOException {
+        final Collection<LogResult> results;
+        if (maxResults > 0) {
+            results = new RingBuffer<LogResult>(maxResults);
+        } else {
+            results = new ArrayList<LogResult>();
+        }
+        new MultiFileParser(this, files).parse(executor, new LogResultHandler() {
+            @Override
+            public boolean handle(final LogResult result) {
+                return results.add(result);
+            }
+        });
         return results;
     }
 
     /**
-     * Adds a filter for processing the log records.
+     * Parses several files concurrently with the executor and passes the results to the handler in date order as they
+     * are parsed. See {@link #parse(java.util.Collection, java.util.concurrent.ExecutorService)} for how the
+     * results are merged. The handler is invoked from the calling thread.
+     * <p/>
+     * If {@link #getMaxResults() max results} is greater than 0, only the {@link #tail(java.io.File) tail} of each file
+     * is passed to the handler.
+     * <p/>
+     * The filters are invoked concurrently and must be thread-safe. The parser must not be modified until this method
+     * returns.
+     *
+     * @param files    the log files
+     * @param executor the executor used to parse the files
+     * @param handler  the handler to pass the results to, returning {@code false} stops the merge
+     *
+     * @throws IOException if an error occurs reading one of the files
+     */
+    public void parse(final Collection<File> files, final ExecutorService executor, final LogResultHandler handler) throws IOException {
+        new MultiFileParser(this, files).parse(executor, handler);
+    }
+
+    /**
+     * Parses a single line.
+     *
+     * @param lineNumber the line number
+     * @param line       the line to parse
+     *
+     * @return the log result or {@code null} if the line did not match or was filtered out
+     */
+    LogResult parseLine(final int lineNumber, final CharSequence line) {
+        final LogResult result = parseRecord(lineNumber, line);
+        return (result == REJECTED ? null : result);
+    }
+
+    /**
+     * Parses a line that may be the first line of a record. The lines following the first line of a record, for
+     * example the lines of a stack trace, are rejected by the {@link RecordStartMatcher} without being tokenized.
+     *
+     * @param lineNumber the line number
+     * @param line       the line to parse
+     *
+     * @return the log result, {@link #REJECTED} if the line is the first line of a record that was filtered out or
+     *         {@code null} if the line is not the first line of a record
+     */
+    LogResult parseRecord(final int lineNumber, final CharSequence line) {
+        final ParserMetrics metrics = this.metrics;
+        if (metrics != null) {
+            return parseRecord(lineNumber, line, metrics);
+        }
+        if (!isRecordStart(line)) {
+            return null;
+        }
+        final int[] bounds = this.bounds.get();
+        if (!tokenize(line, bounds)) {
+            return null;
+        }
+        // Only the values being filtered are extracted until the record has been accepted
+        if (!filterPlan.accept(this, line, bounds)) {
+            return REJECTED;
+        }
+        return new LogResult(lineNumber, line.toString(), groups, Arrays.copyOf(bounds, bounds.length), dictionary);
+    }
+
+    private LogResult parseRecord(final int lineNumber, final CharSequence line, final ParserMetrics metrics) {
+        final boolean timing = metrics.isTiming();
+        final long start = (timing ? System.nanoTime() : 0L);
+        metrics.lineRead(line.length());
+        final int[] bounds = this.bounds.get();
+        final boolean recordStart = isRecordStart(line);
+        final boolean matched = recordStart && tokenize(line, bounds);
+        final long matchEnd = (timing ? System.nanoTime() : 0L);
+        if (timing) {
+            metrics.matchTime(matchEnd - start);
+        }
+        if (!matched) {
+            if (recordStart) {
+                metrics.unmatchedLine();
+            } else {
+                metrics.continuationLine();
+            }
+            return null;
+        }
+        final boolean accepted = filterPlan.accept(this, line, bounds);
+        if (timing) {
+            metrics.filterTime(System.nanoTime() - matchEnd);
+        }
+        if (!accepted) {
+            metrics.recordRejected();
+            return REJECTED;
+        }
+        metrics.recordAccepted();
+        return new LogResult(lineNumber, line.toString(), groups, Arrays.copyOf(bounds, bounds.length), dictionary);
+    }
+
+    /**
+     * Parses the value of the first date in the line.
+     *
+     * @param line the line to parse
+     *
+     * @return the date value or {@code null} if the line does not match or the format has no date
+     */
+    String parseDate(final CharSequence line) {
+        if (dateGroup < 0) {
+            return null;
+        }
+        final int[] bounds = new int[groups.size() * 2];
+        if (isRecordStart(line) && tokenize(line, bounds)) {
+            return value(line, bounds, dateGroup);
+        }
+        return null;
+    }
+
+    /**
+     * Checks if the record the line was the first line of, which was rejected by {@link #parseRecord(int,
+     * CharSequence)}, is after the date range of the filter.
+     *
+     * @param dateFilter the date filter
+     * @param line       the first line of the rejected record
+     *
+     * @return {@code true} if the record is after the date range, otherwise {@code false}
+     */
+    boolean isAfter(final DateTimeFilter dateFilter, final CharSequence line) {
+        final String date = rejectedDate(line);
+        return date != null && dateFilter.compare(groups.get(dateGroup), date) == DateTimeFilter.AFTER;
+    }
+
+    /**
+     * Returns the value of the first date of a line {@link #parseRecord(int, CharSequence) parsed} on this thread as
+     * {@link #REJECTED}, from the bounds the line was tokenized into instead of tokenizing the line again.
+     *
+     * @param line the line that was last parsed on this thread
+     *
+     * @return the date value or {@code null} if the format has no date
+     */
+    String rejectedDate(final CharSequence line) {
+        return (dateGroup < 0 ? null : value(line, bounds.get(), dateGroup));
+    }
+
+    /**
+     * Checks the start of the line to see if it could be the first line of a record. This check does not tokenize the
+     * line, a line that passes may still not match the format.
+     *
+     * @param line the line to check
+     *
+     * @return {@code false} if the line is not the first line of a record, otherwise {@code true}
+     */
+    boolean isRecordStart(final CharSequence line) {
+        return recordStartMatcher == null || recordStartMatcher.matches(line);
+    }
+
+    /**
+     * Splits the line into the values of each group, with either the tokenizer or the regular expression. The bounds
+     * of the value for group {@code i} are stored in {@code bounds[i * 2]} and {@code bounds[i * 2 + 1]} with leading
+     * and trailing whitespace excluded.
+     *
+     * @param line   the line to split
+     * @param bounds the array to store the bounds in
+     *
+     * @return {@code true} if the line matched the format, otherwise {@code false}
+     */
+    boolean tokenize(final CharSequence line, final int[] bounds) {
+        if (useTokenizer) {
+            return tokenizer.tokenize(line, bounds);
+        }
+        final Matcher matcher = matcher(line);
+        if (!matcher.find()) {
+            return false;
+        }
+        for (int i = 0; i < matcher.groupCount(); i++) {
+            int start = matcher.start(i + 1);
+            int end = matcher.end(i + 1);
+            while (start < end && line.charAt(start) <= ' ') {
+                start++;
+            }
+            while (end > start && line.charAt(end - 1) <= ' ') {
+                end--;
+            }
+            bounds[i * 2] = start;
+            bounds[i * 2 + 1] = end;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the value of a group. The values of the format types with few distinct values are shared through the
+     * {@link #setDictionarySize(int) dictionary}.
+     *
+     * @param line   the line
+     * @param bounds the bounds of the values in the line
+     * @param group  the group
+     *
+     * @return the value
+     */
+    String value(final CharSequence line, final int[] bounds, final int group) {
+        final int start = bounds[group * 2];
+        final int end = bounds[group * 2 + 1];
+        if (dictionary != null && ValueDictionary.isDictionaryType(groups.get(group).getFormatType())) {
+            return dictionary.get(line, start, end);
+        }
+        return line.subSequence(start, end).toString();
+    }
+
+    /**
+     * The number of values in each line.
+     *
+     * @return the number of groups
+     */
+    int getGroupCount() {
+        return groups.size();
+    }
+
+    /**
+     * The format part for the group.
+     *
+     * @param group the group index
+     *
+     * @return the format part
+     */
+    FormatPart getGroup(final int group) {
+        return groups.get(group);
+    }
+
+    /**
+     * Finds the first group with the format type.
+     *
+     * @param formatType the format type
+     *
+     * @return the group index or -1 if the format does not contain the type
+     */
+    int findGroup(final FormatType formatType) {
+        for (int i = 0; i < groups.size(); i++) {
+            if (groups.get(i).getFormatType() == formatType) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The filters added to this parser compiled into a plan.
+     *
+     * @return the filter plan
+     */
+    FilterPlan getFilterPlan() {
+        return filterPlan;
+    }
+
+    private Matcher matcher(final CharSequence line) {
+        // Append a new line character if we expect it
+        if (useNewLine) {
+            if (line instanceof LineBuffer) {
+                return pattern.matcher(((LineBuffer) line).withNewLine());
+            }
+            return pattern.matcher(line.toString().concat("\n"));
+        }
+        return pattern.matcher(line);
+    }
+
+    DateTimeFilter findDateTimeFilter() {
+        if (dateGroup >= 0) {
+            for (Filter filter : filters) {
+                if (filter instanceof DateTimeFilter) {
+                    return (DateTimeFilter) filter;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds a filter for processing the log records. A record must be accepted by all the filters, an {@link OrFilter}
+     * or {@link NotFilter} can be used to build other conditions.
      *
      * @param filter the filter
      */
     public void addFilter(final Filter filter) {
         filters.add(filter);
+        filterPlan = FilterPlan.compile(groups, filters, metrics);
     }
 
     /**
@@ -197,6 +898,26 @@ public class Parser {
      */
     public void removeFilter(final Filter filter) {
         filters.remove(filter);
+        filterPlan = FilterPlan.compile(groups, filters, metrics);
+    }
+
+    /**
+     * Adds a codec used to decompress compressed log files. The codecs are checked in the order they were added, after
+     * gzip and the codecs found with the {@link java.util.ServiceLoader}.
+     *
+     * @param codec the codec
+     */
+    public void addCodec(final LogCodec codec) {
+        codecs.add(codec);
+    }
+
+    /**
+     * Removes the codec.
+     *
+     * @param codec the codec
+     */
+    public void removeCodec(final LogCodec codec) {
+        codecs.remove(codec);
     }
 
     /**
@@ -217,37 +938,117 @@ public class Parser {
         this.maxResults = maxResults;
     }
 
-    static String sanitize(final String pattern) {
+    /**
+     * Indicates whether the format is parsed with a tokenizer rather than a regular expression.
+     *
+     * @return {@code true} if the tokenizer is used, otherwise {@code false}
+     */
+    public boolean isUseTokenizer() {
+        return useTokenizer;
+    }
+
+    /**
+     * Sets whether the format should be parsed with a tokenizer, which is the default, or with a regular expression.
+     * Not all formats can be tokenized, for example a new line in the middle of the format, in which case the regular
+     * expression is always used.
+     *
+     * @param useTokenizer {@code true} to use the tokenizer if the format supports it, {@code false} to always use a
+     *                     regular expression
+     */
+    public void setUseTokenizer(final boolean useTokenizer) {
+        this.useTokenizer = useTokenizer && tokenizer != null;
+    }
+
+    /**
+     * Returns the size of the dictionary used to share the values of categories, levels, threads, class names and
+     * source file names between results.
+     *
+     * @return the size of the dictionary, 0 if values are not shared
+     */
+    public int getDictionarySize() {
+        return dictionarySize;
+    }
+
+    /**
+     * Sets the size of the dictionary used to share the values of categories, levels, threads, class names and source
+     * file names between results. The values of a large number of results then use a lot less memory, and filtering on
+     * the values creates fewer strings. When the dictionary is full the values evict each other.
+     *
+     * @param dictionarySize the size of the dictionary, 0 to not share values
+     */
+    public void setDictionarySize(final int dictionarySize) {
+        this.dictionarySize = dictionarySize;
+        dictionary = (dictionarySize > 0 ? new ValueDictionary(dictionarySize) : null);
+    }
+
+    /**
+     * Indicates whether the records in the log are in date order.
+     *
+     * @return {@code true} if the records are in date order, otherwise {@code false}
+     */
+    public boolean isDateOrdered() {
+        return dateOrdered;
+    }
+
+    /**
+     * Sets whether the records in the log are in date order, which is {@code false} by default. When parsing a file in
+     * date order with a {@link DateTimeFilter} only the records in the date range are parsed.
+     * <p/>
+     * A log is only in date order if the date pattern includes every field that changes over the life of the log.
+     * For example a log written over several days with a {@code HH:mm:ss} pattern is not in date order.
+     *
+     * @param dateOrdered {@code true} if the records are in date order
+     */
+    public void setDateOrdered(final boolean dateOrdered) {
+        this.dateOrdered = dateOrdered;
+    }
+
+    /**
+     * The metrics the lines parsed are counted in.
+     *
+     * @return the metrics or {@code null} if the lines are not counted
+     */
+    public ParserMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the metrics to count the lines parsed in, which are {@code null} by default. The metrics count the lines
+     * read, the lines that did not match the format, the records accepted and rejected by each filter and optionally
+     * the time spent in each stage. Without metrics nothing is counted.
+     *
+     * @param metrics the metrics or {@code null} to stop counting
+     */
+    public void setMetrics(final ParserMetrics metrics) {
+        this.metrics = metrics;
+        filterPlan = FilterPlan.compile(groups, filters, metrics);
+    }
+
+    private static String join(final List<String> lines) {
         final StringBuilder result = new StringBuilder();
-        for (char c : pattern.toCharArray()) {
-            switch (c) {
-                case '\\':
-                case '(':
-                case ')':
-                case '[':
-                case ']':
-                case '{':
-                case '}':
-                case '$':
-                case '^':
-                case '.':
-                case '*':
-                case '+':
-                case '|':
-                case '?':
-                    result.append('\\').append(c);
-                    break;
-                case '\t':
-                    result.append("\\t");
-                    break;
-                default:
-                    result.append(c);
-                    break;
+        for (String line : lines) {
+            if (result.length() > 0) {
+                result.append('\n');
             }
+            result.append(line);
         }
         return result.toString();
     }
 
+    private static InputStream decompress(final LogCodec codec, final File file) throws IOException {
+        final InputStream in = new FileInputStream(file);
+        boolean ok = false;
+        try {
+            final InputStream result = codec.decompress(in);
+            ok = true;
+            return result;
+        } finally {
+            if (!ok) {
+                safeClose(in);
+            }
+        }
+    }
+
     static void safeClose(final Closeable closeable) {
         if (closeable != null) try {
             closeable.close();
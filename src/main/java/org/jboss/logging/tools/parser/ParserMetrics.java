@@ -0,0 +1,315 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters of the lines read by a {@link Parser}, attached with {@link Parser#setMetrics(ParserMetrics)}. The
+ * counters are striped so the threads of a {@link ParallelParser} or {@link PipelinedParser} rarely update the same
+ * memory, and a parser without metrics does not count anything.
+ * <p/>
+ * The time spent checking each line against the format and filtering each record is only measured if the metrics
+ * are created with timing on, which reads the clock twice a line. The metrics can be shared by several parsers and
+ * can be read from any thread, or {@link #register(String) registered} as an MBean.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class ParserMetrics implements ParserMetricsMXBean {
+
+    /**
+     * The domain of the names the metrics are registered with.
+     */
+    public static final String DOMAIN = "org.jboss.logging.tools.parser";
+
+    private final boolean timing;
+    private final StripedCounter linesRead = new StripedCounter();
+    private final StripedCounter charactersRead = new StripedCounter();
+    private final StripedCounter continuationLines = new StripedCounter();
+    private final StripedCounter unmatchedLines = new StripedCounter();
+    private final StripedCounter recordsAccepted = new StripedCounter();
+    private final StripedCounter recordsRejected = new StripedCounter();
+    private final LatencyHistogram matchTimes;
+    private final LatencyHistogram filterTimes;
+    private final Map<Filter, FilterCounter> filterCounters = new IdentityHashMap<Filter, FilterCounter>();
+    private final List<FilterCounter> filterOrder = new ArrayList<FilterCounter>();
+    private final List<ObjectName> names = new ArrayList<ObjectName>();
+    private volatile long startNanos = System.nanoTime();
+
+    /**
+     * Creates metrics that only count.
+     */
+    public ParserMetrics() {
+        this(false);
+    }
+
+    /**
+     * Creates metrics.
+     *
+     * @param timing {@code true} to measure the time spent in each stage
+     */
+    public ParserMetrics(final boolean timing) {
+        this.timing = timing;
+        matchTimes = (timing ? new LatencyHistogram() : null);
+        filterTimes = (timing ? new LatencyHistogram() : null);
+    }
+
+    @Override
+    public long getLinesRead() {
+        return linesRead.sum();
+    }
+
+    @Override
+    public long getCharactersRead() {
+        return charactersRead.sum();
+    }
+
+    @Override
+    public double getCharactersPerSecond() {
+        final long nanos = System.nanoTime() - startNanos;
+        return (nanos <= 0L ? 0.0 : charactersRead.sum() * 1.0E9 / nanos);
+    }
+
+    @Override
+    public long getContinuationLines() {
+        return continuationLines.sum();
+    }
+
+    @Override
+    public long getUnmatchedLines() {
+        return unmatchedLines.sum();
+    }
+
+    @Override
+    public long getRecordsAccepted() {
+        return recordsAccepted.sum();
+    }
+
+    @Override
+    public long getRecordsRejected() {
+        return recordsRejected.sum();
+    }
+
+    @Override
+    public Map<String, Long> getFilterAccepts() {
+        final Map<String, Long> result = new LinkedHashMap<String, Long>();
+        for (FilterCounter counter : filterCounters()) {
+            result.put(counter.name, counter.accepted.sum());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getFilterRejects() {
+        final Map<String, Long> result = new LinkedHashMap<String, Long>();
+        for (FilterCounter counter : filterCounters()) {
+            result.put(counter.name, counter.rejected.sum());
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isTiming() {
+        return timing;
+    }
+
+    @Override
+    public long getMatchNanos() {
+        return (timing ? matchTimes.getTotal() : 0L);
+    }
+
+    @Override
+    public long getFilterNanos() {
+        return (timing ? filterTimes.getTotal() : 0L);
+    }
+
+    @Override
+    public long[] getMatchHistogram() {
+        return (timing ? matchTimes.getCounts() : new long[LatencyHistogram.BUCKETS]);
+    }
+
+    @Override
+    public long[] getFilterHistogram() {
+        return (timing ? filterTimes.getCounts() : new long[LatencyHistogram.BUCKETS]);
+    }
+
+    @Override
+    public long matchPercentile(final double percentile) {
+        return (timing ? matchTimes.getPercentile(percentile) : 0L);
+    }
+
+    @Override
+    public long filterPercentile(final double percentile) {
+        return (timing ? filterTimes.getPercentile(percentile) : 0L);
+    }
+
+    @Override
+    public void reset() {
+        linesRead.reset();
+        charactersRead.reset();
+        continuationLines.reset();
+        unmatchedLines.reset();
+        recordsAccepted.reset();
+        recordsRejected.reset();
+        if (timing) {
+            matchTimes.reset();
+            filterTimes.reset();
+        }
+        for (FilterCounter counter : filterCounters()) {
+            counter.accepted.reset();
+            counter.rejected.reset();
+        }
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, with the name {@code
+     * org.jboss.logging.tools.parser:type=ParserMetrics,name=<name>}.
+     *
+     * @param name the name of the parser
+     *
+     * @return the name the metrics were registered with
+     *
+     * @throws JMException if the metrics could not be registered
+     */
+    public ObjectName register(final String name) throws JMException {
+        final ObjectName objectName = new ObjectName(DOMAIN + ":type=ParserMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        synchronized (names) {
+            names.add(objectName);
+        }
+        return objectName;
+    }
+
+    /**
+     * Unregisters the metrics from the platform MBean server under all the names they were {@link #register(String)
+     * registered} with.
+     *
+     * @throws JMException if the metrics could not be unregistered
+     */
+    public void unregister() throws JMException {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        synchronized (names) {
+            while (!names.isEmpty()) {
+                final ObjectName objectName = names.remove(names.size() - 1);
+                if (server.isRegistered(objectName)) {
+                    server.unregisterMBean(objectName);
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[linesRead=%d, charactersRead=%d, continuationLines=%d, unmatchedLines=%d, " +
+                "recordsAccepted=%d, recordsRejected=%d, matchNanos=%d, filterNanos=%d, filterAccepts=%s, " +
+                "filterRejects=%s]", getClass().getSimpleName(), getLinesRead(), getCharactersRead(),
+                getContinuationLines(), getUnmatchedLines(), getRecordsAccepted(), getRecordsRejected(),
+                getMatchNanos(), getFilterNanos(), getFilterAccepts(), getFilterRejects());
+    }
+
+    void lineRead(final int length) {
+        linesRead.increment();
+        charactersRead.add(length);
+    }
+
+    void continuationLine() {
+        continuationLines.increment();
+    }
+
+    void unmatchedLine() {
+        unmatchedLines.increment();
+    }
+
+    void recordAccepted() {
+        recordsAccepted.increment();
+    }
+
+    void recordRejected() {
+        recordsRejected.increment();
+    }
+
+    void matchTime(final long nanos) {
+        matchTimes.record(nanos);
+    }
+
+    void filterTime(final long nanos) {
+        filterTimes.record(nanos);
+    }
+
+    /**
+     * The counter of the records the filter accepted and rejected, created the first time the filter is seen.
+     *
+     * @param filter the filter
+     *
+     * @return the counter
+     */
+    FilterCounter counter(final Filter filter) {
+        synchronized (filterCounters) {
+            FilterCounter result = filterCounters.get(filter);
+            if (result == null) {
+                final String type = filter.getClass().getSimpleName();
+                final String name = (type.length() == 0 ? filter.getClass().getName() : type);
+                result = new FilterCounter(name + "[" + filterOrder.size() + "]");
+                filterCounters.put(filter, result);
+                filterOrder.add(result);
+            }
+            return result;
+        }
+    }
+
+    private List<FilterCounter> filterCounters() {
+        synchronized (filterCounters) {
+            return new ArrayList<FilterCounter>(filterOrder);
+        }
+    }
+
+    /**
+     * The number of records a filter accepted and rejected.
+     */
+    static class FilterCounter {
+        private final String name;
+        private final StripedCounter accepted = new StripedCounter();
+        private final StripedCounter rejected = new StripedCounter();
+
+        FilterCounter(final String name) {
+            this.name = name;
+        }
+
+        void count(final boolean accept) {
+            if (accept) {
+                accepted.increment();
+            } else {
+                rejected.increment();
+            }
+        }
+    }
+}
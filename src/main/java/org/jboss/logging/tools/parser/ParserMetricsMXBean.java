@@ -0,0 +1,158 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.util.Map;
+
+/**
+ * The management interface of {@link ParserMetrics}.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public interface ParserMetricsMXBean {
+
+    /**
+     * The number of lines read by the parser.
+     *
+     * @return the number of lines
+     */
+    long getLinesRead();
+
+    /**
+     * The number of characters in the lines read by the parser, not including the line terminators.
+     *
+     * @return the number of characters
+     */
+    long getCharactersRead();
+
+    /**
+     * The number of characters read a second since the metrics were created or {@link #reset() reset}.
+     *
+     * @return the throughput in characters a second
+     */
+    double getCharactersPerSecond();
+
+    /**
+     * The number of lines that were not the first line of a record, found by only checking the start of the line.
+     *
+     * @return the number of lines
+     */
+    long getContinuationLines();
+
+    /**
+     * The number of lines that could have been the first line of a record and did not match the format. These lines
+     * are appended to the previous record. If the format can not be checked from the start of a line, lines of a
+     * stack trace are counted here.
+     *
+     * @return the number of lines
+     */
+    long getUnmatchedLines();
+
+    /**
+     * The number of records accepted by the filters.
+     *
+     * @return the number of records
+     */
+    long getRecordsAccepted();
+
+    /**
+     * The number of records rejected by the filters.
+     *
+     * @return the number of records
+     */
+    long getRecordsRejected();
+
+    /**
+     * The number of records each filter accepted, keyed by the type of the filter and the order it was first seen.
+     *
+     * @return the number of records accepted by each filter
+     */
+    Map<String, Long> getFilterAccepts();
+
+    /**
+     * The number of records each filter rejected, keyed by the type of the filter and the order it was first seen.
+     *
+     * @return the number of records rejected by each filter
+     */
+    Map<String, Long> getFilterRejects();
+
+    /**
+     * Checks whether the time spent in each stage is measured.
+     *
+     * @return {@code true} if the stages are timed, otherwise {@code false}
+     */
+    boolean isTiming();
+
+    /**
+     * The time spent checking the lines against the format, the total of all the threads.
+     *
+     * @return the time in nanoseconds or {@code 0} if the stages are not timed
+     */
+    long getMatchNanos();
+
+    /**
+     * The time spent filtering the records, the total of all the threads.
+     *
+     * @return the time in nanoseconds or {@code 0} if the stages are not timed
+     */
+    long getFilterNanos();
+
+    /**
+     * The number of lines checked against the format in each bucket of time. Bucket {@code 0} counts the lines that
+     * took no time and bucket {@code i} the lines that took at least {@code 2^(i-1)} and less than {@code 2^i}
+     * nanoseconds.
+     *
+     * @return the counts of the buckets
+     */
+    long[] getMatchHistogram();
+
+    /**
+     * The number of records filtered in each bucket of time, as {@link #getMatchHistogram()}.
+     *
+     * @return the counts of the buckets
+     */
+    long[] getFilterHistogram();
+
+    /**
+     * An upper bound of the time taken to check a line against the format for the percentile of the lines.
+     *
+     * @param percentile the percentile, between {@code 0} and {@code 100}
+     *
+     * @return the time in nanoseconds
+     */
+    long matchPercentile(double percentile);
+
+    /**
+     * An upper bound of the time taken to filter a record for the percentile of the records.
+     *
+     * @param percentile the percentile, between {@code 0} and {@code 100}
+     *
+     * @return the time in nanoseconds
+     */
+    long filterPercentile(double percentile);
+
+    /**
+     * Sets the metrics to zero.
+     */
+    void reset();
+}
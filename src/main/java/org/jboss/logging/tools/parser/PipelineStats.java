@@ -0,0 +1,230 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The statistics of the stages of a {@link PipelinedParser}, used to tune the number of workers, the batch size and
+ * the queue capacity. The statistics are updated while parsing and can be read from any thread.
+ * <p/>
+ * The read stage reads batches of lines from the stream, the match stage parses and filters the lines of a batch on
+ * a worker and the collect stage passes the results of each batch, in order, to the handler. If the read stage is
+ * mostly {@link #getReadNanos() reading} the input is the bottleneck, if the collect stage is mostly {@link
+ * #getWaitNanos() waiting} on the workers more workers would help.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class PipelineStats {
+
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong batchesRead = new AtomicLong();
+    private final AtomicLong readNanos = new AtomicLong();
+    private final AtomicLong linesMatched = new AtomicLong();
+    private final AtomicLong batchesMatched = new AtomicLong();
+    private final AtomicLong matchNanos = new AtomicLong();
+    private final AtomicLong resultsCollected = new AtomicLong();
+    private final AtomicLong collectNanos = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong elapsedNanos = new AtomicLong();
+    private volatile int queueDepth;
+    private volatile int maxQueueDepth;
+
+    PipelineStats() {
+    }
+
+    /**
+     * The number of bytes read from the stream.
+     *
+     * @return the number of bytes read
+     */
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    /**
+     * The number of batches read from the stream.
+     *
+     * @return the number of batches read
+     */
+    public long getBatchesRead() {
+        return batchesRead.get();
+    }
+
+    /**
+     * The time spent reading the stream.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getReadNanos() {
+        return readNanos.get();
+    }
+
+    /**
+     * The number of lines parsed and filtered by the workers.
+     *
+     * @return the number of lines
+     */
+    public long getLinesMatched() {
+        return linesMatched.get();
+    }
+
+    /**
+     * The number of batches parsed and filtered by the workers.
+     *
+     * @return the number of batches
+     */
+    public long getBatchesMatched() {
+        return batchesMatched.get();
+    }
+
+    /**
+     * The time the workers spent parsing and filtering, the total of all the workers.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getMatchNanos() {
+        return matchNanos.get();
+    }
+
+    /**
+     * The number of results passed to the handler.
+     *
+     * @return the number of results
+     */
+    public long getResultsCollected() {
+        return resultsCollected.get();
+    }
+
+    /**
+     * The time spent in the handler.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getCollectNanos() {
+        return collectNanos.get();
+    }
+
+    /**
+     * The time the collect stage spent waiting for a worker to finish the next batch.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getWaitNanos() {
+        return waitNanos.get();
+    }
+
+    /**
+     * The time spent parsing.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos.get();
+    }
+
+    /**
+     * The number of batches that have been read and not yet collected.
+     *
+     * @return the number of batches in the queue
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * The largest number of batches that have been read and not yet collected.
+     *
+     * @return the maximum number of batches in the queue
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /**
+     * The number of bytes read a second over the time spent parsing.
+     *
+     * @return the throughput in bytes a second
+     */
+    public double getBytesPerSecond() {
+        return perSecond(bytesRead.get());
+    }
+
+    /**
+     * The number of lines parsed a second over the time spent parsing.
+     *
+     * @return the throughput in lines a second
+     */
+    public double getLinesPerSecond() {
+        return perSecond(linesMatched.get());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[bytesRead=%d, readMillis=%d, linesMatched=%d, matchMillis=%d, resultsCollected=%d, " +
+                "collectMillis=%d, waitMillis=%d, queueDepth=%d, maxQueueDepth=%d, linesPerSecond=%.0f]",
+                getClass().getSimpleName(), getBytesRead(), readNanos.get() / 1000000L, getLinesMatched(),
+                matchNanos.get() / 1000000L, getResultsCollected(), collectNanos.get() / 1000000L,
+                waitNanos.get() / 1000000L, queueDepth, maxQueueDepth, getLinesPerSecond());
+    }
+
+    void read(final int bytes, final long nanos) {
+        bytesRead.addAndGet(bytes);
+        readNanos.addAndGet(nanos);
+    }
+
+    void batchRead() {
+        batchesRead.incrementAndGet();
+    }
+
+    void matched(final int lines, final long nanos) {
+        linesMatched.addAndGet(lines);
+        batchesMatched.incrementAndGet();
+        matchNanos.addAndGet(nanos);
+    }
+
+    void collected(final int results, final long nanos) {
+        resultsCollected.addAndGet(results);
+        collectNanos.addAndGet(nanos);
+    }
+
+    void waited(final long nanos) {
+        waitNanos.addAndGet(nanos);
+    }
+
+    void elapsed(final long nanos) {
+        elapsedNanos.addAndGet(nanos);
+    }
+
+    void queueDepth(final int depth) {
+        queueDepth = depth;
+        if (depth > maxQueueDepth) {
+            maxQueueDepth = depth;
+        }
+    }
+
+    private double perSecond(final long count) {
+        final long nanos = elapsedNanos.get();
+        return (nanos == 0L ? 0.0 : count * 1000000000.0 / nanos);
+    }
+}
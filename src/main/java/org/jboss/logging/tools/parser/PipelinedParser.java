@@ -0,0 +1,470 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Parses a stream in stages so reading the stream overlaps with parsing and filtering the lines. The calling thread
+ * reads the stream into reusable buffers of whole lines, each buffer is decoded, parsed and filtered as a batch by a
+ * worker on the executor, and the results of the batches are passed to the handler in order on the calling thread.
+ * <p/>
+ * At most {@link #getQueueCapacity() queue capacity} batches are read ahead of the batch being collected, which
+ * bounds the memory used. The workers are tasks on the executor and never wait on each other, so the executor can have
+ * any number of threads, though more threads than {@link #getWorkers() workers} are not used. The {@link
+ * #getStats() statistics} of the stages can be used to tune the pipeline.
+ * <p/>
+ * Lines are terminated with a {@code \n} and a trailing {@code \r} is removed, as they are when {@link
+ * Parser#parse(java.io.File) parsing a file}, otherwise the results are the same as parsing the stream with the parser.
+ * The filters of the parser are invoked concurrently and must be thread-safe. The parser must not be modified while
+ * parsing.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class PipelinedParser {
+
+    /**
+     * The default size of a batch in bytes.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 256 * 1024;
+
+    private final Parser parser;
+    private final ExecutorService executor;
+    private final ConcurrentLinkedQueue<byte[]> buffers = new ConcurrentLinkedQueue<byte[]>();
+    private int workers;
+    private int batchSize;
+    private int queueCapacity;
+    private Charset charset;
+    private volatile PipelineStats stats = new PipelineStats();
+
+    /**
+     * Creates a pipelined parser.
+     *
+     * @param parser   the parser used to parse the lines
+     * @param executor the executor the workers are run on
+     */
+    public PipelinedParser(final Parser parser, final ExecutorService executor) {
+        this.parser = parser;
+        this.executor = executor;
+        workers = Runtime.getRuntime().availableProcessors();
+        batchSize = DEFAULT_BATCH_SIZE;
+        queueCapacity = workers * 2;
+        charset = Charset.defaultCharset();
+    }
+
+    /**
+     * Parses the stream and returns a collection of results. If the {@link Parser#getMaxResults() maximum number of
+     * results} of the parser is greater than 0 only the last results are retained.
+     *
+     * @param in the log output stream, closed when this method returns
+     *
+     * @return a collection of log results
+     *
+     * @throws IOException if an error occurs reading the stream
+     */
+    public Collection<LogResult> parse(final InputStream in) throws IOException {
+        final Collection<LogResult> results;
+        if (parser.getMaxResults() > 0) {
+            results = new RingBuffer<LogResult>(parser.getMaxResults());
+        } else {
+            results = new ArrayList<LogResult>();
+        }
+        parse(in, new LogResultHandler() {
+            @Override
+            public boolean handle(final LogResult result) {
+                return results.add(result);
+            }
+        });
+        return results;
+    }
+
+    /**
+     * Parses the file and returns a collection of results. If the {@link Parser#getMaxResults() maximum number of
+     * results} of the parser is greater than 0 only the last results are retained.
+     *
+     * @param file the log file
+     *
+     * @return a collection of log results
+     *
+     * @throws IOException if an error occurs reading the file
+     */
+    public Collection<LogResult> parse(final File file) throws IOException {
+        return parse(new FileInputStream(file));
+    }
+
+    /**
+     * Parses the stream passing each result to the handler, on the calling thread, in the order of the stream.
+     * Parsing stops when the end of the stream has been reached or the handler returns {@code false}.
+     *
+     * @param in      the log output stream, closed when this method returns
+     * @param handler the handler to pass the results to
+     *
+     * @throws IOException if an error occurs reading the stream
+     */
+    public void parse(final InputStream in, final LogResultHandler handler) throws IOException {
+        final PipelineStats stats = new PipelineStats();
+        this.stats = stats;
+        final long start = System.nanoTime();
+        final LinkedList<Future<Batch>> queue = new LinkedList<Future<Batch>>();
+        final Collector collector = new Collector(handler, stats);
+        try {
+            byte[] buffer = buffer(batchSize);
+            int length = 0;
+            boolean eof = false;
+            while (!eof) {
+                // Fill the buffer and split it after the last line terminator
+                final long readStart = System.nanoTime();
+                final int carried = length;
+                int n = 0;
+                while (length < buffer.length && (n = in.read(buffer, length, buffer.length - length)) >= 0) {
+                    length += n;
+                }
+                stats.read(length - carried, System.nanoTime() - readStart);
+                eof = (n < 0);
+                int end = length;
+                if (!eof) {
+                    while (end > 0 && buffer[end - 1] != '\n') {
+                        end--;
+                    }
+                    if (end == 0) {
+                        // A line longer than the buffer
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                        continue;
+                    }
+                }
+                if (end == 0) {
+                    break;
+                }
+                final byte[] next = buffer(Math.max(batchSize, length - end));
+                System.arraycopy(buffer, end, next, 0, length - end);
+                // Wait for the oldest batch once the queue is full
+                while (queue.size() >= queueCapacity) {
+                    if (!collector.collect(queue.removeFirst())) {
+                        return;
+                    }
+                }
+                queue.add(executor.submit(new Batch(buffer, end, stats)));
+                stats.batchRead();
+                stats.queueDepth(queue.size());
+                length -= end;
+                buffer = next;
+            }
+            while (!queue.isEmpty()) {
+                stats.queueDepth(queue.size());
+                if (!collector.collect(queue.removeFirst())) {
+                    return;
+                }
+            }
+            collector.flush();
+        } finally {
+            for (Future<Batch> future : queue) {
+                future.cancel(true);
+            }
+            stats.queueDepth(0);
+            stats.elapsed(System.nanoTime() - start);
+            Parser.safeClose(in);
+        }
+    }
+
+    /**
+     * The statistics of the stages of the current, or last, parse.
+     *
+     * @return the statistics
+     */
+    public PipelineStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Returns the number of workers, the number of batches parsed at the same time.
+     *
+     * @return the number of workers
+     */
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Sets the number of workers, the number of batches parsed at the same time. The default is the number of
+     * processors. Setting the number of workers also sets the {@link #setQueueCapacity(int) queue capacity} to twice
+     * the number of workers.
+     *
+     * @param workers the number of workers
+     */
+    public void setWorkers(final int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("At least one worker is required");
+        }
+        this.workers = workers;
+        queueCapacity = workers * 2;
+    }
+
+    /**
+     * Returns the size of a batch in bytes.
+     *
+     * @return the batch size
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the size of a batch in bytes. A batch is the lines read into a buffer of this size, a line longer than the
+     * buffer is read into a larger buffer.
+     *
+     * @param batchSize the batch size
+     */
+    public void setBatchSize(final int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("The batch size must be greater than 0");
+        }
+        this.batchSize = batchSize;
+        buffers.clear();
+    }
+
+    /**
+     * Returns the maximum number of batches read ahead of the batch being collected.
+     *
+     * @return the queue capacity
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Sets the maximum number of batches read ahead of the batch being collected. The capacity must be at least the
+     * number of workers for all the workers to be used, a larger capacity lets the workers continue while the
+     * handler is slow.
+     *
+     * @param queueCapacity the queue capacity
+     */
+    public void setQueueCapacity(final int queueCapacity) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("The queue capacity must be greater than 0");
+        }
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Returns the charset of the stream.
+     *
+     * @return the charset
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Sets the charset of the stream, the default is the default charset of the platform.
+     *
+     * @param charset the charset
+     */
+    public void setCharset(final Charset charset) {
+        this.charset = charset;
+    }
+
+    private byte[] buffer(final int size) {
+        final byte[] buffer = buffers.poll();
+        return (buffer != null && buffer.length >= size ? buffer : new byte[size]);
+    }
+
+    /**
+     * Passes the results of the batches to the handler in order. The last record of a batch is held back until the
+     * next batch, as it continues with the lines at the start of the next batch.
+     */
+    private class Collector {
+        private final LogResultHandler handler;
+        private final PipelineStats stats;
+        private LogResult pending;
+        private int lineBase;
+
+        Collector(final LogResultHandler handler, final PipelineStats stats) {
+            this.handler = handler;
+            this.stats = stats;
+        }
+
+        boolean collect(final Future<Batch> future) throws IOException {
+            final long waitStart = System.nanoTime();
+            final Batch batch;
+            try {
+                batch = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while parsing");
+            } catch (ExecutionException e) {
+                throw ParallelParser.unwrap(e);
+            }
+            final long collectStart = System.nanoTime();
+            stats.waited(collectStart - waitStart);
+            try {
+                if (pending != null && batch.leading != null) {
+                    pending = pending.withContinuation(batch.leading);
+                }
+                if (!batch.recordStart) {
+                    return true;
+                }
+                final LogResult previous = pending;
+                pending = null;
+                if (previous != null && !handler.handle(previous)) {
+                    return false;
+                }
+                final List<LogResult> results = batch.results;
+                final int last = (batch.lastAccepted ? results.size() - 1 : results.size());
+                for (int i = 0; i < last; i++) {
+                    if (!handler.handle(offset(results.get(i)))) {
+                        return false;
+                    }
+                }
+                if (batch.lastAccepted) {
+                    pending = offset(results.get(last));
+                }
+                return true;
+            } finally {
+                lineBase += batch.lineCount;
+                stats.collected(batch.results.size(), System.nanoTime() - collectStart);
+            }
+        }
+
+        void flush() {
+            if (pending != null) {
+                handler.handle(pending);
+                pending = null;
+            }
+        }
+
+        private LogResult offset(final LogResult result) {
+            return (lineBase == 0 ? result : result.withLineNumber(lineBase + result.getLineNumber()));
+        }
+    }
+
+    /**
+     * Decodes, parses and filters the lines of a buffer.
+     */
+    private class Batch implements Callable<Batch> {
+        private final byte[] bytes;
+        private final int length;
+        private final PipelineStats stats;
+        private final List<LogResult> results = new ArrayList<LogResult>();
+        // The lines before the first record, which continue the last record of the previous batch
+        private String leading;
+        private boolean recordStart;
+        private boolean lastAccepted;
+        private int lineCount;
+
+        Batch(final byte[] bytes, final int length, final PipelineStats stats) {
+            this.bytes = bytes;
+            this.length = length;
+            this.stats = stats;
+        }
+
+        @Override
+        public Batch call() throws IOException {
+            final long start = System.nanoTime();
+            final CharsetDecoder decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            final boolean asciiCompatible = MappedLineReader.isAsciiCompatible(charset);
+            final ByteBuffer byteBuffer = ByteBuffer.wrap(bytes, 0, length);
+            final LineBuffer line = new LineBuffer();
+            StringBuilder leadingLines = null;
+            final RecordAssembler assembler = new RecordAssembler(new LogResultHandler() {
+                @Override
+                public boolean handle(final LogResult result) {
+                    return results.add(result);
+                }
+            });
+            int position = 0;
+            while (position < length) {
+                // Scan for the terminator while copying ASCII characters to the line
+                char[] chars = line.array(0);
+                boolean ascii = asciiCompatible;
+                int i = position;
+                byte b;
+                while (i < length && (b = bytes[i]) != '\n') {
+                    if (ascii) {
+                        final int index = i - position;
+                        if (b < 0) {
+                            ascii = false;
+                        } else {
+                            if (index == chars.length) {
+                                chars = line.array(index + 1);
+                            }
+                            chars[index] = (char) b;
+                        }
+                    }
+                    i++;
+                }
+                int lineEnd = i;
+                if (lineEnd > position && bytes[lineEnd - 1] == '\r') {
+                    lineEnd--;
+                }
+                if (ascii) {
+                    line.setLength(lineEnd - position);
+                } else {
+                    MappedLineReader.decode(decoder, byteBuffer, position, lineEnd, line);
+                }
+                position = i + 1;
+                final LogResult record = parser.parseRecord(++lineCount, line);
+                if (record == null && !recordStart) {
+                    if (leadingLines == null) {
+                        leadingLines = new StringBuilder();
+                    } else {
+                        leadingLines.append('\n');
+                    }
+                    leadingLines.append(line);
+                } else {
+                    if (record != null) {
+                        recordStart = true;
+                        lastAccepted = (record != Parser.REJECTED);
+                    }
+                    assembler.add(line, record);
+                }
+            }
+            assembler.flush();
+            if (leadingLines != null) {
+                leading = leadingLines.toString();
+            }
+            buffers.offer(bytes);
+            stats.matched(lineCount, System.nanoTime() - start);
+            return this;
+        }
+    }
+}
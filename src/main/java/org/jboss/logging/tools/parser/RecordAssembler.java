@@ -0,0 +1,86 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+/**
+ * Assembles log records that span more than one line, like a record with a stack trace. The lines following the first
+ * line of a record are added to the record, which is passed to the handler once the first line of the next record has
+ * been read or the record is {@link #flush() flushed}.
+ * <p/>
+ * The lines following a record that was not accepted by the filters, and the lines before the first record, are
+ * ignored.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+class RecordAssembler {
+    private final LogResultHandler handler;
+    private final StringBuilder continuation = new StringBuilder();
+    private LogResult pending;
+
+    RecordAssembler(final LogResultHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Adds a line.
+     *
+     * @param line   the line
+     * @param record the result of {@link Parser#parseRecord(int, CharSequence) parsing} the line
+     *
+     * @return {@code false} if the handler stopped parsing, otherwise {@code true}
+     */
+    boolean add(final CharSequence line, final LogResult record) {
+        if (record == null) {
+            if (pending != null) {
+                if (continuation.length() > 0) {
+                    continuation.append('\n');
+                }
+                continuation.append(line);
+            }
+            return true;
+        }
+        final boolean result = flush();
+        if (record != Parser.REJECTED) {
+            pending = record;
+        }
+        return result;
+    }
+
+    /**
+     * Passes the record being assembled to the handler.
+     *
+     * @return {@code false} if the handler stopped parsing, otherwise {@code true}
+     */
+    boolean flush() {
+        if (pending == null) {
+            return true;
+        }
+        LogResult result = pending;
+        if (continuation.length() > 0) {
+            result = result.withContinuation(continuation.toString());
+            continuation.setLength(0);
+        }
+        pending = null;
+        return handler.handle(result);
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+/**
+ * Checks whether a line could be the first line of a log record, without splitting the line into values.
+ * <p/>
+ * The check uses the literal text at the start of the format and, if the first format part is a date, the fixed width
+ * fields of the date. For example a date written with {@code HH:mm:ss,SSS} must start with two digits, a colon, two
+ * digits and so on. The lines following the first line of a record, like the lines of a stack trace, usually fail the
+ * check on the first character.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+class RecordStartMatcher {
+    // Matches any digit in the shape
+    private static final char DIGIT = '\uFFFF';
+
+    private final String prefix;
+    private final String shape;
+
+    private RecordStartMatcher(final String prefix, final String shape) {
+        this.prefix = prefix;
+        this.shape = shape;
+    }
+
+    /**
+     * Creates a matcher for a format.
+     *
+     * @param prefix    the literal text at the start of the format
+     * @param firstPart the first format part, may be {@code null}
+     *
+     * @return the matcher or {@code null} if the format does not start with anything that can be checked
+     */
+    static RecordStartMatcher of(final String prefix, final FormatPart firstPart) {
+        String shape = "";
+        if (firstPart != null && firstPart.getFormatType() == FormatType.DATE && (firstPart.getMinimumWidth() == 0 || firstPart.isLeftJustify())) {
+            final String pattern = firstPart.getArgument();
+            shape = dateShape(pattern == null ? FormatTokenizer.DEFAULT_DATE_PATTERN : pattern);
+        }
+        if (prefix.length() == 0 && shape.length() == 0) {
+            return null;
+        }
+        return new RecordStartMatcher(prefix, shape);
+    }
+
+    /**
+     * Checks the start of the line.
+     *
+     * @param line the line to check
+     *
+     * @return {@code true} if the line could be the first line of a record, otherwise {@code false}
+     */
+    boolean matches(final CharSequence line) {
+        final int prefixLen = prefix.length();
+        if (line.length() < prefixLen + shape.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefixLen; i++) {
+            if (line.charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        for (int i = 0; i < shape.length(); i++) {
+            final char expected = shape.charAt(i);
+            final char c = line.charAt(prefixLen + i);
+            if (expected == DIGIT ? (c < '0' || c > '9') : c != expected) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates the shape of the start of a date formatted with the pattern. The shape ends before the first field that
+     * does not always have the same width, for example a month name or a day of the month written with {@code d}.
+     */
+    private static String dateShape(final String pattern) {
+        final StringBuilder shape = new StringBuilder();
+        boolean quoted = false;
+        final int len = pattern.length();
+        for (int i = 0; i < len; i++) {
+            final char c = pattern.charAt(i);
+            if (c == '\'') {
+                if (i + 1 < len && pattern.charAt(i + 1) == '\'') {
+                    shape.append('\'');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (!quoted && ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'))) {
+                int count = 1;
+                while (i + 1 < len && pattern.charAt(i + 1) == c) {
+                    count++;
+                    i++;
+                }
+                if (!isFixedWidth(c, count)) {
+                    break;
+                }
+                for (int j = 0; j < count; j++) {
+                    shape.append(DIGIT);
+                }
+            } else {
+                shape.append(c);
+            }
+        }
+        return shape.toString();
+    }
+
+    private static boolean isFixedWidth(final char c, final int count) {
+        switch (c) {
+            case 'y':
+                return count == 2 || count >= 4;
+            case 'M':
+                return count == 2;
+            case 'd':
+            case 'H':
+            case 'h':
+            case 'k':
+            case 'K':
+            case 'm':
+            case 's':
+                return count >= 2;
+            case 'S':
+            case 'D':
+                return count >= 3;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,456 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Results written to a compact binary file, which can be reopened without parsing the log again. The file is written
+ * with a {@link ResultFileWriter}.
+ * <p/>
+ * The file starts with a header of the format of the results, followed by blocks of {@value #BLOCK_SIZE} results and
+ * an index of the blocks. Each block is compressed on its own and stores the results by column: the line numbers and
+ * timestamps as deltas, the text of each result with the bounds of the values in the text, and the values shared
+ * between results, like the level and category, as codes into a dictionary for the block.
+ * <p/>
+ * Opening the file only reads the header and the index. A block is memory mapped and decoded when one of its results
+ * is first requested, and the last blocks decoded are cached. A result file is thread-safe.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class ResultFile implements Closeable {
+
+    /**
+     * The number of results in a block.
+     */
+    public static final int BLOCK_SIZE = 4096;
+
+    /**
+     * The timestamp of a result whose date could not be parsed, or of every result if the format has no date.
+     */
+    public static final long NO_TIMESTAMP = DateParser.INVALID;
+
+    static final byte[] MAGIC = {'J', 'L', 'R', 'F'};
+    static final int VERSION = 1;
+    static final int BOUNDS = 0;
+    static final int VALUES = 1;
+
+    private static final int CACHED_BLOCKS = 8;
+    private static final int INDEX_ENTRY_SIZE = 20;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final LogFormat format;
+    private final List<FormatPart> groups;
+    private final boolean[] coded;
+    private final long[] blockOffsets;
+    private final int[] compressedLengths;
+    private final int[] rawLengths;
+    // The index of the first result in each block
+    private final int[] blockStarts;
+    private final int size;
+    private final Map<Integer, Block> cache = new LinkedHashMap<Integer, Block>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Integer, Block> eldest) {
+            return size() > CACHED_BLOCKS;
+        }
+    };
+
+    private ResultFile(final RandomAccessFile file) throws IOException {
+        this.file = file;
+        channel = file.getChannel();
+        final long length = file.length();
+        if (length < 16 + MAGIC.length) {
+            throw new IOException("Not a result file");
+        }
+        final byte[] magic = new byte[MAGIC.length];
+        file.seek(length - MAGIC.length);
+        file.readFully(magic);
+        if (!Arrays.equals(MAGIC, magic)) {
+            throw new IOException("Not a result file");
+        }
+        file.seek(0L);
+        file.readFully(magic);
+        if (!Arrays.equals(MAGIC, magic)) {
+            throw new IOException("Not a result file");
+        }
+        final int version = file.readInt();
+        if (version != VERSION) {
+            throw new IOException(String.format("Unsupported result file version %d", version));
+        }
+        format = LogFormat.of(file.readUTF());
+        groups = format.getGroups();
+        final int columns = file.readInt();
+        if (columns != groups.size()) {
+            throw new IOException("The format parts do not match the format pattern");
+        }
+        coded = new boolean[columns];
+        for (int i = 0; i < columns; i++) {
+            final FormatType formatType = FormatType.valueOf(file.readUTF());
+            // The argument, justification and widths are for other readers of the file
+            file.readBoolean();
+            file.readUTF();
+            file.readBoolean();
+            file.readInt();
+            file.readInt();
+            if (formatType != groups.get(i).getFormatType()) {
+                throw new IOException("The format parts do not match the format pattern");
+            }
+            coded[i] = ValueDictionary.isDictionaryType(formatType);
+        }
+        // The index is followed by the number of results, the offset of the index and the magic number
+        file.seek(length - MAGIC.length - 16);
+        final long recordCount = file.readLong();
+        final long indexOffset = file.readLong();
+        if (recordCount > Integer.MAX_VALUE) {
+            throw new IOException("Too many results in " + file);
+        }
+        final ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, length - MAGIC.length - 16 - indexOffset);
+        final int blocks = index.getInt();
+        if (blocks * INDEX_ENTRY_SIZE != index.remaining()) {
+            throw new IOException("Corrupt result file index");
+        }
+        blockOffsets = new long[blocks];
+        compressedLengths = new int[blocks];
+        rawLengths = new int[blocks];
+        blockStarts = new int[blocks + 1];
+        for (int i = 0; i < blocks; i++) {
+            blockOffsets[i] = index.getLong();
+            compressedLengths[i] = index.getInt();
+            rawLengths[i] = index.getInt();
+            blockStarts[i + 1] = blockStarts[i] + index.getInt();
+        }
+        size = blockStarts[blocks];
+        if (size != recordCount) {
+            throw new IOException("Corrupt result file index");
+        }
+    }
+
+    /**
+     * Opens a result file.
+     *
+     * @param file the file
+     *
+     * @return the result file
+     *
+     * @throws IOException if the file could not be read or is not a result file
+     */
+    public static ResultFile open(final File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        boolean ok = false;
+        try {
+            final ResultFile result = new ResultFile(raf);
+            ok = true;
+            return result;
+        } finally {
+            if (!ok) {
+                Parser.safeClose(raf);
+            }
+        }
+    }
+
+    /**
+     * Writes the results to a result file.
+     *
+     * @param file    the file to write
+     * @param format  the format of the results
+     * @param results the results
+     *
+     * @throws IOException if an error occurs writing the file
+     */
+    public static void write(final File file, final LogFormat format, final Iterable<LogResult> results) throws IOException {
+        final ResultFileWriter writer = new ResultFileWriter(file, format);
+        try {
+            for (LogResult result : results) {
+                writer.add(result);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * The format of the results.
+     *
+     * @return the format
+     */
+    public LogFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * The number of results.
+     *
+     * @return the number of results
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns a result.
+     *
+     * @param index the index of the result
+     *
+     * @return the result
+     *
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public LogResult get(final int index) {
+        final Block block = block(index);
+        return block.result(index - block.start);
+    }
+
+    /**
+     * Returns the timestamp of a result.
+     *
+     * @param index the index of the result
+     *
+     * @return the timestamp or {@link #NO_TIMESTAMP} if the format has no date or the date could not be parsed
+     */
+    public long getTimestamp(final int index) {
+        final Block block = block(index);
+        return (block.timestamps == null ? NO_TIMESTAMP : block.timestamps[index - block.start]);
+    }
+
+    /**
+     * Returns the value of a format part of a result without creating the result. The values shared between results,
+     * like the level and category, are the same instance for the results in a block.
+     *
+     * @param index  the index of the result
+     * @param column the index of the format part in the format parts that have a value
+     *
+     * @return the value
+     */
+    public String getValue(final int index, final int column) {
+        final Block block = block(index);
+        return block.value(index - block.start, column);
+    }
+
+    /**
+     * A view of the results, a result is decoded when it is requested.
+     *
+     * @return the results
+     */
+    public List<LogResult> getResults() {
+        return new AbstractList<LogResult>() {
+            @Override
+            public LogResult get(final int index) {
+                return ResultFile.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (cache) {
+            cache.clear();
+        }
+        file.close();
+    }
+
+    private Block block(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(String.format("Index %d is not between 0 and %d", index, size));
+        }
+        int block = Arrays.binarySearch(blockStarts, index);
+        if (block < 0) {
+            block = -block - 2;
+        } else {
+            // Skip empty blocks, an index at the start of a block is also the end of the block before
+            while (blockStarts[block + 1] == index) {
+                block++;
+            }
+        }
+        synchronized (cache) {
+            Block result = cache.get(block);
+            if (result == null) {
+                try {
+                    result = decode(block);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Could not read block " + block, e);
+                }
+                cache.put(block, result);
+            }
+            return result;
+        }
+    }
+
+    private Block decode(final int block) throws IOException {
+        final ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, blockOffsets[block], compressedLengths[block]);
+        final byte[] input = new byte[compressedLengths[block]];
+        mapped.get(input);
+        final byte[] raw = new byte[rawLengths[block]];
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                final int n = inflater.inflate(raw, length, raw.length - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += n;
+            }
+            if (length != raw.length) {
+                throw new IOException("Corrupt result file block " + block);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt result file block " + block, e);
+        } finally {
+            inflater.end();
+        }
+        return new Block(blockStarts[block], new BlockBuffer(raw, raw.length));
+    }
+
+    /**
+     * The decoded results of a block.
+     */
+    private class Block {
+        private final int start;
+        private final int[] lineNumbers;
+        private final long[] timestamps;
+        // The texts are decoded from the block when they are requested
+        private final byte[] raw;
+        private final int[] textOffsets;
+        private final int[] textLengths;
+        private final int[][] bounds;
+        private final String[][] values;
+        private final String[][] dictionaries;
+        private final int[][] codes;
+
+        Block(final int start, final BlockBuffer in) {
+            this.start = start;
+            final int size = in.readVarInt();
+            final int columns = groups.size();
+            lineNumbers = new int[size];
+            long previous = 0L;
+            for (int i = 0; i < size; i++) {
+                previous += in.readSignedVarLong();
+                lineNumbers[i] = (int) previous;
+            }
+            if (in.readByte() != 0) {
+                timestamps = new long[size];
+                previous = 0L;
+                for (int i = 0; i < size; i++) {
+                    previous += in.readSignedVarLong();
+                    timestamps[i] = previous;
+                }
+            } else {
+                timestamps = null;
+            }
+            final int[] kinds = new int[size];
+            for (int i = 0; i < size; i++) {
+                kinds[i] = in.readByte();
+            }
+            raw = in.array();
+            textOffsets = new int[size];
+            textLengths = new int[size];
+            for (int i = 0; i < size; i++) {
+                textLengths[i] = in.readVarInt();
+                textOffsets[i] = in.skip(textLengths[i]);
+            }
+            bounds = new int[size][];
+            values = new String[size][];
+            for (int i = 0; i < size; i++) {
+                if (kinds[i] == BOUNDS) {
+                    final int[] b = new int[columns * 2];
+                    int end = 0;
+                    for (int c = 0; c < columns; c++) {
+                        b[c * 2] = end + (int) in.readSignedVarLong();
+                        end = b[c * 2] + in.readVarInt();
+                        b[c * 2 + 1] = end;
+                    }
+                    bounds[i] = b;
+                } else {
+                    final String[] v = new String[columns];
+                    for (int c = 0; c < columns; c++) {
+                        if (!coded[c]) {
+                            v[c] = in.readString();
+                        }
+                    }
+                    values[i] = v;
+                }
+            }
+            dictionaries = new String[columns][];
+            codes = new int[columns][];
+            for (int c = 0; c < columns; c++) {
+                if (coded[c]) {
+                    final String[] dictionary = new String[in.readVarInt()];
+                    for (int d = 0; d < dictionary.length; d++) {
+                        dictionary[d] = in.readString();
+                    }
+                    final int[] columnCodes = new int[size];
+                    for (int i = 0; i < size; i++) {
+                        columnCodes[i] = in.readVarInt();
+                    }
+                    dictionaries[c] = dictionary;
+                    codes[c] = columnCodes;
+                }
+            }
+        }
+
+        LogResult result(final int row) {
+            if (bounds[row] != null) {
+                return new LogResult(lineNumbers[row], text(row), groups, bounds[row], null);
+            }
+            final List<LogRecordPart> parts = new ArrayList<LogRecordPart>(groups.size());
+            for (int c = 0; c < groups.size(); c++) {
+                parts.add(new LogRecordPart(groups.get(c).getFormatType(), value(row, c)));
+            }
+            return new LogResult(lineNumbers[row], parts, text(row));
+        }
+
+        String value(final int row, final int column) {
+            if (coded[column]) {
+                return dictionaries[column][codes[column][row]];
+            }
+            if (bounds[row] != null) {
+                return text(row).substring(bounds[row][column * 2], bounds[row][column * 2 + 1]);
+            }
+            return values[row][column];
+        }
+
+        private String text(final int row) {
+            return new String(raw, textOffsets[row], textLengths[row], BlockBuffer.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Writes results to a {@link ResultFile}. The results are written in blocks, so only a block of results is held in
+ * memory, and the writer can be passed to a parser as the handler to write the results as they are parsed.
+ * <p/>
+ * A writer is not thread-safe.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class ResultFileWriter implements LogResultHandler, Closeable {
+
+    private final LogFormat format;
+    private final List<FormatPart> groups;
+    private final DataOutputStream out;
+    private final int dateGroup;
+    private final DateParser dateParser;
+    private final boolean[] coded;
+    private final List<LogResult> block = new ArrayList<LogResult>(ResultFile.BLOCK_SIZE);
+    private final List<long[]> index = new ArrayList<long[]>();
+    private final BlockBuffer buffer = new BlockBuffer(64 * 1024);
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private byte[] compressed = new byte[64 * 1024];
+    private long offset;
+    private long recordCount;
+    private IOException failure;
+    private boolean closed;
+
+    /**
+     * Creates a writer.
+     *
+     * @param file   the file to write
+     * @param format the format of the results
+     *
+     * @throws IOException if the file could not be created
+     */
+    public ResultFileWriter(final File file, final LogFormat format) throws IOException {
+        this.format = format;
+        groups = format.getGroups();
+        coded = new boolean[groups.size()];
+        int dateGroup = -1;
+        for (int i = 0; i < coded.length; i++) {
+            final FormatType formatType = groups.get(i).getFormatType();
+            coded[i] = ValueDictionary.isDictionaryType(formatType);
+            if (dateGroup < 0 && formatType == FormatType.DATE) {
+                dateGroup = i;
+            }
+        }
+        this.dateGroup = dateGroup;
+        dateParser = (dateGroup < 0 ? null : new DateParser(groups.get(dateGroup)));
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+        writeHeader();
+    }
+
+    /**
+     * Adds the result. If the result could not be written parsing is stopped and the error is thrown when the writer
+     * is {@link #close() closed}.
+     *
+     * @param result the result
+     *
+     * @return {@code true} to continue parsing or {@code false} if the result could not be written
+     */
+    @Override
+    public boolean handle(final LogResult result) {
+        if (failure != null) {
+            return false;
+        }
+        try {
+            add(result);
+            return true;
+        } catch (IOException e) {
+            failure = e;
+            return false;
+        }
+    }
+
+    /**
+     * Adds the result.
+     *
+     * @param result the result
+     *
+     * @throws IOException if an error occurs writing the file
+     */
+    public void add(final LogResult result) throws IOException {
+        if (closed) {
+            throw new IOException("The writer is closed");
+        }
+        block.add(result);
+        if (block.size() == ResultFile.BLOCK_SIZE) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Writes the remaining results and the index of the blocks and closes the file.
+     *
+     * @throws IOException if an error occurs writing the file, or an error occurred writing a result passed to the
+     *                     writer as a handler
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (failure != null) {
+                throw failure;
+            }
+            if (!block.isEmpty()) {
+                writeBlock();
+            }
+            final long indexOffset = offset;
+            out.writeInt(index.size());
+            for (long[] entry : index) {
+                out.writeLong(entry[0]);
+                out.writeInt((int) entry[1]);
+                out.writeInt((int) entry[2]);
+                out.writeInt((int) entry[3]);
+            }
+            out.writeLong(recordCount);
+            out.writeLong(indexOffset);
+            out.write(ResultFile.MAGIC);
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        out.write(ResultFile.MAGIC);
+        out.writeInt(ResultFile.VERSION);
+        out.writeUTF(format.getFormatPattern());
+        out.writeInt(groups.size());
+        for (FormatPart part : groups) {
+            out.writeUTF(part.getFormatType().name());
+            out.writeBoolean(part.getArgument() != null);
+            out.writeUTF(part.getArgument() == null ? "" : part.getArgument());
+            out.writeBoolean(part.isLeftJustify());
+            out.writeInt(part.getMinimumWidth());
+            out.writeInt(part.getMaximumWidth());
+        }
+        offset = out.size();
+    }
+
+    private void writeBlock() throws IOException {
+        final int size = block.size();
+        final int columns = groups.size();
+        buffer.clear();
+        buffer.writeVarInt(size);
+        long previous = 0L;
+        for (LogResult result : block) {
+            buffer.writeSignedVarLong(result.getLineNumber() - previous);
+            previous = result.getLineNumber();
+        }
+        buffer.writeByte(dateGroup < 0 ? 0 : 1);
+        if (dateGroup >= 0) {
+            previous = 0L;
+            for (LogResult result : block) {
+                final long timestamp = dateParser.parse(result.getValue(dateGroup));
+                buffer.writeSignedVarLong(timestamp - previous);
+                previous = timestamp;
+            }
+        }
+        // A result is written as the bounds of the values in the text, or the values if they are not in the text
+        for (LogResult result : block) {
+            buffer.writeByte(result.getPartCount() == columns && result.getBounds() != null ? ResultFile.BOUNDS : ResultFile.VALUES);
+        }
+        for (LogResult result : block) {
+            buffer.writeString(result.getText());
+        }
+        for (LogResult result : block) {
+            final int[] bounds = (result.getPartCount() == columns ? result.getBounds() : null);
+            if (bounds != null) {
+                int end = 0;
+                for (int i = 0; i < columns; i++) {
+                    buffer.writeSignedVarLong(bounds[i * 2] - end);
+                    buffer.writeVarInt(bounds[i * 2 + 1] - bounds[i * 2]);
+                    end = bounds[i * 2 + 1];
+                }
+            } else {
+                final List<LogRecordPart> parts = result.getFormatParts();
+                for (int i = 0; i < columns; i++) {
+                    if (!coded[i]) {
+                        buffer.writeString(i < parts.size() ? parts.get(i).getValue() : "");
+                    }
+                }
+            }
+        }
+        // The values of the columns shared between results are coded with a dictionary for the block
+        final String[] values = new String[size];
+        for (int column = 0; column < columns; column++) {
+            if (!coded[column]) {
+                continue;
+            }
+            final Map<String, Integer> codes = new HashMap<String, Integer>();
+            final List<String> dictionary = new ArrayList<String>();
+            for (int i = 0; i < size; i++) {
+                final LogResult result = block.get(i);
+                final String value = (column < result.getPartCount() ? result.getValue(column) : "");
+                values[i] = value;
+                if (!codes.containsKey(value)) {
+                    codes.put(value, dictionary.size());
+                    dictionary.add(value);
+                }
+            }
+            buffer.writeVarInt(dictionary.size());
+            for (String value : dictionary) {
+                buffer.writeString(value);
+            }
+            for (int i = 0; i < size; i++) {
+                buffer.writeVarInt(codes.get(values[i]));
+            }
+        }
+        deflater.reset();
+        deflater.setInput(buffer.array(), 0, buffer.length());
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+        out.write(compressed, 0, length);
+        index.add(new long[] {offset, length, buffer.length(), size});
+        offset += length;
+        recordCount += size;
+        block.clear();
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+
+/**
+ * Reads the lines of a file starting with the last line and working towards the first line.
+ * <p/>
+ * Lines are terminated with a {@code \n}, a trailing {@code \r} is removed from the line. A terminator at the end of
+ * the file does not start a new line, which is consistent with {@link java.io.BufferedReader#readLine()}.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+class ReverseLineReader implements Closeable {
+    private static final int BLOCK_SIZE = 8192;
+
+    private final RandomAccessFile file;
+    private final Charset charset;
+    private final byte[] buffer;
+    // The file offset of buffer[0]
+    private long bufferOffset;
+    // The bytes in the buffer [0, bufferEnd) have not been read
+    private int bufferEnd;
+    // The line currently being read is stored at the end of the array, [lineStart, line.length)
+    private byte[] line;
+    private int lineStart;
+    private long lineOffset;
+    private boolean done;
+
+    ReverseLineReader(final File file) throws IOException {
+        this(file, Charset.defaultCharset());
+    }
+
+    ReverseLineReader(final File file, final Charset charset) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        this.charset = charset;
+        buffer = new byte[BLOCK_SIZE];
+        line = new byte[256];
+        lineStart = line.length;
+        long end = this.file.length();
+        if (end > 0) {
+            this.file.seek(end - 1);
+            if (this.file.read() == '\n') {
+                end--;
+            }
+        } else {
+            done = true;
+        }
+        bufferOffset = end;
+        bufferEnd = 0;
+        lineOffset = end;
+    }
+
+    /**
+     * Reads the line before the previously read line.
+     *
+     * @return the line or {@code null} if the first line has already been read
+     *
+     * @throws IOException if an error occurs reading the file
+     */
+    String readLine() throws IOException {
+        if (done) {
+            return null;
+        }
+        while (true) {
+            if (bufferEnd == 0) {
+                if (bufferOffset == 0) {
+                    // Reached the start of the file, what remains is the first line
+                    done = true;
+                    lineOffset = 0;
+                    return takeLine();
+                }
+                final int len = (int) Math.min(buffer.length, bufferOffset);
+                bufferOffset -= len;
+                file.seek(bufferOffset);
+                file.readFully(buffer, 0, len);
+                bufferEnd = len;
+            }
+            int i = bufferEnd - 1;
+            while (i >= 0 && buffer[i] != '\n') {
+                i--;
+            }
+            prepend(i + 1, bufferEnd);
+            bufferEnd = (i < 0 ? 0 : i);
+            if (i >= 0) {
+                lineOffset = bufferOffset + i + 1;
+                return takeLine();
+            }
+        }
+    }
+
+    /**
+     * The file offset the last line read starts at.
+     *
+     * @return the offset of the last line read
+     */
+    long getLineOffset() {
+        return lineOffset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private void prepend(final int start, final int end) {
+        final int len = end - start;
+        if (len > lineStart) {
+            final int used = line.length - lineStart;
+            final byte[] newLine = new byte[Math.max(line.length * 2, used + len)];
+            System.arraycopy(line, lineStart, newLine, newLine.length - used, used);
+            lineStart = newLine.length - used;
+            line = newLine;
+        }
+        lineStart -= len;
+        System.arraycopy(buffer, start, line, lineStart, len);
+    }
+
+    private String takeLine() {
+        int end = line.length;
+        if (end > lineStart && line[end - 1] == '\r') {
+            end--;
+        }
+        final String result = new String(line, lineStart, end - lineStart, charset);
+        lineStart = line.length;
+        return result;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.util.AbstractCollection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A fixed capacity collection that keeps the last elements added. Once the capacity has been reached adding an element
+ * discards the oldest element.
+ * <p/>
+ * Iteration order is the order the elements were added in, oldest first.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+class RingBuffer<E> extends AbstractCollection<E> {
+    private final Object[] elements;
+    private int head;
+    private int size;
+    private int modCount;
+
+    RingBuffer(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity must be greater than 0: " + capacity);
+        }
+        elements = new Object[capacity];
+    }
+
+    @Override
+    public boolean add(final E e) {
+        final int capacity = elements.length;
+        if (size < capacity) {
+            elements[(head + size) % capacity] = e;
+            size++;
+        } else {
+            elements[head] = e;
+            head = (head + 1) % capacity;
+        }
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = null;
+        }
+        head = 0;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns {@code true} if adding another element would discard the oldest element.
+     *
+     * @return {@code true} if the buffer is full, otherwise {@code false}
+     */
+    boolean isFull() {
+        return size == elements.length;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private final int expectedModCount = modCount;
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (expectedModCount != modCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (index >= size) {
+                    throw new NoSuchElementException();
+                }
+                return (E) elements[(head + index++) % elements.length];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
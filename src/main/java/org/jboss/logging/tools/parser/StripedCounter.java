@@ -0,0 +1,107 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter spread over several cells so threads updating it at the same time rarely update the same cell. Each
+ * thread updates the cell picked by its id, the cells are padded apart so they are not on the same cache line. The
+ * value is the sum of the cells, which is not a snapshot if the counter is being updated.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+class StripedCounter {
+    /**
+     * The number of longs between cells, 64 bytes.
+     */
+    static final int PADDING = 8;
+
+    /**
+     * The number of cells, a power of two.
+     */
+    static final int STRIPES = stripes(Runtime.getRuntime().availableProcessors());
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    /**
+     * Adds one to the counter.
+     */
+    void increment() {
+        cells.getAndIncrement(cell());
+    }
+
+    /**
+     * Adds the value to the counter.
+     *
+     * @param value the value to add
+     */
+    void add(final long value) {
+        cells.getAndAdd(cell(), value);
+    }
+
+    /**
+     * The sum of the cells.
+     *
+     * @return the value of the counter
+     */
+    long sum() {
+        long result = 0L;
+        for (int i = 0; i < STRIPES; i++) {
+            result += cells.get(i * PADDING);
+        }
+        return result;
+    }
+
+    /**
+     * Sets the cells to zero. Updates made at the same time may be lost.
+     */
+    void reset() {
+        for (int i = 0; i < STRIPES; i++) {
+            cells.set(i * PADDING, 0L);
+        }
+    }
+
+    /**
+     * The stripe the current thread updates, between {@code 0} and {@link #STRIPES}.
+     *
+     * @return the stripe
+     */
+    static int stripe() {
+        final long id = Thread.currentThread().getId();
+        return (int) ((id ^ (id >>> 16)) & (STRIPES - 1));
+    }
+
+    private static int cell() {
+        return stripe() * PADDING;
+    }
+
+    private static int stripes(final int processors) {
+        // A power of two at least the number of processors, to keep the updates of threads on different processors apart
+        int result = 1;
+        while (result < processors && result < 64) {
+            result <<= 1;
+        }
+        return result;
+    }
+}
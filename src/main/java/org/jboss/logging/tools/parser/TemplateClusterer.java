@@ -0,0 +1,334 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Clusters messages into {@link LogTemplate templates} as they are parsed, using a fixed depth prefix tree like Drain.
+ * <p/>
+ * The first line of a message is split into tokens on spaces. Tokens that look variable, like numbers, ids and paths,
+ * are masked. The tree first selects on the number of tokens and then on the first tokens of the message, the
+ * message is then assigned to the most similar template in the leaf, the template with the most tokens equal to the
+ * tokens of the message. If no template is similar enough a new template is created, otherwise the tokens of the
+ * template that differ from the message become variables. Tokens that look like message ids, like {@code JBAS015876:},
+ * are not masked as they identify the template.
+ * <p/>
+ * A clusterer is not thread-safe.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class TemplateClusterer implements LogResultHandler {
+
+    /**
+     * The default depth of the tree, the number of tokens selected on plus two.
+     */
+    public static final int DEFAULT_DEPTH = 4;
+
+    /**
+     * The default similarity a message must have with a template to be assigned to it.
+     */
+    public static final double DEFAULT_SIMILARITY = 0.5;
+
+    /**
+     * The default maximum number of children of a node in the tree.
+     */
+    public static final int DEFAULT_MAX_CHILDREN = 100;
+
+    private final int messageGroup;
+    private final int depth;
+    private final double similarity;
+    private final int maxChildren;
+    private final Map<Integer, Node> lengths = new HashMap<Integer, Node>();
+    private final List<LogTemplate> templates = new ArrayList<LogTemplate>();
+
+    /**
+     * Creates a clusterer for the messages of results with the format.
+     *
+     * @param format the format of the results
+     *
+     * @throws IllegalArgumentException if the format has no message
+     */
+    public TemplateClusterer(final LogFormat format) {
+        this(format, DEFAULT_DEPTH, DEFAULT_SIMILARITY, DEFAULT_MAX_CHILDREN);
+    }
+
+    /**
+     * Creates a clusterer for the messages of results with the format.
+     *
+     * @param format      the format of the results, or {@code null} if only messages are {@link #encode(String)
+     *                    encoded}
+     * @param depth       the depth of the tree, at least 3
+     * @param similarity  the fraction of the tokens of a message that must equal the tokens of a template for the
+     *                    message to be assigned to the template
+     * @param maxChildren the maximum number of children of a node, further tokens are selected as variables
+     *
+     * @throws IllegalArgumentException if the format has no message
+     */
+    public TemplateClusterer(final LogFormat format, final int depth, final double similarity, final int maxChildren) {
+        if (depth < 3) {
+            throw new IllegalArgumentException("The depth must be at least 3");
+        }
+        this.depth = depth;
+        this.similarity = similarity;
+        this.maxChildren = maxChildren;
+        int messageGroup = -1;
+        if (format != null) {
+            final List<FormatPart> groups = format.getGroups();
+            for (int i = 0; i < groups.size() && messageGroup < 0; i++) {
+                final FormatType formatType = groups.get(i).getFormatType();
+                if (formatType == FormatType.MESSAGE || formatType == FormatType.SIMPLE_MESSAGE) {
+                    messageGroup = i;
+                }
+            }
+            if (messageGroup < 0) {
+                throw new IllegalArgumentException(String.format("The format %s does not contain a message", format.getFormatPattern()));
+            }
+        }
+        this.messageGroup = messageGroup;
+    }
+
+    @Override
+    public boolean handle(final LogResult result) {
+        encode(result.getValue(messageGroup));
+        return true;
+    }
+
+    /**
+     * Assigns the message to a template and encodes the message as the template and its parameters.
+     *
+     * @param message the message
+     *
+     * @return the encoded message
+     */
+    public TemplatedMessage encode(final String message) {
+        final int newLine = message.indexOf('\n');
+        final String firstLine = (newLine < 0 ? message : message.substring(0, newLine));
+        final String[] tokens = split(firstLine);
+        final LogTemplate template = assign(tokens);
+        template.increment();
+        final String[] templateTokens = template.getTokens();
+        int count = 0;
+        for (String token : templateTokens) {
+            if (token == LogTemplate.VARIABLE) {
+                count++;
+            }
+        }
+        final String[] parameters = new String[count];
+        count = 0;
+        for (int i = 0; i < templateTokens.length; i++) {
+            if (templateTokens[i] == LogTemplate.VARIABLE) {
+                parameters[count++] = tokens[i];
+            }
+        }
+        return new TemplatedMessage(template.getId(), templateTokens, parameters, (newLine < 0 ? null : message.substring(newLine + 1)));
+    }
+
+    /**
+     * The templates found, the template with the most messages first.
+     *
+     * @return the templates
+     */
+    public List<LogTemplate> getTemplates() {
+        final List<LogTemplate> result = new ArrayList<LogTemplate>(templates);
+        Collections.sort(result, new Comparator<LogTemplate>() {
+            @Override
+            public int compare(final LogTemplate o1, final LogTemplate o2) {
+                return (o1.getCount() == o2.getCount() ? 0 : (o1.getCount() > o2.getCount() ? -1 : 1));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns the template.
+     *
+     * @param id the id of the template
+     *
+     * @return the template or {@code null} if there is no template with the id
+     */
+    public LogTemplate getTemplate(final int id) {
+        return (id >= 0 && id < templates.size() ? templates.get(id) : null);
+    }
+
+    private LogTemplate assign(final String[] tokens) {
+        Node node = lengths.get(tokens.length);
+        if (node == null) {
+            node = new Node();
+            lengths.put(tokens.length, node);
+        }
+        // Select on the first tokens, variable tokens and tokens past the maximum number of children share a node
+        final int selected = Math.min(depth - 2, tokens.length);
+        for (int i = 0; i < selected; i++) {
+            final String token = tokens[i];
+            String key = (isVariable(token) ? LogTemplate.VARIABLE : token);
+            Node child = node.children.get(key);
+            if (child == null) {
+                if (key != LogTemplate.VARIABLE && node.children.size() >= maxChildren) {
+                    key = LogTemplate.VARIABLE;
+                    child = node.children.get(key);
+                }
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(key, child);
+                }
+            }
+            node = child;
+        }
+        // Assign the message to the most similar template, preferring the template with fewer variables
+        LogTemplate best = null;
+        int bestEqual = -1;
+        int bestVariables = 0;
+        for (LogTemplate template : node.templates) {
+            final String[] templateTokens = template.getTokens();
+            int equal = 0;
+            int variables = 0;
+            for (int i = 0; i < tokens.length; i++) {
+                if (templateTokens[i] == LogTemplate.VARIABLE) {
+                    variables++;
+                } else if (templateTokens[i].equals(tokens[i])) {
+                    equal++;
+                }
+            }
+            if (equal > bestEqual || (equal == bestEqual && variables < bestVariables)) {
+                best = template;
+                bestEqual = equal;
+                bestVariables = variables;
+            }
+        }
+        if (best != null && (tokens.length == 0 || bestEqual >= similarity * tokens.length)) {
+            generalize(best, tokens);
+            return best;
+        }
+        final String[] templateTokens = new String[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            templateTokens[i] = (isVariable(tokens[i]) ? LogTemplate.VARIABLE : tokens[i]);
+        }
+        final LogTemplate template = new LogTemplate(templates.size(), templateTokens);
+        templates.add(template);
+        node.templates.add(template);
+        return template;
+    }
+
+    private static void generalize(final LogTemplate template, final String[] tokens) {
+        final String[] templateTokens = template.getTokens();
+        String[] result = null;
+        for (int i = 0; i < tokens.length; i++) {
+            if (templateTokens[i] != LogTemplate.VARIABLE && !templateTokens[i].equals(tokens[i])) {
+                if (result == null) {
+                    result = templateTokens.clone();
+                }
+                result[i] = LogTemplate.VARIABLE;
+            }
+        }
+        if (result != null) {
+            template.setTokens(result);
+        }
+    }
+
+    /**
+     * Splits the line into tokens on each space, so the line is the tokens joined with a space.
+     *
+     * @param line the line
+     *
+     * @return the tokens
+     */
+    static String[] split(final String line) {
+        if (line.length() == 0) {
+            return new String[0];
+        }
+        int count = 1;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == ' ') {
+                count++;
+            }
+        }
+        final String[] result = new String[count];
+        int start = 0;
+        int index = 0;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == ' ') {
+                result[index++] = line.substring(start, i);
+                start = i + 1;
+            }
+        }
+        result[index] = line.substring(start);
+        return result;
+    }
+
+    /**
+     * Checks whether a token looks variable, a token with a digit that is not a message id or a path.
+     *
+     * @param token the token
+     *
+     * @return {@code true} if the token should be masked, otherwise {@code false}
+     */
+    static boolean isVariable(final String token) {
+        final int length = token.length();
+        if (length == 0) {
+            return false;
+        }
+        boolean digit = false;
+        for (int i = 0; i < length; i++) {
+            final char c = token.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digit = true;
+            } else if (c == '/' || c == '\\') {
+                return true;
+            }
+        }
+        return digit && !isMessageId(token);
+    }
+
+    /**
+     * Checks whether the token is a message id, upper case letters followed by digits and a colon.
+     */
+    private static boolean isMessageId(final String token) {
+        final int length = token.length();
+        if (token.charAt(length - 1) != ':') {
+            return false;
+        }
+        int i = 0;
+        while (i < length && token.charAt(i) >= 'A' && token.charAt(i) <= 'Z') {
+            i++;
+        }
+        if (i < 2) {
+            return false;
+        }
+        final int digits = i;
+        while (i < length && token.charAt(i) >= '0' && token.charAt(i) <= '9') {
+            i++;
+        }
+        return i - digits >= 3 && i == length - 1;
+    }
+
+    private static class Node {
+        private final Map<String, Node> children = new HashMap<String, Node>();
+        private final List<LogTemplate> templates = new ArrayList<LogTemplate>();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A message stored as the id of its {@link LogTemplate template} and the values of the variable tokens. The tokens of
+ * the template are shared by the messages encoded with the same version of the template, so a message only holds its
+ * parameters.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class TemplatedMessage {
+    private final int templateId;
+    private final String[] tokens;
+    private final String[] parameters;
+    // The lines following the first line of the message, which are not part of the template
+    private final String remainder;
+
+    TemplatedMessage(final int templateId, final String[] tokens, final String[] parameters, final String remainder) {
+        this.templateId = templateId;
+        this.tokens = tokens;
+        this.parameters = parameters;
+        this.remainder = remainder;
+    }
+
+    /**
+     * The id of the template of the message.
+     *
+     * @return the template id
+     */
+    public int getTemplateId() {
+        return templateId;
+    }
+
+    /**
+     * The values of the variable tokens of the template, in order.
+     *
+     * @return an unmodifiable list of the parameters
+     */
+    public List<String> getParameters() {
+        return Collections.unmodifiableList(Arrays.asList(parameters));
+    }
+
+    /**
+     * Returns the message.
+     *
+     * @return the message
+     */
+    public String getMessage() {
+        final StringBuilder result = new StringBuilder();
+        int parameter = 0;
+        for (int i = 0; i < tokens.length; i++) {
+            if (i > 0) {
+                result.append(' ');
+            }
+            result.append(tokens[i] == LogTemplate.VARIABLE ? parameters[parameter++] : tokens[i]);
+        }
+        if (remainder != null) {
+            result.append('\n').append(remainder);
+        }
+        return result.toString();
+    }
+
+    @Override
+    public String toString() {
+        return getMessage();
+    }
+}
@@ -0,0 +1,856 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * An inverted index of the words in the messages, exceptions and thread names of a log file, stored in a file next to
+ * the log file. A {@link Parser} uses the index to {@link Parser#search(TextIndex, String) search} for words and
+ * phrases by only reading the records that contain all the words.
+ * <p/>
+ * Each record is indexed by the byte offset of its first line. Each word is indexed under a term, the lower case word
+ * cut to {@value #MAX_TERM_LENGTH} characters, with the list of the records containing the term. The lists are read
+ * from the file when a query uses them.
+ * <p/>
+ * The index is extended when the log file grows. The last record of the log file may still be written so it is only
+ * indexed once the next record starts, the records after the indexed part are searched by parsing them. If the log
+ * file has been replaced, for example when it has been rotated, the index is rebuilt.
+ * <p/>
+ * The index file is a list of segments. An update appends a segment of the records it indexed, so the cost of an
+ * update is the size of the records added rather than the size of the index. A query reads the list of a term from
+ * each segment that contains the term. To keep the number of segments small, a segment is merged with the segments
+ * after it once they are at least half its size. The segments being merged are read into memory and written again in
+ * place of the old segments, so each record is written a number of times logarithmic in the number of records.
+ * <p/>
+ * An index is not thread-safe and should be {@link #close() closed} once it is no longer used.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class TextIndex implements Closeable {
+
+    /**
+     * The maximum length of a term, longer words are indexed under their first characters.
+     */
+    public static final int MAX_TERM_LENGTH = 64;
+
+    private static final int MAGIC = 0x4c505458;
+    private static final int VERSION = 2;
+    // The byte offset and the number of lines before each record
+    private static final int RECORD_SIZE = 12;
+    // The indexed length, line count, fingerprint, first record, record count, term count, records offset, dictionary
+    // offset and start of a segment followed by the magic
+    private static final int TRAILER_SIZE = 64;
+    // A segment is merged with the segments after it once they are at least half its size
+    private static final int MERGE_RATIO = 2;
+    private static final int[] NO_RECORDS = new int[0];
+    private static final Segment[] NO_SEGMENTS = new Segment[0];
+
+    private final File logFile;
+    private final File indexFile;
+    private final String formatPattern;
+    private RandomAccessFile file;
+    private long headerLength;
+    private long indexedLength;
+    private int lineCount;
+    private int fingerprintSize;
+    private long fingerprint;
+    private int recordCount;
+    private Segment[] segments = NO_SEGMENTS;
+
+    private TextIndex(final File logFile, final File indexFile, final String formatPattern) {
+        this.logFile = logFile;
+        this.indexFile = indexFile;
+        this.formatPattern = formatPattern;
+    }
+
+    /**
+     * Opens the index for the log file, creating or extending the index if required.
+     *
+     * @param logFile       the log file
+     * @param formatPattern the pattern the log file was written with
+     *
+     * @return the index
+     *
+     * @throws IOException if an error occurs reading the log file or reading or writing the index file
+     */
+    public static TextIndex open(final File logFile, final String formatPattern) throws IOException {
+        final File indexFile = getIndexFile(logFile);
+        TextIndex index = null;
+        if (indexFile.exists()) {
+            index = read(logFile, indexFile);
+            if (index != null && (!index.formatPattern.equals(formatPattern) || !index.isValid())) {
+                Parser.safeClose(index);
+                index = null;
+            }
+        }
+        if (index == null) {
+            index = new TextIndex(logFile, indexFile, formatPattern);
+        }
+        boolean ok = false;
+        try {
+            index.update();
+            ok = true;
+            return index;
+        } finally {
+            if (!ok) {
+                Parser.safeClose(index);
+            }
+        }
+    }
+
+    /**
+     * Returns the file the index for the log file is stored in.
+     *
+     * @param logFile the log file
+     *
+     * @return the index file
+     */
+    public static File getIndexFile(final File logFile) {
+        return new File(logFile.getPath() + ".tdx");
+    }
+
+    /**
+     * Indexes the records added to the log file since the index was last updated and writes the index file. Only the
+     * records followed by the first line of another record are indexed.
+     *
+     * @return {@code true} if the index was changed, otherwise {@code false}
+     *
+     * @throws IOException if an error occurs reading the log file or writing the index file
+     */
+    public boolean update() throws IOException {
+        if (!isValid()) {
+            clear();
+        }
+        final long end = LogIndex.lastLineEnd(logFile, indexedLength);
+        if (end <= indexedLength) {
+            return false;
+        }
+        final Parser parser = Parser.of(formatPattern);
+        final Builder builder = new Builder(fields(parser));
+        final RecordAssembler assembler = new RecordAssembler(builder);
+        final int lineBase = lineCount;
+        long pendingOffset = -1L;
+        int pendingLines = 0;
+        final MappedLineReader reader = new MappedLineReader(logFile, indexedLength, end, Charset.defaultCharset());
+        try {
+            CharSequence line;
+            while ((line = reader.readLine()) != null) {
+                final LogResult record = parser.parseRecord(lineBase + reader.getLineNumber(), line);
+                // The handler indexes the previous record under its offset before the offset is replaced
+                assembler.add(line, record);
+                if (record != null) {
+                    pendingOffset = reader.getLineOffset();
+                    pendingLines = lineBase + reader.getLineNumber() - 1;
+                    builder.offset = pendingOffset;
+                    builder.lines = pendingLines;
+                }
+            }
+            // The last record is indexed by the next update, once it is complete
+            if (pendingOffset < 0L) {
+                pendingOffset = end;
+                pendingLines = lineBase + reader.getLineNumber();
+            }
+        } finally {
+            Parser.safeClose(reader);
+        }
+        if (pendingOffset == indexedLength) {
+            return false;
+        }
+        indexedLength = pendingOffset;
+        lineCount = pendingLines;
+        fingerprintSize = (int) Math.min(LogIndex.FINGERPRINT_SIZE, indexedLength);
+        fingerprint = LogIndex.fingerprint(logFile, fingerprintSize);
+        write(builder);
+        return true;
+    }
+
+    /**
+     * The log file this index is for.
+     *
+     * @return the log file
+     */
+    public File getLogFile() {
+        return logFile;
+    }
+
+    /**
+     * The pattern the log file was written with.
+     *
+     * @return the format pattern
+     */
+    public String getFormatPattern() {
+        return formatPattern;
+    }
+
+    /**
+     * The number of bytes of the log file that have been indexed, which is the offset of the first record that has not
+     * been indexed.
+     *
+     * @return the indexed length
+     */
+    public long getIndexedLength() {
+        return indexedLength;
+    }
+
+    /**
+     * The number of lines that have been indexed.
+     *
+     * @return the number of lines
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * The number of records that have been indexed.
+     *
+     * @return the number of records
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * The number of distinct terms in the indexed records.
+     *
+     * @return the number of terms
+     */
+    public int getTermCount() {
+        if (segments.length == 1) {
+            return segments[0].terms.length;
+        }
+        final Set<String> result = new HashSet<String>();
+        for (Segment segment : segments) {
+            result.addAll(Arrays.asList(segment.terms));
+        }
+        return result.size();
+    }
+
+    /**
+     * The number of segments in the index file.
+     *
+     * @return the number of segments
+     */
+    int getSegmentCount() {
+        return segments.length;
+    }
+
+    /**
+     * Checks that the indexed part of the log file has not been changed, by checking the length and the first bytes of
+     * the log file.
+     *
+     * @return {@code true} if the index can be used for the log file, otherwise {@code false}
+     *
+     * @throws IOException if an error occurs reading the log file
+     */
+    public boolean isValid() throws IOException {
+        return logFile.length() >= indexedLength && LogIndex.fingerprint(logFile, fingerprintSize) == fingerprint;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (file != null) {
+            final RandomAccessFile current = file;
+            file = null;
+            current.close();
+        }
+    }
+
+    /**
+     * Finds the records that contain every term of the query. The records may not contain the words of the query in
+     * the same value or as a phrase.
+     *
+     * @param query the query
+     *
+     * @return the numbers of the records in order
+     *
+     * @throws IOException if an error occurs reading the index file
+     */
+    int[] find(final TextQuery query) throws IOException {
+        final Map<String, Integer> frequencies = new HashMap<String, Integer>();
+        for (String[] clause : query.getClauses()) {
+            for (String token : clause) {
+                final String term = TextQuery.term(token);
+                if (!frequencies.containsKey(term)) {
+                    final int frequency = frequency(term);
+                    if (frequency == 0) {
+                        return NO_RECORDS;
+                    }
+                    frequencies.put(term, frequency);
+                }
+            }
+        }
+        // Intersect the shortest lists first
+        final List<String> found = new ArrayList<String>(frequencies.keySet());
+        Collections.sort(found, new Comparator<String>() {
+            @Override
+            public int compare(final String o1, final String o2) {
+                final int f1 = frequencies.get(o1);
+                final int f2 = frequencies.get(o2);
+                return (f1 < f2 ? -1 : (f1 == f2 ? 0 : 1));
+            }
+        });
+        int[] result = null;
+        for (String term : found) {
+            final int[] records = readRecords(term, frequencies.get(term));
+            result = (result == null ? records : intersect(result, records));
+            if (result.length == 0) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The byte offset of the first line of the record.
+     *
+     * @param record the number of the record
+     *
+     * @return the offset in the log file
+     *
+     * @throws IOException if an error occurs reading the index file
+     */
+    long getOffset(final int record) throws IOException {
+        final byte[] bytes = readRecord(record);
+        long result = 0L;
+        for (int i = 0; i < 8; i++) {
+            result = (result << 8) | (bytes[i] & 0xFF);
+        }
+        return result;
+    }
+
+    /**
+     * The number of lines before the record.
+     *
+     * @param record the number of the record
+     *
+     * @return the number of lines
+     *
+     * @throws IOException if an error occurs reading the index file
+     */
+    int getLinesBefore(final int record) throws IOException {
+        final byte[] bytes = readRecord(record);
+        return ((bytes[8] & 0xFF) << 24) | ((bytes[9] & 0xFF) << 16) | ((bytes[10] & 0xFF) << 8) | (bytes[11] & 0xFF);
+    }
+
+    /**
+     * The indexes of the values that are indexed.
+     *
+     * @param parser the parser of the format
+     *
+     * @return the indexes of the format parts
+     */
+    static int[] fields(final Parser parser) {
+        final List<Integer> result = new ArrayList<Integer>();
+        for (int i = 0; i < parser.getGroupCount(); i++) {
+            switch (parser.getGroup(i).getFormatType()) {
+                case MESSAGE:
+                case SIMPLE_MESSAGE:
+                case EXCEPTION:
+                case EXCEPTION_EXTENDED:
+                case THREAD:
+                    result.add(i);
+                    break;
+            }
+        }
+        final int[] fields = new int[result.size()];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = result.get(i);
+        }
+        return fields;
+    }
+
+    /**
+     * Reads the index file.
+     *
+     * @param logFile   the log file the index is for
+     * @param indexFile the index file
+     *
+     * @return the index or {@code null} if the file is not an index file or was written by a different version
+     *
+     * @throws IOException if an error occurs opening the file
+     */
+    static TextIndex read(final File logFile, final File indexFile) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(indexFile, "r");
+        TextIndex index = null;
+        try {
+            if (raf.length() < 8 || raf.readInt() != MAGIC || raf.readInt() != VERSION) {
+                return null;
+            }
+            final TextIndex result = new TextIndex(logFile, indexFile, raf.readUTF());
+            result.headerLength = raf.getFilePointer();
+            // The segments are read from the last, each trailer has the start of its segment
+            final LinkedList<Segment> segments = new LinkedList<Segment>();
+            long end = raf.length();
+            while (end > result.headerLength) {
+                if (end - TRAILER_SIZE < result.headerLength) {
+                    return null;
+                }
+                raf.seek(end - TRAILER_SIZE);
+                final long indexedLength = raf.readLong();
+                final int lineCount = raf.readInt();
+                final int fingerprintSize = raf.readInt();
+                final long fingerprint = raf.readLong();
+                final int firstRecord = raf.readInt();
+                final int recordCount = raf.readInt();
+                final int termCount = raf.readInt();
+                final long recordsOffset = raf.readLong();
+                final long dictionaryOffset = raf.readLong();
+                final long start = raf.readLong();
+                if (raf.readInt() != MAGIC || start < result.headerLength || start >= end || recordsOffset < start
+                        || dictionaryOffset < recordsOffset + (long) recordCount * RECORD_SIZE || dictionaryOffset > end - TRAILER_SIZE) {
+                    return null;
+                }
+                if (segments.isEmpty()) {
+                    result.indexedLength = indexedLength;
+                    result.lineCount = lineCount;
+                    result.fingerprintSize = fingerprintSize;
+                    result.fingerprint = fingerprint;
+                    result.recordCount = firstRecord + recordCount;
+                } else if (firstRecord + recordCount != segments.getFirst().firstRecord) {
+                    return null;
+                }
+                segments.addFirst(result.readSegment(start, end, firstRecord, recordCount, recordsOffset, dictionaryOffset, termCount));
+                end = start;
+            }
+            if (!segments.isEmpty() && segments.getFirst().firstRecord != 0) {
+                return null;
+            }
+            result.segments = segments.toArray(new Segment[segments.size()]);
+            result.file = raf;
+            index = result;
+            return index;
+        } catch (IOException e) {
+            // A corrupt index is rebuilt
+            return null;
+        } finally {
+            if (index == null) {
+                Parser.safeClose(raf);
+            }
+        }
+    }
+
+    private Segment readSegment(final long start, final long end, final int firstRecord, final int recordCount,
+                                final long recordsOffset, final long dictionaryOffset, final int termCount) throws IOException {
+        final FileInputStream fis = new FileInputStream(indexFile);
+        try {
+            skipFully(fis, dictionaryOffset);
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(fis));
+            final String[] terms = new String[termCount];
+            final long[] offsets = new long[termCount];
+            final int[] lengths = new int[termCount];
+            final int[] frequencies = new int[termCount];
+            for (int i = 0; i < termCount; i++) {
+                terms[i] = in.readUTF();
+                offsets[i] = in.readLong();
+                lengths[i] = in.readInt();
+                frequencies[i] = in.readInt();
+                if (offsets[i] < recordsOffset || offsets[i] + lengths[i] > dictionaryOffset || (i > 0 && terms[i - 1].compareTo(terms[i]) >= 0)) {
+                    throw new IOException("Corrupt index segment");
+                }
+            }
+            return new Segment(start, end, firstRecord, recordCount, recordsOffset, terms, offsets, lengths, frequencies);
+        } finally {
+            Parser.safeClose(fis);
+        }
+    }
+
+    /**
+     * Writes the records of the builder as a new segment. The segments at the end of the file that are at most twice
+     * the size of the segments after them are merged with the new segment.
+     */
+    private void write(final Builder builder) throws IOException {
+        int first = segments.length;
+        long size = builder.size();
+        while (first > 0 && segments[first - 1].length() <= MERGE_RATIO * size) {
+            first--;
+            size += segments[first].length();
+        }
+        final long[] recordOffsets;
+        final int[] recordLines;
+        final Map<String, Postings> postings;
+        final int firstRecord = (first == segments.length ? recordCount : segments[first].firstRecord);
+        if (first == segments.length) {
+            recordOffsets = builder.offsets;
+            recordLines = builder.lineNumbers;
+            postings = new TreeMap<String, Postings>(builder.postings);
+        } else {
+            // Read the merged segments in order followed by the new records
+            final int count = recordCount + builder.count - firstRecord;
+            recordOffsets = new long[count];
+            recordLines = new int[count];
+            postings = new TreeMap<String, Postings>();
+            int n = 0;
+            for (int i = first; i < segments.length; i++) {
+                n = segments[i].readRecords(file, recordOffsets, recordLines, n);
+                for (int term = 0; term < segments[i].terms.length; term++) {
+                    final int[] records = segments[i].readList(file, term);
+                    add(postings, segments[i].terms[term], records, records.length);
+                }
+            }
+            System.arraycopy(builder.offsets, 0, recordOffsets, n, builder.count);
+            System.arraycopy(builder.lineNumbers, 0, recordLines, n, builder.count);
+            final int[] records = new int[builder.count];
+            for (Map.Entry<String, Postings> entry : builder.postings.entrySet()) {
+                add(postings, entry.getKey(), records, entry.getValue().read(records));
+            }
+        }
+        final int count = recordCount + builder.count - firstRecord;
+        final boolean append = file != null && first > 0;
+        final long start = (append ? (first < segments.length ? segments[first].start : segments[first - 1].end) : 0L);
+        // The old file must be closed before it can be replaced or truncated on some platforms
+        close();
+        final File target = (append ? indexFile : new File(indexFile.getPath() + ".tmp"));
+        if (append) {
+            final RandomAccessFile raf = new RandomAccessFile(indexFile, "rw");
+            try {
+                raf.setLength(start);
+            } finally {
+                raf.close();
+            }
+        }
+        final Segment segment;
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(target, append)));
+        try {
+            if (!append) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(formatPattern);
+                headerLength = out.size();
+            }
+            segment = writeSegment(out, append ? start : headerLength, firstRecord, count, recordOffsets, recordLines, postings);
+        } finally {
+            Parser.safeClose(out);
+        }
+        if (!append && !target.renameTo(indexFile)) {
+            indexFile.delete();
+            if (!target.renameTo(indexFile)) {
+                throw new IOException("Could not write index file " + indexFile);
+            }
+        }
+        final Segment[] result = Arrays.copyOf(segments, first + 1);
+        result[first] = segment;
+        segments = result;
+        recordCount = firstRecord + count;
+        file = new RandomAccessFile(indexFile, "r");
+    }
+
+    private Segment writeSegment(final DataOutputStream out, final long start, final int firstRecord, final int count,
+                                 final long[] recordOffsets, final int[] recordLines, final Map<String, Postings> postings) throws IOException {
+        final int base = out.size();
+        final long recordsOffset = start;
+        for (int i = 0; i < count; i++) {
+            out.writeLong(recordOffsets[i]);
+            out.writeInt(recordLines[i]);
+        }
+        final int termCount = postings.size();
+        final String[] terms = new String[termCount];
+        final long[] offsets = new long[termCount];
+        final int[] lengths = new int[termCount];
+        final int[] frequencies = new int[termCount];
+        int term = 0;
+        for (Map.Entry<String, Postings> entry : postings.entrySet()) {
+            final Postings list = entry.getValue();
+            terms[term] = entry.getKey();
+            offsets[term] = start + out.size() - base;
+            lengths[term] = list.bytes.length();
+            frequencies[term] = list.count;
+            out.write(list.bytes.array(), 0, list.bytes.length());
+            term++;
+        }
+        final long dictionaryOffset = start + out.size() - base;
+        for (int i = 0; i < termCount; i++) {
+            out.writeUTF(terms[i]);
+            out.writeLong(offsets[i]);
+            out.writeInt(lengths[i]);
+            out.writeInt(frequencies[i]);
+        }
+        out.writeLong(indexedLength);
+        out.writeInt(lineCount);
+        out.writeInt(fingerprintSize);
+        out.writeLong(fingerprint);
+        out.writeInt(firstRecord);
+        out.writeInt(count);
+        out.writeInt(termCount);
+        out.writeLong(recordsOffset);
+        out.writeLong(dictionaryOffset);
+        out.writeLong(start);
+        out.writeInt(MAGIC);
+        return new Segment(start, start + out.size() - base, firstRecord, count, recordsOffset, terms, offsets, lengths, frequencies);
+    }
+
+    private void clear() throws IOException {
+        close();
+        indexedLength = 0L;
+        lineCount = 0;
+        fingerprintSize = 0;
+        fingerprint = 0L;
+        recordCount = 0;
+        segments = NO_SEGMENTS;
+    }
+
+    private int frequency(final String term) {
+        int result = 0;
+        for (Segment segment : segments) {
+            final int index = Arrays.binarySearch(segment.terms, term);
+            if (index >= 0) {
+                result += segment.frequencies[index];
+            }
+        }
+        return result;
+    }
+
+    private byte[] readRecord(final int record) throws IOException {
+        int segment = segments.length - 1;
+        while (segments[segment].firstRecord > record) {
+            segment--;
+        }
+        final byte[] bytes = new byte[RECORD_SIZE];
+        file.seek(segments[segment].recordsOffset + (long) (record - segments[segment].firstRecord) * RECORD_SIZE);
+        file.readFully(bytes);
+        return bytes;
+    }
+
+    private int[] readRecords(final String term, final int frequency) throws IOException {
+        // The segments are in order, so the lists are too
+        final int[] result = new int[frequency];
+        int length = 0;
+        for (Segment segment : segments) {
+            final int index = Arrays.binarySearch(segment.terms, term);
+            if (index >= 0) {
+                final int[] records = segment.readList(file, index);
+                System.arraycopy(records, 0, result, length, records.length);
+                length += records.length;
+            }
+        }
+        return result;
+    }
+
+    private static void add(final Map<String, Postings> postings, final String term, final int[] records, final int length) {
+        Postings list = postings.get(term);
+        if (list == null) {
+            list = new Postings();
+            postings.put(term, list);
+        }
+        for (int i = 0; i < length; i++) {
+            list.add(records[i]);
+        }
+    }
+
+    private static int[] intersect(final int[] a, final int[] b) {
+        final int[] result = new int[Math.min(a.length, b.length)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[size++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static void skipFully(final FileInputStream in, final long n) throws IOException {
+        long remaining = n;
+        while (remaining > 0L) {
+            final long skipped = in.skip(remaining);
+            if (skipped <= 0L) {
+                throw new EOFException();
+            }
+            remaining -= skipped;
+        }
+    }
+
+    /**
+     * The records of a term in a segment, as the differences between the record numbers.
+     */
+    private static class Postings {
+        final BlockBuffer bytes = new BlockBuffer(8);
+        int count;
+        int last = -1;
+
+        void add(final int record) {
+            // A record is only added once
+            if (record != last) {
+                bytes.writeVarInt(record - last);
+                last = record;
+                count++;
+            }
+        }
+
+        int read(final int[] records) {
+            final BlockBuffer buffer = new BlockBuffer(bytes.array(), bytes.length());
+            int record = -1;
+            for (int i = 0; i < count; i++) {
+                record += buffer.readVarInt();
+                records[i] = record;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * A segment of the index file, the records indexed by an update or by merging segments.
+     */
+    private static class Segment {
+        final long start;
+        final long end;
+        final int firstRecord;
+        final int recordCount;
+        final long recordsOffset;
+        // The dictionary of terms in order, with the offset, length and number of records of each list
+        final String[] terms;
+        final long[] offsets;
+        final int[] lengths;
+        final int[] frequencies;
+
+        Segment(final long start, final long end, final int firstRecord, final int recordCount, final long recordsOffset,
+                final String[] terms, final long[] offsets, final int[] lengths, final int[] frequencies) {
+            this.start = start;
+            this.end = end;
+            this.firstRecord = firstRecord;
+            this.recordCount = recordCount;
+            this.recordsOffset = recordsOffset;
+            this.terms = terms;
+            this.offsets = offsets;
+            this.lengths = lengths;
+            this.frequencies = frequencies;
+        }
+
+        long length() {
+            return end - start;
+        }
+
+        int readRecords(final RandomAccessFile file, final long[] recordOffsets, final int[] recordLines, final int offset) throws IOException {
+            final byte[] bytes = new byte[recordCount * RECORD_SIZE];
+            file.seek(recordsOffset);
+            file.readFully(bytes);
+            final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            for (int i = 0; i < recordCount; i++) {
+                recordOffsets[offset + i] = in.readLong();
+                recordLines[offset + i] = in.readInt();
+            }
+            return offset + recordCount;
+        }
+
+        int[] readList(final RandomAccessFile file, final int term) throws IOException {
+            final byte[] bytes = new byte[lengths[term]];
+            file.seek(offsets[term]);
+            file.readFully(bytes);
+            final BlockBuffer buffer = new BlockBuffer(bytes, bytes.length);
+            final int[] result = new int[frequencies[term]];
+            int record = -1;
+            for (int i = 0; i < result.length; i++) {
+                record += buffer.readVarInt();
+                result[i] = record;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Indexes the records passed to it by a {@link RecordAssembler}, under the offset of the record's first line.
+     */
+    private class Builder implements LogResultHandler {
+        private final int[] fields;
+        private final Map<String, Postings> postings = new HashMap<String, Postings>();
+        private final List<String> tokens = new ArrayList<String>();
+        private long[] offsets = new long[64];
+        private int[] lineNumbers = new int[64];
+        private int count;
+        long offset;
+        int lines;
+
+        Builder(final int[] fields) {
+            this.fields = fields;
+        }
+
+        /**
+         * The approximate size of the segment of the records.
+         */
+        long size() {
+            long result = (long) count * RECORD_SIZE;
+            for (Map.Entry<String, Postings> entry : postings.entrySet()) {
+                // The list and the dictionary entry
+                result += entry.getValue().bytes.length() + entry.getKey().length() + 18;
+            }
+            return result;
+        }
+
+        @Override
+        public boolean handle(final LogResult result) {
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+                lineNumbers = Arrays.copyOf(lineNumbers, count * 2);
+            }
+            final int record = recordCount + count;
+            offsets[count] = offset;
+            lineNumbers[count] = lines;
+            count++;
+            for (int field : fields) {
+                TextQuery.tokenize(result.getValue(field), tokens);
+            }
+            for (String token : tokens) {
+                final String term = TextQuery.term(token);
+                Postings list = postings.get(term);
+                if (list == null) {
+                    list = new Postings();
+                    postings.put(term, list);
+                }
+                list.add(record);
+            }
+            tokens.clear();
+            return true;
+        }
+    }
+}
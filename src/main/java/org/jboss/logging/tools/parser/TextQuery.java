@@ -0,0 +1,164 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A query of a {@link TextIndex}. The query is a list of words and phrases in double quotes, a record matches if every
+ * word and phrase is found in one of the indexed values of the record.
+ * <p/>
+ * Words match whole words, ignoring case. A word is a run of letters and digits, so a term like {@code
+ * java.lang.IllegalStateException} or {@code 3f2a-bc91} is matched as the phrase of its words.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+class TextQuery {
+    private final List<String[]> clauses;
+
+    private TextQuery(final List<String[]> clauses) {
+        this.clauses = clauses;
+    }
+
+    /**
+     * Parses the query.
+     *
+     * @param query the words and phrases to find
+     *
+     * @return the query
+     *
+     * @throws IllegalArgumentException if the query has no words
+     */
+    static TextQuery parse(final String query) {
+        final List<String[]> clauses = new ArrayList<String[]>();
+        final List<String> tokens = new ArrayList<String>();
+        int i = 0;
+        while (i < query.length()) {
+            final char c = query.charAt(i);
+            int end;
+            if (c == '"') {
+                end = query.indexOf('"', i + 1);
+                if (end < 0) {
+                    end = query.length();
+                }
+                tokenize(query.substring(i + 1, end), tokens);
+                end++;
+            } else if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            } else {
+                end = i;
+                while (end < query.length() && !Character.isWhitespace(query.charAt(end)) && query.charAt(end) != '"') {
+                    end++;
+                }
+                tokenize(query.substring(i, end), tokens);
+            }
+            if (!tokens.isEmpty()) {
+                clauses.add(tokens.toArray(new String[tokens.size()]));
+                tokens.clear();
+            }
+            i = end;
+        }
+        if (clauses.isEmpty()) {
+            throw new IllegalArgumentException(String.format("The query '%s' has no words", query));
+        }
+        return new TextQuery(clauses);
+    }
+
+    /**
+     * The words of each word or phrase of the query.
+     *
+     * @return the clauses
+     */
+    List<String[]> getClauses() {
+        return clauses;
+    }
+
+    /**
+     * Checks the indexed values of the record for every word and phrase.
+     *
+     * @param result the record
+     * @param fields the indexes of the indexed values
+     *
+     * @return {@code true} if the record matches, otherwise {@code false}
+     */
+    boolean matches(final LogResult result, final int[] fields) {
+        final List<List<String>> values = new ArrayList<List<String>>(fields.length);
+        for (int field : fields) {
+            final List<String> tokens = new ArrayList<String>();
+            tokenize(result.getValue(field), tokens);
+            values.add(tokens);
+        }
+        for (String[] clause : clauses) {
+            final List<String> phrase = Arrays.asList(clause);
+            boolean found = false;
+            for (List<String> tokens : values) {
+                if (Collections.indexOfSubList(tokens, phrase) >= 0) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Splits the text into lower case words of letters and digits.
+     *
+     * @param text   the text
+     * @param tokens the list to add the words to
+     */
+    static void tokenize(final CharSequence text, final List<String> tokens) {
+        if (text == null) {
+            return;
+        }
+        final StringBuilder token = new StringBuilder();
+        final int length = text.length();
+        for (int i = 0; i <= length; i++) {
+            final char c = (i < length ? text.charAt(i) : ' ');
+            if (Character.isLetterOrDigit(c)) {
+                token.append(Character.toLowerCase(c));
+            } else if (token.length() > 0) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+    }
+
+    /**
+     * The term a word is indexed under, long words are cut short.
+     *
+     * @param token the word
+     *
+     * @return the term
+     */
+    static String term(final String token) {
+        return (token.length() > TextIndex.MAX_TERM_LENGTH ? token.substring(0, TextIndex.MAX_TERM_LENGTH) : token);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+/**
+ * A bounded dictionary of the values of the format types that only have a few distinct values, like the level or the
+ * category. Looking up a value that is in the dictionary returns the shared instance without creating a string.
+ * <p/>
+ * Each value maps to a single slot of the dictionary and replaces the value that was in the slot, so the size of the
+ * dictionary never grows and values that are no longer being logged are evicted. The dictionary may be used
+ * concurrently, a lookup that races with a replacement at worst creates another instance of the value.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+class ValueDictionary {
+
+    /**
+     * The default number of values in the dictionary.
+     */
+    static final int DEFAULT_SIZE = 1024;
+
+    // Longer values are unlikely to repeat
+    private static final int MAX_LENGTH = 256;
+
+    private final String[] values;
+    private final int mask;
+
+    /**
+     * Creates a new dictionary.
+     *
+     * @param size the maximum number of values, rounded up to a power of two
+     */
+    ValueDictionary(final int size) {
+        int capacity = 1;
+        while (capacity < size) {
+            capacity <<= 1;
+        }
+        values = new String[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Checks if the values of the format type are stored in the dictionary.
+     *
+     * @param formatType the format type
+     *
+     * @return {@code true} if the values are stored, otherwise {@code false}
+     */
+    static boolean isDictionaryType(final FormatType formatType) {
+        switch (formatType) {
+            case CATEGORY:
+            case CLASS_NAME:
+            case LEVEL:
+            case LOCALIZED_LEVEL:
+            case SOURCE_FILE_NAME:
+            case THREAD:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the value of the characters.
+     *
+     * @param chars the characters
+     * @param start the index of the first character of the value
+     * @param end   the index after the last character of the value
+     *
+     * @return the shared instance of the value
+     */
+    String get(final CharSequence chars, final int start, final int end) {
+        final int len = end - start;
+        if (len > MAX_LENGTH) {
+            return chars.subSequence(start, end).toString();
+        }
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + chars.charAt(i);
+        }
+        final int slot = (hash ^ (hash >>> 16)) & mask;
+        final String value = values[slot];
+        if (value != null && value.length() == len && matches(value, chars, start)) {
+            return value;
+        }
+        final String result = chars.subSequence(start, end).toString();
+        values[slot] = result;
+        return result;
+    }
+
+    private static boolean matches(final String value, final CharSequence chars, final int start) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) != chars.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
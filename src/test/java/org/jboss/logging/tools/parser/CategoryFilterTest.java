@@ -0,0 +1,135 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class CategoryFilterTest {
+    private static final FormatPart CATEGORY = new FormatPart(FormatType.CATEGORY, null, false, 0, 0);
+
+    @Test
+    public void testSingleCategory() {
+        final CategoryFilter filter = new CategoryFilter("org.jboss");
+        Assert.assertTrue(filter.accept(CATEGORY, "org.jboss"));
+        Assert.assertTrue(filter.accept(CATEGORY, "org.jboss.as.server"));
+        Assert.assertFalse(filter.accept(CATEGORY, "org.jbos"));
+        Assert.assertFalse(filter.accept(CATEGORY, "org.hibernate"));
+        Assert.assertFalse(filter.accept(CATEGORY, ""));
+    }
+
+    @Test
+    public void testLongestPrefix() {
+        final CategoryFilter filter = new CategoryFilter(Arrays.asList("org.jboss", "org.jboss.as.server.deployment"),
+                Arrays.asList("org.jboss.as", "org.jboss.as.server.deployment.scanner"));
+        Assert.assertTrue(filter.accept(CATEGORY, "org.jboss.modules"));
+        Assert.assertFalse(filter.accept(CATEGORY, "org.jboss.as.server"));
+        Assert.assertTrue(filter.accept(CATEGORY, "org.jboss.as.server.deployment"));
+        Assert.assertTrue(filter.accept(CATEGORY, "org.jboss.as.server.deployment.module"));
+        Assert.assertFalse(filter.accept(CATEGORY, "org.jboss.as.server.deployment.scanner.FileSystem"));
+        // Not matched by any prefix, there are included prefixes
+        Assert.assertFalse(filter.accept(CATEGORY, "com.arjuna"));
+    }
+
+    @Test
+    public void testExcludeWinsTie() {
+        final CategoryFilter filter = new CategoryFilter(Arrays.asList("org.jboss", "org.hibernate"), Arrays.asList("org.jboss"));
+        Assert.assertFalse(filter.accept(CATEGORY, "org.jboss"));
+        Assert.assertFalse(filter.accept(CATEGORY, "org.jboss.as"));
+        Assert.assertTrue(filter.accept(CATEGORY, "org.hibernate.SQL"));
+    }
+
+    @Test
+    public void testExcludesOnly() {
+        final CategoryFilter filter = new CategoryFilter(Collections.<String>emptySet(), Arrays.asList("org.jboss.jca", "com"));
+        Assert.assertTrue(filter.accept(CATEGORY, "org.jboss.as"));
+        Assert.assertTrue(filter.accept(CATEGORY, ""));
+        Assert.assertFalse(filter.accept(CATEGORY, "org.jboss.jca.core"));
+        Assert.assertFalse(filter.accept(CATEGORY, "com.arjuna"));
+    }
+
+    @Test
+    public void testEmptyPrefix() {
+        final CategoryFilter filter = new CategoryFilter(Arrays.asList(""), Arrays.asList("org.jboss"));
+        Assert.assertTrue(filter.accept(CATEGORY, "com.arjuna"));
+        Assert.assertTrue(filter.accept(CATEGORY, ""));
+        Assert.assertFalse(filter.accept(CATEGORY, "org.jboss.as"));
+    }
+
+    @Test
+    public void testRandomPrefixes() {
+        // Compare with checking every prefix
+        final Random random = new Random(42L);
+        for (int n = 0; n < 100; n++) {
+            final List<String> includes = randomCategories(random, random.nextInt(5));
+            final List<String> excludes = randomCategories(random, random.nextInt(5));
+            final CategoryFilter filter = new CategoryFilter(includes, excludes);
+            for (String category : randomCategories(random, 50)) {
+                Assert.assertEquals(filter.accept(CATEGORY, category), expected(includes, excludes, category),
+                        category + " " + includes + " " + excludes);
+            }
+        }
+    }
+
+    private static boolean expected(final Collection<String> includes, final Collection<String> excludes, final String category) {
+        int include = -1;
+        for (String prefix : includes) {
+            if (category.startsWith(prefix)) {
+                include = Math.max(include, prefix.length());
+            }
+        }
+        int exclude = -1;
+        for (String prefix : excludes) {
+            if (category.startsWith(prefix)) {
+                exclude = Math.max(exclude, prefix.length());
+            }
+        }
+        if (include < 0 && exclude < 0) {
+            return includes.isEmpty();
+        }
+        return include > exclude;
+    }
+
+    private static List<String> randomCategories(final Random random, final int count) {
+        final List<String> categories = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            final StringBuilder category = new StringBuilder();
+            final int len = random.nextInt(8);
+            for (int j = 0; j < len; j++) {
+                category.append("ab.".charAt(random.nextInt(3)));
+            }
+            categories.add(category.toString());
+        }
+        return categories;
+    }
+}
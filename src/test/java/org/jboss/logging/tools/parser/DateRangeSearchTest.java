@@ -0,0 +1,108 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class DateRangeSearchTest {
+    private File dir;
+    private File logFile;
+    private byte[] log;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        dir = TestFiles.createDirectory();
+        logFile = new File(dir, "server.log");
+        log = TestFiles.log();
+        TestFiles.write(logFile, log, 0, log.length, false);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        TestFiles.delete(dir);
+    }
+
+    @Test
+    public void testSameResults() throws Exception {
+        assertSameResults("04:46:08,000", "04:46:08,200");
+        assertSameResults("04:46:07,735", "04:46:07,800");
+        assertSameResults("04:46:08,600", "04:46:08,663");
+        assertSameResults("04:46:08,156", "04:46:08,156");
+        assertSameResults("00:00:00,000", "23:59:59,999");
+        assertSameResults("01:00:00,000", "02:00:00,000");
+        assertSameResults("05:00:00,000", "06:00:00,000");
+    }
+
+    @Test
+    public void testStart() throws Exception {
+        Assert.assertEquals(findStart("01:00:00,000", "02:00:00,000"), 0L);
+        Assert.assertEquals(findStart("04:46:07,000", "04:46:09,000"), 0L);
+        // Only the lines after the first line of the last record are left
+        final String text = new String(log, "UTF-8");
+        Assert.assertTrue(findStart("05:00:00,000", "06:00:00,000") > text.lastIndexOf("\n04:46:08,663 "));
+
+        // The start is the first line of the first record in the range
+        final long start = findStart("04:46:08,156", "04:46:09,000");
+        final RandomAccessFile raf = new RandomAccessFile(logFile, "r");
+        try {
+            raf.seek(start - 1);
+            Assert.assertEquals(raf.read(), '\n');
+            Assert.assertTrue(raf.readLine().startsWith("04:46:08,156 "));
+        } finally {
+            raf.close();
+        }
+        final String before = new String(log, 0, (int) start, "UTF-8");
+        Assert.assertFalse(before.contains("\n04:46:08,156 "));
+    }
+
+    private void assertSameResults(final String low, final String high) throws Exception {
+        final Parser parser = Parser.of(TestFiles.PATTERN);
+        parser.addFilter(filter(low, high));
+        final List<String> expected = TestFiles.keys(parser.parse(logFile));
+        parser.setDateOrdered(true);
+        Assert.assertEquals(TestFiles.keys(parser.parse(logFile)), expected, low + " - " + high);
+    }
+
+    private long findStart(final String low, final String high) throws Exception {
+        final FormatPart datePart = new FormatPart(FormatType.DATE, "HH:mm:ss,SSS", false, 0, 0);
+        return new DateRangeSearch(Parser.of(TestFiles.PATTERN), logFile, filter(low, high), datePart).findStart();
+    }
+
+    private static DateTimeFilter filter(final String low, final String high) throws ParseException {
+        final SimpleDateFormat format = new SimpleDateFormat("HH:mm:ss,SSS");
+        return new DateTimeFilter(format.parse(low), format.parse(high));
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class DateTimeFilterTest {
+
+    @Test
+    public void testFullDate() throws ParseException {
+        // Compared as strings
+        final FormatPart part = datePart("yyyy-MM-dd HH:mm:ss,SSS");
+        final DateTimeFilter filter = filter("2026-10-17 10:00:00,000", "2026-10-17 11:00:00,000");
+        Assert.assertTrue(filter.accept(part, "2026-10-17 10:00:00,000"));
+        Assert.assertTrue(filter.accept(part, "2026-10-17 10:30:00,123"));
+        Assert.assertTrue(filter.accept(part, "2026-10-17 11:00:00,000"));
+        Assert.assertFalse(filter.accept(part, "2026-10-17 09:59:59,999"));
+        Assert.assertFalse(filter.accept(part, "2026-10-17 11:00:00,001"));
+        Assert.assertFalse(filter.accept(part, "2026-10-16 10:30:00,000"));
+        Assert.assertFalse(filter.accept(part, "not a date"));
+    }
+
+    @Test
+    public void testDefaultPattern() throws ParseException {
+        final FormatPart part = new FormatPart(FormatType.DATE, null, false, 0, 0);
+        final DateTimeFilter filter = filter("2026-10-17 10:00:00,000", "2026-10-17 11:00:00,000");
+        Assert.assertTrue(filter.accept(part, "2026-10-17 10:30:00,000"));
+        Assert.assertFalse(filter.accept(part, "2026-10-17 12:30:00,000"));
+    }
+
+    @Test
+    public void testTimeOnly() throws ParseException {
+        // Only the time of the bounds is compared, the seconds are truncated to the precision of the pattern
+        final FormatPart part = datePart("HH:mm");
+        final DateTimeFilter filter = filter("2026-10-17 10:00:59,999", "2026-10-17 11:00:59,999");
+        Assert.assertTrue(filter.accept(part, "10:00"));
+        Assert.assertTrue(filter.accept(part, "10:30"));
+        Assert.assertTrue(filter.accept(part, "11:00"));
+        Assert.assertFalse(filter.accept(part, "09:59"));
+        Assert.assertFalse(filter.accept(part, "11:01"));
+    }
+
+    @Test
+    public void testParsedDates() throws ParseException {
+        // Month names can't be compared as strings
+        final FormatPart part = datePart("dd MMM yyyy HH:mm:ss");
+        final DateTimeFilter filter = filter("2026-02-01 00:00:00,000", "2026-03-31 23:59:59,000");
+        Assert.assertTrue(filter.accept(part, format("dd MMM yyyy HH:mm:ss", "2026-02-01 00:00:00,000")));
+        Assert.assertTrue(filter.accept(part, format("dd MMM yyyy HH:mm:ss", "2026-03-15 12:00:00,000")));
+        Assert.assertTrue(filter.accept(part, format("dd MMM yyyy HH:mm:ss", "2026-03-31 23:59:59,000")));
+        Assert.assertFalse(filter.accept(part, format("dd MMM yyyy HH:mm:ss", "2026-01-31 23:59:59,000")));
+        Assert.assertFalse(filter.accept(part, format("dd MMM yyyy HH:mm:ss", "2026-04-01 00:00:00,000")));
+        Assert.assertFalse(filter.accept(part, "garbage"));
+    }
+
+    @Test
+    public void testPatternChange() throws ParseException {
+        // The bounds are compiled again for a different pattern
+        final DateTimeFilter filter = filter("2026-10-17 10:00:00,000", "2026-10-17 11:00:00,000");
+        Assert.assertTrue(filter.accept(datePart("yyyy-MM-dd HH:mm:ss,SSS"), "2026-10-17 10:30:00,000"));
+        Assert.assertTrue(filter.accept(datePart("HH:mm:ss"), "10:30:00"));
+        Assert.assertFalse(filter.accept(datePart("yyyy-MM-dd HH:mm:ss,SSS"), "2026-10-18 10:30:00,000"));
+    }
+
+    private static FormatPart datePart(final String pattern) {
+        return new FormatPart(FormatType.DATE, pattern, false, 0, 0);
+    }
+
+    private static String format(final String pattern, final String date) throws ParseException {
+        return new SimpleDateFormat(pattern).format(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss,SSS").parse(date));
+    }
+
+    private static DateTimeFilter filter(final String low, final String high) throws ParseException {
+        final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss,SSS");
+        final Date lowDate = format.parse(low);
+        final Date hiDate = format.parse(high);
+        return new DateTimeFilter(lowDate, hiDate);
+    }
+}
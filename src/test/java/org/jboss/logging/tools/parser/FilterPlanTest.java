@@ -0,0 +1,152 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collection;
+
+import org.jboss.logmanager.Level;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class FilterPlanTest {
+    private static final int RECORDS = 864;
+    private static final int CONNECTION_CLOSED = 65;
+
+    /**
+     * A filter for values that are not in any format.
+     */
+    private static final Filter NOT_APPLICABLE = new Filter() {
+        @Override
+        public boolean accept(final FormatPart formatPart, final String value) {
+            throw new IllegalStateException("Not applicable");
+        }
+
+        @Override
+        public boolean allowType(final FormatType formatType) {
+            return false;
+        }
+    };
+
+    private byte[] log;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        log = TestFiles.log();
+    }
+
+    @Test
+    public void testAndOrder() throws IOException {
+        // Every record is TRACE, the level filter is cheaper and rejects them all before the message is checked
+        final CountingPatternFilter message = new CountingPatternFilter("connectionClosed");
+        final CountingLevelFilter level = new CountingLevelFilter(Level.ERROR);
+        Assert.assertTrue(parse(new AndFilter(message, level)).isEmpty());
+        Assert.assertEquals(level.count, RECORDS);
+        Assert.assertEquals(message.count, 0);
+    }
+
+    @Test
+    public void testOrOrder() throws IOException {
+        // The category filter is cheaper and accepts every record before the message is checked
+        final CountingPatternFilter message = new CountingPatternFilter("connectionClosed");
+        final CountingCategoryFilter category = new CountingCategoryFilter("org.jboss.jca");
+        Assert.assertEquals(parse(new OrFilter(message, category)).size(), RECORDS);
+        Assert.assertEquals(category.count, RECORDS);
+        Assert.assertEquals(message.count, 0);
+    }
+
+    @Test
+    public void testNot() throws IOException {
+        final MessageFilter message = new MessageFilter("connectionClosed");
+        Assert.assertEquals(parse(message).size(), CONNECTION_CLOSED);
+        Assert.assertEquals(parse(new NotFilter(message)).size(), RECORDS - CONNECTION_CLOSED);
+        Assert.assertEquals(parse(new NotFilter(new AndFilter(message, new LevelFilter(Level.TRACE)))).size(),
+                RECORDS - CONNECTION_CLOSED);
+    }
+
+    @Test
+    public void testNotApplicable() throws IOException {
+        final MessageFilter message = new MessageFilter("connectionClosed");
+        Assert.assertEquals(parse(NOT_APPLICABLE).size(), RECORDS);
+        Assert.assertEquals(parse(new AndFilter(message, NOT_APPLICABLE)).size(), CONNECTION_CLOSED);
+        Assert.assertEquals(parse(new OrFilter(message, NOT_APPLICABLE)).size(), RECORDS);
+        Assert.assertTrue(parse(new NotFilter(NOT_APPLICABLE)).isEmpty());
+        Assert.assertTrue(parse(new NotFilter(new OrFilter(message, NOT_APPLICABLE))).isEmpty());
+        Assert.assertEquals(parse(new NotFilter(new AndFilter(message, NOT_APPLICABLE))).size(),
+                RECORDS - CONNECTION_CLOSED);
+        Assert.assertEquals(parse(new AndFilter(message, new NotFilter(NOT_APPLICABLE))).size(), 0);
+    }
+
+    private Collection<LogResult> parse(final Filter filter) throws IOException {
+        final Parser parser = Parser.of(TestFiles.PATTERN);
+        parser.addFilter(filter);
+        return parser.parse(new ByteArrayInputStream(log));
+    }
+
+    private static class CountingPatternFilter extends MessagePatternFilter {
+        int count;
+
+        CountingPatternFilter(final String regex) {
+            super(regex);
+        }
+
+        @Override
+        public boolean accept(final FormatPart formatPart, final String value) {
+            count++;
+            return super.accept(formatPart, value);
+        }
+    }
+
+    private static class CountingLevelFilter extends LevelFilter {
+        int count;
+
+        CountingLevelFilter(final Level level) {
+            super(level);
+        }
+
+        @Override
+        public boolean accept(final FormatPart formatPart, final String value) {
+            count++;
+            return super.accept(formatPart, value);
+        }
+    }
+
+    private static class CountingCategoryFilter extends CategoryFilter {
+        int count;
+
+        CountingCategoryFilter(final String category) {
+            super(category);
+        }
+
+        @Override
+        public boolean accept(final FormatPart formatPart, final String value) {
+            count++;
+            return super.accept(formatPart, value);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class FormatTokenizerTest {
+
+    @Test
+    public void testLog() throws IOException {
+        final byte[] log = TestFiles.log();
+        final List<LogResult> expected = parse(TestFiles.PATTERN, log, false);
+        final List<LogResult> results = parse(TestFiles.PATTERN, log, true);
+        Assert.assertEquals(results.size(), 864);
+        Assert.assertEquals(results.size(), expected.size());
+        final Iterator<LogResult> iterator = expected.iterator();
+        for (LogResult result : results) {
+            final List<String> regexValues = values(iterator.next());
+            final List<String> values = values(result);
+            // The date, level and category are the same
+            Assert.assertEquals(values.subList(0, 3), regexValues.subList(0, 3));
+            // The regex takes the last ") " after the thread, the tokenizer the first
+            Assert.assertEquals(values.get(3) + ") " + values.get(4), regexValues.get(3) + ") " + regexValues.get(4));
+            Assert.assertFalse(values.get(3).contains(") "), values.get(3));
+        }
+    }
+
+    @Test
+    public void testSameValues() throws IOException {
+        final String log = "INFO  Server - Started in 5s\n" +
+                "not a record\n" +
+                "ERROR Deployer - Failed to deploy: [test.war] (missing module)\n" +
+                "DEBUG a.b.C - done\n";
+        assertSameValues("%-5p %c - %m%n", log, 3);
+        final String threads = "[main] 10:15:30  INFO: Starting\n" +
+                "[pool-1-thread-2] 10:15:31 ERROR: Stopped\n" +
+                "main] 10:15:32  INFO: no prefix\n";
+        assertSameValues("[%t] %d{HH:mm:ss} %5p: %m%n", threads, 2);
+    }
+
+    @Test
+    public void testFirstSeparator() throws IOException {
+        final byte[] log = "ERROR Deployer - Failed - missing module\n".getBytes("UTF-8");
+        final List<String> values = values(parse("%-5p %c - %m%n", log, true).get(0));
+        Assert.assertEquals(values.get(1), "Deployer");
+        Assert.assertEquals(values.get(2), "Failed - missing module");
+        // The greedy regex takes the last separator
+        final List<String> regexValues = values(parse("%-5p %c - %m%n", log, false).get(0));
+        Assert.assertEquals(regexValues.get(2), "missing module");
+    }
+
+    @Test
+    public void testMinimumDateWidth() {
+        Assert.assertEquals(FormatTokenizer.minimumDateWidth("HH:mm:ss,SSS"), 12);
+        Assert.assertEquals(FormatTokenizer.minimumDateWidth("yyyy-MM-dd 'at' HH:mm"), 19);
+    }
+
+    private static void assertSameValues(final String pattern, final String log, final int records) throws IOException {
+        final byte[] bytes = log.getBytes("UTF-8");
+        final List<LogResult> expected = parse(pattern, bytes, false);
+        final List<LogResult> results = parse(pattern, bytes, true);
+        Assert.assertEquals(results.size(), records);
+        Assert.assertEquals(results.size(), expected.size());
+        for (int i = 0; i < records; i++) {
+            Assert.assertEquals(results.get(i).getLineNumber(), expected.get(i).getLineNumber());
+            Assert.assertEquals(values(results.get(i)), values(expected.get(i)));
+        }
+    }
+
+    private static List<LogResult> parse(final String pattern, final byte[] log, final boolean useTokenizer) throws IOException {
+        final Parser parser = Parser.of(pattern);
+        if (useTokenizer) {
+            Assert.assertTrue(parser.isUseTokenizer(), pattern);
+        }
+        parser.setUseTokenizer(useTokenizer);
+        return new ArrayList<LogResult>(parser.parse(new ByteArrayInputStream(log)));
+    }
+
+    private static List<String> values(final LogResult result) {
+        final List<String> values = new ArrayList<String>();
+        for (LogRecordPart part : result) {
+            values.add(part.getValue());
+        }
+        return values;
+    }
+}
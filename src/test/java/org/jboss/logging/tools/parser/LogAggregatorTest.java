@@ -0,0 +1,175 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class LogAggregatorTest {
+    private File dir;
+    private byte[] log;
+    private LogFormat format;
+    private Map<String, Long> expected;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        dir = TestFiles.createDirectory();
+        log = TestFiles.log();
+        format = LogFormat.of(TestFiles.PATTERN);
+        // The records of the log in each category, counted from the parsed results
+        expected = new HashMap<String, Long>();
+        for (LogResult result : Parser.of(format).parse(new ByteArrayInputStream(log))) {
+            final String category = result.getValue(2);
+            final Long count = expected.get(category);
+            expected.put(category, (count == null ? 1L : count + 1L));
+        }
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        TestFiles.delete(dir);
+    }
+
+    @Test
+    public void testCounts() throws IOException {
+        final LogAggregator aggregator = new LogAggregator(format, 0L, 0, FormatType.CATEGORY);
+        Parser.of(format).parse(new ByteArrayInputStream(log), aggregator);
+        Assert.assertEquals(aggregator.getTotal(), 864L);
+        Assert.assertEquals(counts(aggregator.getGroups()), expected);
+        final List<LogAggregator.Group> top = aggregator.getTop(2);
+        Assert.assertEquals(top.size(), 2);
+        Assert.assertEquals(top.get(0).getValue(FormatType.CATEGORY), "org.jboss.jca.core.connectionmanager.listener.TxConnectionListener");
+        Assert.assertEquals(top.get(0).getCount(), 469L);
+        Assert.assertEquals(top.get(0).getError(), 0L);
+        Assert.assertEquals(top.get(0).getTime(), LogAggregator.NO_TIME);
+        Assert.assertEquals(top.get(1).getCount(), 202L);
+    }
+
+    @Test
+    public void testMerge() throws IOException {
+        // Each half of the log is counted separately and merged
+        final int half = recordStart(log.length / 2);
+        final LogAggregator first = new LogAggregator(format, 100L, 0, FormatType.CATEGORY, FormatType.THREAD);
+        final LogAggregator second = first.newAggregator();
+        Parser.of(format).parse(new ByteArrayInputStream(log, 0, half), first);
+        Parser.of(format).parse(new ByteArrayInputStream(log, half, log.length - half), second);
+        final LogAggregator all = first.newAggregator();
+        Parser.of(format).parse(new ByteArrayInputStream(log), all);
+
+        first.merge(second);
+        Assert.assertEquals(first.getTotal(), all.getTotal());
+        Assert.assertEquals(keys(first.getGroups()), keys(all.getGroups()));
+        long total = 0L;
+        for (LogAggregator.Group group : first.getGroups()) {
+            Assert.assertTrue(group.getTime() != LogAggregator.NO_TIME && group.getTime() % 100L == 0L, group.toString());
+            total += group.getCount();
+        }
+        Assert.assertEquals(total, all.getTotal());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testMergeDifferentGroups() {
+        new LogAggregator(format, 0L, 0, FormatType.CATEGORY).merge(new LogAggregator(format, 0L, 0, FormatType.THREAD));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testMissingGroup() {
+        new LogAggregator(format, 0L, 0, FormatType.NDC);
+    }
+
+    @Test
+    public void testAggregateFiles() throws IOException {
+        final int half = recordStart(log.length / 2);
+        final File first = new File(dir, "server.log.1");
+        final File second = new File(dir, "server.log");
+        TestFiles.write(first, log, 0, half, false);
+        TestFiles.write(second, log, half, log.length - half, false);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final LogAggregator aggregator = new LogAggregator(format, 0L, 0, FormatType.CATEGORY);
+            aggregator.aggregate(Parser.of(format), Arrays.asList(first, second), executor);
+            Assert.assertEquals(aggregator.getTotal(), 864L);
+            Assert.assertEquals(counts(aggregator.getGroups()), expected);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testMaxGroups() throws IOException {
+        // The counts of the groups kept are never under estimated and over estimated by at most the error
+        final LogAggregator aggregator = new LogAggregator(format, 0L, 3, FormatType.CATEGORY);
+        Parser.of(format).parse(new ByteArrayInputStream(log), aggregator);
+        final List<LogAggregator.Group> groups = aggregator.getTop(3);
+        Assert.assertEquals(groups.size(), 3);
+        Assert.assertEquals(groups.get(0).getValue(FormatType.CATEGORY), "org.jboss.jca.core.connectionmanager.listener.TxConnectionListener");
+        for (LogAggregator.Group group : groups) {
+            final long count = expected.get(group.getValue(FormatType.CATEGORY));
+            Assert.assertTrue(group.getCount() >= count, group.toString());
+            Assert.assertTrue(group.getCount() - group.getError() <= count, group.toString());
+        }
+    }
+
+    private int recordStart(final int offset) {
+        int i = offset;
+        while (!(log[i - 1] == '\n' && Character.isDigit(log[i]))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static Map<String, Long> counts(final List<LogAggregator.Group> groups) {
+        final Map<String, Long> counts = new HashMap<String, Long>();
+        for (LogAggregator.Group group : groups) {
+            counts.put(group.getValue(FormatType.CATEGORY), group.getCount());
+        }
+        return counts;
+    }
+
+    private static List<String> keys(final List<LogAggregator.Group> groups) {
+        final List<String> keys = new ArrayList<String>();
+        for (LogAggregator.Group group : groups) {
+            keys.add(group.getTime() + " " + group.getValues() + " " + group.getCount());
+        }
+        // Groups with the same time and count are in no particular order
+        Collections.sort(keys);
+        return keys;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class LogCodecsTest {
+    private File dir;
+    private File logFile;
+    private byte[] log;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        dir = TestFiles.createDirectory();
+        logFile = new File(dir, "server.log");
+        log = TestFiles.log();
+        TestFiles.write(logFile, log, 0, log.length, false);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        TestFiles.delete(dir);
+    }
+
+    @Test
+    public void testFind() throws IOException {
+        final File gzipFile = new File(dir, "server.log.gz");
+        final byte[] gzip = TestFiles.gzip(log, 0, log.length);
+        TestFiles.write(gzipFile, gzip, 0, gzip.length, false);
+        final File xorFile = writeXor();
+        final File emptyFile = new File(dir, "empty.log");
+        TestFiles.write(emptyFile, log, 0, 0, false);
+
+        Assert.assertNull(LogCodecs.find(LogCodecs.defaults(), logFile));
+        Assert.assertNull(LogCodecs.find(LogCodecs.defaults(), xorFile));
+        Assert.assertNull(LogCodecs.find(LogCodecs.defaults(), emptyFile));
+        Assert.assertSame(LogCodecs.find(LogCodecs.defaults(), gzipFile), GzipCodec.INSTANCE);
+
+        final XorCodec xor = new XorCodec();
+        final List<LogCodec> codecs = Arrays.asList(GzipCodec.INSTANCE, xor);
+        Assert.assertSame(LogCodecs.find(codecs, xorFile), xor);
+        Assert.assertSame(LogCodecs.find(codecs, gzipFile), GzipCodec.INSTANCE);
+        Assert.assertNull(LogCodecs.find(codecs, logFile));
+        Assert.assertNull(LogCodecs.find(Collections.<LogCodec>emptyList(), gzipFile));
+    }
+
+    @Test
+    public void testParse() throws IOException {
+        final File xorFile = writeXor();
+        final Parser parser = Parser.of(TestFiles.PATTERN);
+        final List<String> expected = TestFiles.keys(parser.parse(logFile));
+        Assert.assertFalse(expected.isEmpty());
+        parser.addCodec(new XorCodec());
+        Assert.assertEquals(TestFiles.keys(parser.parse(xorFile)), expected);
+        Assert.assertEquals(TestFiles.keys(parser.parse(logFile)), expected);
+    }
+
+    @Test
+    public void testGzipMembers() throws IOException {
+        // Every member is read, and the bytes following the last member are ignored
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final int size = log.length / 5;
+        for (int offset = 0; offset < log.length; offset += size) {
+            final byte[] member = TestFiles.gzip(log, offset, Math.min(size, log.length - offset));
+            out.write(member, 0, member.length);
+        }
+        final byte[] empty = TestFiles.gzip(log, 0, 0);
+        out.write(empty, 0, empty.length);
+        out.write(new byte[7], 0, 7);
+        final byte[] gzip = out.toByteArray();
+        final File gzipFile = new File(dir, "server.log.gz");
+        TestFiles.write(gzipFile, gzip, 0, gzip.length, false);
+
+        final Parser parser = Parser.of(TestFiles.PATTERN);
+        Assert.assertEquals(TestFiles.keys(parser.parse(gzipFile)), TestFiles.keys(parser.parse(logFile)));
+        Assert.assertEquals(read(GzipCodec.INSTANCE.decompress(new ByteArrayInputStream(gzip))), log);
+    }
+
+    private File writeXor() throws IOException {
+        final byte[] bytes = new byte[XorCodec.MAGIC.length + log.length];
+        System.arraycopy(XorCodec.MAGIC, 0, bytes, 0, XorCodec.MAGIC.length);
+        for (int i = 0; i < log.length; i++) {
+            bytes[XorCodec.MAGIC.length + i] = (byte) (log[i] ^ XorCodec.KEY);
+        }
+        final File file = new File(dir, "server.log.xor");
+        TestFiles.write(file, bytes, 0, bytes.length, false);
+        return file;
+    }
+
+    private static byte[] read(final InputStream in) throws IOException {
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int len;
+            while ((len = in.read(buffer)) > 0) {
+                out.write(buffer, 0, len);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * A codec that XORs every byte following a magic number with a key.
+     */
+    private static class XorCodec implements LogCodec {
+        static final byte[] MAGIC = {'X', 'O', 'R', '!'};
+        static final int KEY = 0x5A;
+
+        @Override
+        public boolean accept(final byte[] header, final int length) {
+            if (length < MAGIC.length) {
+                return false;
+            }
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (header[i] != MAGIC[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public InputStream decompress(final InputStream compressed) throws IOException {
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (compressed.read() != MAGIC[i]) {
+                    throw new IOException("Not an XOR file");
+                }
+            }
+            return new FilterInputStream(compressed) {
+                @Override
+                public int read() throws IOException {
+                    final int b = super.read();
+                    return b == -1 ? -1 : (b ^ KEY);
+                }
+
+                @Override
+                public int read(final byte[] b, final int off, final int len) throws IOException {
+                    final int n = super.read(b, off, len);
+                    for (int i = 0; i < n; i++) {
+                        b[off + i] ^= KEY;
+                    }
+                    return n;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class LogFollowerTest {
+    private File dir;
+    private File logFile;
+    private byte[] log;
+    private Parser parser;
+    private List<LogResult> results;
+    private LogFollower follower;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        dir = TestFiles.createDirectory();
+        logFile = new File(dir, "server.log");
+        log = TestFiles.log();
+        parser = Parser.of(TestFiles.PATTERN);
+        results = new ArrayList<LogResult>();
+        follower = new LogFollower(parser, logFile, new LogResultBatchHandler() {
+            @Override
+            public boolean handle(final List<LogResult> batch) {
+                synchronized (results) {
+                    return results.addAll(batch);
+                }
+            }
+        });
+        follower.setMaxLatency(0L);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        follower.close();
+        TestFiles.delete(dir);
+    }
+
+    @Test
+    public void testContinuationLines() throws IOException {
+        // Stop after the first line of a record, the rest of the record is appended later
+        final int cut = continuedRecord(log.length / 2);
+        TestFiles.write(logFile, log, 0, cut, false);
+        Assert.assertTrue(follower.poll());
+        Assert.assertTrue(follower.poll());
+        final List<String> expected = TestFiles.keys(parse(log, 0, log.length));
+        Assert.assertEquals(TestFiles.keys(results), expected.subList(0, results.size()));
+
+        TestFiles.write(logFile, log, cut, log.length - cut, true);
+        Assert.assertTrue(follower.poll());
+        // The last record is only complete once the file has been rotated or following ends
+        Assert.assertEquals(TestFiles.keys(results), expected.subList(0, expected.size() - 1));
+    }
+
+    @Test
+    public void testTruncation() throws IOException {
+        TestFiles.write(logFile, log, 0, log.length, false);
+        Assert.assertTrue(follower.poll());
+        final List<String> expected = TestFiles.keys(parse(log, 0, log.length));
+        Assert.assertEquals(TestFiles.keys(results), expected.subList(0, expected.size() - 1));
+
+        // The file is truncated and written again from the start
+        final int length = recordStart(log.length / 3);
+        TestFiles.write(logFile, log, 0, length, false);
+        Assert.assertTrue(follower.poll());
+        expected.addAll(TestFiles.keys(parse(log, 0, length)));
+        Assert.assertEquals(TestFiles.keys(results), expected.subList(0, expected.size() - 1));
+    }
+
+    @Test
+    public void testRotation() throws IOException {
+        TestFiles.write(logFile, log, 0, log.length / 2, false);
+        Assert.assertTrue(follower.poll());
+
+        // The rest of the file is written after the poll, then the file is renamed and replaced
+        TestFiles.write(logFile, log, log.length / 2, log.length - log.length / 2, true);
+        Assert.assertTrue(logFile.renameTo(new File(dir, "server.log.1")));
+        final int start = recordStart(log.length / 3);
+        TestFiles.write(logFile, log, start, log.length - start, false);
+        Assert.assertTrue(follower.poll());
+        final List<String> expected = TestFiles.keys(parse(log, 0, log.length));
+        expected.addAll(TestFiles.keys(parse(log, start, log.length - start)));
+        Assert.assertEquals(TestFiles.keys(results), expected.subList(0, expected.size() - 1));
+    }
+
+    @Test
+    public void testCloseWhileFollowing() throws Exception {
+        TestFiles.write(logFile, log, 0, log.length, false);
+        final int expected = parse(log, 0, log.length).size();
+        follower.setPollInterval(10L);
+        final CountDownLatch done = new CountDownLatch(1);
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    follower.follow();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    done.countDown();
+                }
+            }
+        });
+        thread.start();
+        final long end = System.currentTimeMillis() + 10000L;
+        while (size() < expected - 1 && System.currentTimeMillis() < end) {
+            Thread.sleep(10L);
+        }
+        Assert.assertEquals(size(), expected - 1);
+        follower.close();
+        Assert.assertTrue(done.await(10L, TimeUnit.SECONDS));
+        // The last record is passed once following ends
+        Assert.assertEquals(size(), expected);
+    }
+
+    private int size() {
+        synchronized (results) {
+            return results.size();
+        }
+    }
+
+    private List<LogResult> parse(final byte[] bytes, final int offset, final int length) throws IOException {
+        return new ArrayList<LogResult>(parser.parse(new ByteArrayInputStream(bytes, offset, length)));
+    }
+
+    /**
+     * The offset of the first record that starts at or after the offset.
+     */
+    private int recordStart(final int offset) {
+        int i = offset;
+        while (!(log[i - 1] == '\n' && Character.isDigit(log[i]))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * The offset after the first line of the first record with continuation lines that starts at or after the offset.
+     */
+    private int continuedRecord(final int offset) {
+        int start = recordStart(offset);
+        while (true) {
+            int next = start;
+            while (log[next++] != '\n') {
+                // find the end of the first line
+            }
+            if (!Character.isDigit(log[next])) {
+                return next;
+            }
+            start = next;
+        }
+    }
+}
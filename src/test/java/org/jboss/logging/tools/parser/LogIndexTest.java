@@ -0,0 +1,173 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+
+import org.jboss.logmanager.Level;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class LogIndexTest {
+    private File dir;
+    private File logFile;
+    private byte[] log;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        dir = TestFiles.createDirectory();
+        logFile = new File(dir, "server.log");
+        log = TestFiles.log();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        TestFiles.delete(dir);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        TestFiles.write(logFile, log, 0, log.length, false);
+        final LogIndex index = LogIndex.open(logFile, TestFiles.PATTERN);
+        Assert.assertTrue(LogIndex.getIndexFile(logFile).exists());
+        Assert.assertEquals(index.getIndexedLength(), log.length);
+        Assert.assertEquals(index.getLineCount(), lineCount(log.length));
+        assertSameResults(index);
+
+        final LogIndex read = LogIndex.read(logFile, LogIndex.getIndexFile(logFile));
+        Assert.assertNotNull(read);
+        Assert.assertEquals(read.getFormatPattern(), TestFiles.PATTERN);
+        Assert.assertEquals(read.getIndexedLength(), index.getIndexedLength());
+        Assert.assertEquals(read.getLineCount(), index.getLineCount());
+        Assert.assertTrue(read.isValid());
+        Assert.assertFalse(read.update());
+        assertSameResults(read);
+    }
+
+    @Test
+    public void testIncrementalUpdate() throws IOException {
+        // Cut the log in the middle of a line, only complete lines are indexed
+        final int cut = log.length / 2 + 17;
+        TestFiles.write(logFile, log, 0, cut, false);
+        final LogIndex index = LogIndex.open(logFile, TestFiles.PATTERN);
+        Assert.assertTrue(index.getIndexedLength() < cut);
+        Assert.assertEquals(index.getLineCount(), lineCount((int) index.getIndexedLength()));
+
+        TestFiles.write(logFile, log, cut, log.length - cut, true);
+        final LogIndex updated = LogIndex.open(logFile, TestFiles.PATTERN);
+        Assert.assertEquals(updated.getIndexedLength(), log.length);
+        Assert.assertEquals(updated.getLineCount(), lineCount(log.length));
+        assertSameResults(updated);
+    }
+
+    @Test
+    public void testCorruptFile() throws IOException {
+        TestFiles.write(logFile, log, 0, log.length, false);
+        final byte[] garbage = "not an index".getBytes("UTF-8");
+        TestFiles.write(LogIndex.getIndexFile(logFile), garbage, 0, garbage.length, false);
+        Assert.assertNull(LogIndex.read(logFile, LogIndex.getIndexFile(logFile)));
+
+        final LogIndex index = LogIndex.open(logFile, TestFiles.PATTERN);
+        Assert.assertEquals(index.getIndexedLength(), log.length);
+        assertSameResults(index);
+        Assert.assertNotNull(LogIndex.read(logFile, LogIndex.getIndexFile(logFile)));
+    }
+
+    @Test
+    public void testVersionMismatch() throws IOException {
+        TestFiles.write(logFile, log, 0, log.length, false);
+        LogIndex.open(logFile, TestFiles.PATTERN);
+        final File indexFile = LogIndex.getIndexFile(logFile);
+        final DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(new FileOutputStream(indexFile)));
+        try {
+            out.writeInt(0x4c504958);
+            out.writeInt(Integer.MAX_VALUE);
+        } finally {
+            out.close();
+        }
+        Assert.assertNull(LogIndex.read(logFile, indexFile));
+        assertSameResults(LogIndex.open(logFile, TestFiles.PATTERN));
+    }
+
+    @Test
+    public void testFormatMismatch() throws IOException {
+        TestFiles.write(logFile, log, 0, log.length, false);
+        LogIndex.open(logFile, "%d{HH:mm:ss,SSS} %-5p %s%n");
+        final LogIndex index = LogIndex.open(logFile, TestFiles.PATTERN);
+        Assert.assertEquals(index.getFormatPattern(), TestFiles.PATTERN);
+        assertSameResults(index);
+    }
+
+    @Test
+    public void testReplacedLog() throws IOException {
+        TestFiles.write(logFile, log, 0, log.length, false);
+        LogIndex.open(logFile, TestFiles.PATTERN);
+        // A rotated log starts with different lines
+        final int start = log.length / 3;
+        int lineStart = start;
+        while (log[lineStart - 1] != '\n') {
+            lineStart++;
+        }
+        TestFiles.write(logFile, log, lineStart, log.length - lineStart, false);
+        final LogIndex index = LogIndex.open(logFile, TestFiles.PATTERN);
+        Assert.assertEquals(index.getIndexedLength(), log.length - lineStart);
+        assertSameResults(index);
+    }
+
+    private void assertSameResults(final LogIndex index) throws IOException {
+        // All the records of the log are trace records
+        assertSameResults(index, new LevelFilter(Level.TRACE));
+        assertSameResults(index, new CategoryFilter("org.jboss.jca.core.connectionmanager.pool"));
+        assertSameResults(index, new NotFilter(new CategoryFilter("org.jboss.jca.core.connectionmanager.pool")));
+    }
+
+    private void assertSameResults(final LogIndex index, final Filter filter) throws IOException {
+        final Parser expected = Parser.of(TestFiles.PATTERN);
+        expected.addFilter(filter);
+        final List<String> keys = TestFiles.keys(expected.parse(logFile));
+        Assert.assertFalse(keys.isEmpty());
+        final Parser parser = Parser.of(TestFiles.PATTERN);
+        parser.addFilter(filter);
+        Assert.assertEquals(TestFiles.keys(parser.parse(index)), keys);
+    }
+
+    private int lineCount(final int length) {
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            if (log[i] == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+}
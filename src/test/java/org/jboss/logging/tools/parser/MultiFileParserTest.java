@@ -0,0 +1,171 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class MultiFileParserTest {
+    private File dir;
+    private byte[] log;
+    private ExecutorService executor;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        dir = TestFiles.createDirectory();
+        log = TestFiles.log();
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        executor.shutdownNow();
+        TestFiles.delete(dir);
+    }
+
+    @Test
+    public void testHasDateField() {
+        Assert.assertTrue(MultiFileParser.hasDateField("yyyy-MM-dd HH:mm:ss,SSS"));
+        Assert.assertTrue(MultiFileParser.hasDateField("dd HH:mm"));
+        Assert.assertFalse(MultiFileParser.hasDateField("HH:mm:ss,SSS"));
+        Assert.assertFalse(MultiFileParser.hasDateField("'day' HH:mm:ss"));
+    }
+
+    @Test
+    public void testRotatedDays() throws IOException {
+        // Both days have the same times, the time pattern has no day so the files can't be merged by date
+        final File yesterday = new File(dir, "server.log.2026-10-16");
+        final File today = new File(dir, "server.log");
+        TestFiles.write(yesterday, log, 0, log.length, false);
+        TestFiles.write(today, log, 0, log.length, false);
+        Assert.assertTrue(yesterday.setLastModified(today.lastModified() - 86400000L));
+
+        final Parser parser = Parser.of(TestFiles.PATTERN);
+        final List<LogResult> expected = new ArrayList<LogResult>(parser.parse(yesterday));
+        expected.addAll(parser.parse(today));
+        final Collection<LogResult> results = parser.parse(Arrays.asList(today, yesterday), executor);
+        Assert.assertEquals(TestFiles.keys(results), TestFiles.keys(expected));
+        int i = 0;
+        for (LogResult result : results) {
+            Assert.assertEquals(result.getSource(), (i++ < expected.size() / 2 ? yesterday : today));
+        }
+    }
+
+    @Test
+    public void testMergeByDate() throws IOException {
+        final File first = new File(dir, "server.log.1");
+        final File second = new File(dir, "server.log");
+        final byte[] firstLog = datedLog("2026-10-16 ");
+        final byte[] secondLog = datedLog("2026-10-17 ");
+        TestFiles.write(first, firstLog, 0, firstLog.length, false);
+        TestFiles.write(second, secondLog, 0, secondLog.length, false);
+
+        // Dates with a day are merged by date whatever the order of the files
+        final Parser parser = Parser.of("%d{yyyy-MM-dd HH:mm:ss,SSS} %-5p [%c] (%t) %s%E%n");
+        final List<LogResult> expected = new ArrayList<LogResult>(parser.parse(first));
+        expected.addAll(parser.parse(second));
+        Assert.assertEquals(TestFiles.keys(parser.parse(Arrays.asList(second, first), executor)), TestFiles.keys(expected));
+    }
+
+    @Test
+    public void testMaxResultsPerFile() throws IOException {
+        final File yesterday = new File(dir, "server.log.2026-10-16");
+        final File today = new File(dir, "server.log");
+        TestFiles.write(yesterday, log, 0, log.length, false);
+        TestFiles.write(today, log, 0, log.length, false);
+        Assert.assertTrue(yesterday.setLastModified(today.lastModified() - 86400000L));
+
+        final Parser parser = Parser.of(10, TestFiles.PATTERN);
+        final List<LogResult> expected = new ArrayList<LogResult>(parser.tail(yesterday));
+        expected.addAll(parser.tail(today));
+        Assert.assertEquals(expected.size(), 20);
+        final List<LogResult> handled = new ArrayList<LogResult>();
+        parser.parse(Arrays.asList(yesterday, today), executor, new LogResultHandler() {
+            @Override
+            public boolean handle(final LogResult result) {
+                return handled.add(result);
+            }
+        });
+        Assert.assertEquals(TestFiles.keys(handled), TestFiles.keys(expected));
+        Assert.assertEquals(TestFiles.keys(parser.parse(Arrays.asList(yesterday, today), executor)),
+                TestFiles.keys(expected.subList(10, 20)));
+    }
+
+    @Test
+    public void testDateRangeEnd() throws Exception {
+        // A record in the range is appended after the end of the range, the search stops before reading it
+        final File file = new File(dir, "server.log");
+        TestFiles.write(file, log, 0, log.length, false);
+        final String text = new String(log, "UTF-8");
+        final int start = text.indexOf("\n04:46:07,9") + 1;
+        final byte[] record = text.substring(start, text.indexOf('\n', start) + 1).getBytes("UTF-8");
+        TestFiles.write(file, record, 0, record.length, true);
+        final SimpleDateFormat format = new SimpleDateFormat("HH:mm:ss,SSS");
+        final Parser parser = Parser.of(TestFiles.PATTERN);
+        parser.addFilter(new DateTimeFilter(format.parse("04:46:07,800"), format.parse("04:46:08,000")));
+        parser.setDateOrdered(true);
+
+        final List<LogResult> expected = new ArrayList<LogResult>(parser.parse(file));
+        Assert.assertFalse(expected.isEmpty());
+        Assert.assertTrue(expected.get(expected.size() - 1).getLineNumber() <= lineCount(log));
+        final List<LogResult> results = new ArrayList<LogResult>();
+        final LogResultIterator iterator = parser.iterator(file);
+        try {
+            while (iterator.hasNext()) {
+                results.add(iterator.next());
+            }
+        } finally {
+            iterator.close();
+        }
+        Assert.assertEquals(TestFiles.keys(results), TestFiles.keys(expected));
+    }
+
+    private byte[] datedLog(final String day) throws IOException {
+        return new String(log, "UTF-8").replaceAll("(?m)^(\\d\\d:\\d\\d:\\d\\d,\\d{3} )", day + "$1").getBytes("UTF-8");
+    }
+
+    private static int lineCount(final byte[] bytes) {
+        int count = 0;
+        for (byte b : bytes) {
+            if (b == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+}
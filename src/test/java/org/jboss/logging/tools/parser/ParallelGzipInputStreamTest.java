@@ -0,0 +1,200 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class ParallelGzipInputStreamTest {
+    private static final int[] MEMBER_SIZES = {100, 30000, 1, 0, 2000, 45000, 700};
+
+    private File dir;
+    private File gzipFile;
+    private byte[] log;
+    private ExecutorService executor;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        dir = TestFiles.createDirectory();
+        gzipFile = new File(dir, "server.log.gz");
+        log = TestFiles.log();
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        executor.shutdownNow();
+        TestFiles.delete(dir);
+    }
+
+    @Test
+    public void testSingleMember() throws IOException {
+        final byte[] gzip = TestFiles.gzip(log, 0, log.length);
+        TestFiles.write(gzipFile, gzip, 0, gzip.length, false);
+        final ParallelGzipInputStream in = ParallelGzipInputStream.open(gzipFile, executor, 4);
+        if (in != null) {
+            Assert.assertEquals(read(in), log);
+        }
+        assertSameResults();
+    }
+
+    @Test
+    public void testMembers() throws IOException {
+        final byte[] gzip = members(log);
+        TestFiles.write(gzipFile, gzip, 0, gzip.length, false);
+        Assert.assertEquals(read(open(4, ParallelGzipInputStream.DEFAULT_MAX_MEMBER_SIZE)), log);
+        Assert.assertEquals(read(open(1, ParallelGzipInputStream.DEFAULT_MAX_MEMBER_SIZE)), log);
+        assertSameResults();
+    }
+
+    @Test
+    public void testFalseMagic() throws IOException {
+        // A member stored without compression contains a complete member, which is not a member of the file
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        content.write(log, 0, 1000);
+        final byte[] inner = TestFiles.gzip(log, 0, 2000);
+        content.write(inner, 0, inner.length);
+        content.write(log, 1000, 3000);
+        final byte[] stored = content.toByteArray();
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] first = TestFiles.gzip(log, 0, 500);
+        out.write(first, 0, first.length);
+        final GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.NO_COMPRESSION);
+            }
+        };
+        gzip.write(stored, 0, stored.length);
+        gzip.finish();
+        final byte[] last = TestFiles.gzip(log, 4000, 6000);
+        out.write(last, 0, last.length);
+        final byte[] bytes = out.toByteArray();
+        TestFiles.write(gzipFile, bytes, 0, bytes.length, false);
+        Assert.assertTrue(ParallelGzipInputStream.findMembers(ByteBuffer.wrap(bytes)).length > 3);
+
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(log, 0, 500);
+        expected.write(stored, 0, stored.length);
+        expected.write(log, 4000, 6000);
+        Assert.assertEquals(read(open(4, ParallelGzipInputStream.DEFAULT_MAX_MEMBER_SIZE)), expected.toByteArray());
+        Assert.assertEquals(read(open(4, 100)), expected.toByteArray());
+    }
+
+    @Test
+    public void testCorruptCrc() throws IOException {
+        // Corrupt the CRC of each member in turn, the members before it are read
+        final byte[] gzip = members(log);
+        int end = 0;
+        int length = 0;
+        for (int size : MEMBER_SIZES) {
+            end += TestFiles.gzip(log, length, size).length;
+            length += size;
+            final byte[] corrupt = gzip.clone();
+            corrupt[end - 8] ^= 1;
+            TestFiles.write(gzipFile, corrupt, 0, corrupt.length, false);
+            final ParallelGzipInputStream in = open(4, ParallelGzipInputStream.DEFAULT_MAX_MEMBER_SIZE);
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try {
+                copy(in, out);
+                Assert.fail("The corrupt CRC of the member ending at " + end + " was not found");
+            } catch (IOException expected) {
+                // The members before the corrupt member were read
+                Assert.assertTrue(out.size() >= length - size);
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    @Test
+    public void testLargeMembers() throws IOException {
+        // Members larger than the maximum size are inflated as they are read
+        final byte[] gzip = members(log);
+        TestFiles.write(gzipFile, gzip, 0, gzip.length, false);
+        Assert.assertEquals(read(open(4, 1024)), log);
+        Assert.assertEquals(read(open(2, 1)), log);
+    }
+
+    private ParallelGzipInputStream open(final int window, final int maxMemberSize) throws IOException {
+        final ParallelGzipInputStream in = ParallelGzipInputStream.open(gzipFile, executor, window, maxMemberSize);
+        Assert.assertNotNull(in);
+        return in;
+    }
+
+    private void assertSameResults() throws IOException {
+        final File logFile = new File(dir, "server.log");
+        TestFiles.write(logFile, log, 0, log.length, false);
+        final Parser parser = Parser.of(TestFiles.PATTERN);
+        Assert.assertEquals(TestFiles.keys(parser.parse(gzipFile, executor)), TestFiles.keys(parser.parse(logFile)));
+    }
+
+    /**
+     * Compresses the bytes as members of the sizes in {@link #MEMBER_SIZES}, the last member has the remaining bytes.
+     */
+    private static byte[] members(final byte[] bytes) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int offset = 0;
+        for (int size : MEMBER_SIZES) {
+            final byte[] member = TestFiles.gzip(bytes, offset, size);
+            out.write(member, 0, member.length);
+            offset += size;
+        }
+        final byte[] member = TestFiles.gzip(bytes, offset, bytes.length - offset);
+        out.write(member, 0, member.length);
+        return out.toByteArray();
+    }
+
+    private static byte[] read(final InputStream in) throws IOException {
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            copy(in, out);
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void copy(final InputStream in, final ByteArrayOutputStream out) throws IOException {
+        final byte[] buffer = new byte[8192];
+        int len;
+        while ((len = in.read(buffer)) > 0) {
+            out.write(buffer, 0, len);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class ParallelParserTest {
+    private File dir;
+    private File logFile;
+    private byte[] log;
+    private ExecutorService executor;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        dir = TestFiles.createDirectory();
+        logFile = new File(dir, "server.log");
+        log = TestFiles.log();
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        executor.shutdownNow();
+        TestFiles.delete(dir);
+    }
+
+    @Test
+    public void testChunkAlignment() throws IOException {
+        TestFiles.write(logFile, log, 0, log.length, false);
+        assertSameResults(log, 0);
+        assertSameResults(log, 10);
+    }
+
+    @Test
+    public void testNoTrailingNewLine() throws IOException {
+        TestFiles.write(logFile, log, 0, log.length - 1, false);
+        final byte[] bytes = new byte[log.length - 1];
+        System.arraycopy(log, 0, bytes, 0, bytes.length);
+        assertSameResults(bytes, 0);
+    }
+
+    @Test
+    public void testCarriageReturns() throws IOException {
+        final byte[] bytes = new String(log, "UTF-8").replace("\n", "\r\n").getBytes("UTF-8");
+        TestFiles.write(logFile, bytes, 0, bytes.length, false);
+        assertSameResults(bytes, 0);
+    }
+
+    private void assertSameResults(final byte[] bytes, final int maxResults) throws IOException {
+        final Parser parser = Parser.of(maxResults, TestFiles.PATTERN);
+        final List<String> expected = TestFiles.keys(parser.parse(new ByteArrayInputStream(bytes)));
+        Assert.assertFalse(expected.isEmpty());
+        // Chunks that end in the middle of a line, on a line boundary, one per line and one for the whole file
+        for (long chunkSize : new long[] {1L, 2L, 100L, 4096L, 7919L, bytes.length / 3, bytes.length, bytes.length * 2L}) {
+            final ParallelParser parallelParser = new ParallelParser(parser, logFile, maxResults, chunkSize);
+            Assert.assertEquals(TestFiles.keys(parallelParser.parse(executor)), expected, "chunk size " + chunkSize);
+        }
+    }
+}
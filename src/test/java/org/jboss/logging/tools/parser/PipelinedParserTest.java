@@ -0,0 +1,113 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class PipelinedParserTest {
+    private byte[] log;
+    private ExecutorService executor;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        log = TestFiles.log();
+        executor = Executors.newFixedThreadPool(3);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testSameResults() throws IOException {
+        final Parser parser = Parser.of(TestFiles.PATTERN);
+        final List<String> expected = TestFiles.keys(parser.parse(new ByteArrayInputStream(log)));
+        // Batches smaller than a line, of a few lines and of the whole stream
+        for (int batchSize : new int[] {64, 4096, 100000, log.length * 2}) {
+            for (int workers : new int[] {1, 3}) {
+                final PipelinedParser pipelinedParser = new PipelinedParser(parser, executor);
+                pipelinedParser.setBatchSize(batchSize);
+                pipelinedParser.setWorkers(workers);
+                pipelinedParser.setQueueCapacity(workers);
+                Assert.assertEquals(TestFiles.keys(pipelinedParser.parse(new ByteArrayInputStream(log))), expected,
+                        "batch size " + batchSize + ", workers " + workers);
+            }
+        }
+    }
+
+    @Test
+    public void testFilterAndMaxResults() throws IOException {
+        final Parser parser = Parser.of(10, TestFiles.PATTERN);
+        parser.addFilter(new MessageFilter("connectionClosed"));
+        final List<String> expected = TestFiles.keys(parser.parse(new ByteArrayInputStream(log)));
+        Assert.assertEquals(expected.size(), 10);
+        final PipelinedParser pipelinedParser = new PipelinedParser(parser, executor);
+        pipelinedParser.setBatchSize(4096);
+        Assert.assertEquals(TestFiles.keys(pipelinedParser.parse(new ByteArrayInputStream(log))), expected);
+    }
+
+    @Test
+    public void testHandlerStops() throws IOException {
+        final Parser parser = Parser.of(TestFiles.PATTERN);
+        final List<String> expected = TestFiles.keys(parser.parse(new ByteArrayInputStream(log))).subList(0, 100);
+        final PipelinedParser pipelinedParser = new PipelinedParser(parser, executor);
+        pipelinedParser.setBatchSize(4096);
+        final List<LogResult> results = new ArrayList<LogResult>();
+        pipelinedParser.parse(new ByteArrayInputStream(log), new LogResultHandler() {
+            @Override
+            public boolean handle(final LogResult result) {
+                results.add(result);
+                return results.size() < 100;
+            }
+        });
+        Assert.assertEquals(TestFiles.keys(results), expected);
+    }
+
+    @Test
+    public void testStats() throws IOException {
+        final Parser parser = Parser.of(TestFiles.PATTERN);
+        final PipelinedParser pipelinedParser = new PipelinedParser(parser, executor);
+        pipelinedParser.setBatchSize(4096);
+        final int results = pipelinedParser.parse(new ByteArrayInputStream(log)).size();
+        final PipelineStats stats = pipelinedParser.getStats();
+        Assert.assertEquals(stats.getBytesRead(), log.length);
+        Assert.assertEquals(stats.getResultsCollected(), results);
+        Assert.assertEquals(stats.getBatchesMatched(), stats.getBatchesRead());
+        Assert.assertTrue(stats.getBatchesRead() >= log.length / 4096);
+        Assert.assertTrue(stats.getMaxQueueDepth() <= pipelinedParser.getQueueCapacity());
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jboss.logmanager.Level;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class RecordAssemblerTest {
+    private static final String LOG = "continuation before the first record\n" +
+            "10:00:00,000 INFO  [a.b] (main) Starting\n" +
+            "10:00:01,000 ERROR [a.b] (main) Failed\n" +
+            "java.lang.IllegalStateException: boom\n" +
+            "\tat a.b.C.run(C.java:10)\n" +
+            "Caused by: java.io.IOException: io\n" +
+            "10:00:02,000 DEBUG [x.y] (main) Filtered\n" +
+            "continuation of a rejected record\n" +
+            "10:00:03,000 INFO  [a.b] (main) Last\n" +
+            "  trailing line\n";
+
+    @Test
+    public void testContinuationLines() throws IOException {
+        final Parser parser = Parser.of(TestFiles.PATTERN);
+        parser.addFilter(new LevelFilter(Level.INFO));
+        final List<LogResult> results = parse(parser);
+        Assert.assertEquals(results.size(), 3);
+
+        Assert.assertEquals(results.get(0).getLineNumber(), 2);
+        Assert.assertEquals(results.get(0).getText(), "10:00:00,000 INFO  [a.b] (main) Starting");
+
+        final LogResult error = results.get(1);
+        Assert.assertEquals(error.getLineNumber(), 3);
+        Assert.assertEquals(error.getText(), "10:00:01,000 ERROR [a.b] (main) Failed\n" +
+                "java.lang.IllegalStateException: boom\n" +
+                "\tat a.b.C.run(C.java:10)\n" +
+                "Caused by: java.io.IOException: io");
+        // The lines are added to the exception
+        Assert.assertEquals(value(error, FormatType.SIMPLE_MESSAGE), "Failed");
+        Assert.assertEquals(value(error, FormatType.EXCEPTION_EXTENDED), "java.lang.IllegalStateException: boom\n" +
+                "\tat a.b.C.run(C.java:10)\n" +
+                "Caused by: java.io.IOException: io");
+
+        // The last record is complete at the end of the stream
+        Assert.assertEquals(results.get(2).getLineNumber(), 9);
+        Assert.assertEquals(results.get(2).getText(), "10:00:03,000 INFO  [a.b] (main) Last\n  trailing line");
+    }
+
+    @Test
+    public void testMessageContinuation() throws IOException {
+        // Without an exception part the lines are added to the message
+        final Parser parser = Parser.of("%d{HH:mm:ss,SSS} %-5p [%c] (%t) %m%n");
+        final List<LogResult> results = parse(parser);
+        Assert.assertEquals(results.size(), 4);
+        Assert.assertEquals(value(results.get(2), FormatType.MESSAGE), "Filtered\ncontinuation of a rejected record");
+    }
+
+    @Test
+    public void testHandlerStops() throws IOException {
+        final List<LogResult> results = new ArrayList<LogResult>();
+        Parser.of(TestFiles.PATTERN).parse(new ByteArrayInputStream(LOG.getBytes("UTF-8")), new LogResultHandler() {
+            @Override
+            public boolean handle(final LogResult result) {
+                results.add(result);
+                return results.size() < 2;
+            }
+        });
+        Assert.assertEquals(results.size(), 2);
+        Assert.assertEquals(results.get(1).getLineNumber(), 3);
+        Assert.assertTrue(results.get(1).getText().endsWith("Caused by: java.io.IOException: io"));
+    }
+
+    @Test
+    public void testMaxResults() throws IOException {
+        final List<LogResult> results = parse(Parser.of(1, TestFiles.PATTERN));
+        Assert.assertEquals(results.size(), 1);
+        Assert.assertEquals(results.get(0).getText(), "10:00:03,000 INFO  [a.b] (main) Last\n  trailing line");
+    }
+
+    private static List<LogResult> parse(final Parser parser) throws IOException {
+        return new ArrayList<LogResult>(parser.parse(new ByteArrayInputStream(LOG.getBytes("UTF-8"))));
+    }
+
+    private static String value(final LogResult result, final FormatType formatType) {
+        for (LogRecordPart part : result) {
+            if (part.getFormatType() == formatType) {
+                return part.getValue();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class ResultFileTest {
+    private File dir;
+    private File logFile;
+    private File resultFile;
+    private Parser parser;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        dir = TestFiles.createDirectory();
+        logFile = new File(dir, "server.log");
+        resultFile = new File(dir, "server.jlrf");
+        final byte[] log = TestFiles.log();
+        TestFiles.write(logFile, log, 0, log.length, false);
+        parser = Parser.of(TestFiles.PATTERN);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        TestFiles.delete(dir);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        // Write the results several times so there is more than one block
+        final Collection<LogResult> parsed = parser.parse(logFile);
+        Assert.assertFalse(parsed.isEmpty());
+        final List<LogResult> expected = new ArrayList<LogResult>();
+        while (expected.size() <= ResultFile.BLOCK_SIZE * 2) {
+            expected.addAll(parsed);
+        }
+        final LogFormat format = LogFormat.of(TestFiles.PATTERN);
+        ResultFile.write(resultFile, format, expected);
+
+        final ResultFile results = ResultFile.open(resultFile);
+        try {
+            Assert.assertEquals(results.getFormat(), format);
+            assertSameResults(results, expected);
+        } finally {
+            results.close();
+        }
+    }
+
+    @Test
+    public void testWriteWhileParsing() throws IOException {
+        final ResultFileWriter writer = new ResultFileWriter(resultFile, LogFormat.of(TestFiles.PATTERN));
+        try {
+            parser.parse(logFile, writer);
+        } finally {
+            writer.close();
+        }
+        final ResultFile results = ResultFile.open(resultFile);
+        try {
+            assertSameResults(results, new ArrayList<LogResult>(parser.parse(logFile)));
+        } finally {
+            results.close();
+        }
+    }
+
+    @Test
+    public void testCorruptFile() throws IOException {
+        final byte[] garbage = "not a result file".getBytes("UTF-8");
+        TestFiles.write(resultFile, garbage, 0, garbage.length, false);
+        assertNotResultFile();
+
+        ResultFile.write(resultFile, LogFormat.of(TestFiles.PATTERN), parser.parse(logFile));
+        final RandomAccessFile raf = new RandomAccessFile(resultFile, "rw");
+        try {
+            raf.setLength(raf.length() - 1);
+        } finally {
+            raf.close();
+        }
+        assertNotResultFile();
+
+        // The blocks are only read when a result is requested
+        ResultFile.write(resultFile, LogFormat.of(TestFiles.PATTERN), parser.parse(logFile));
+        overwrite(resultFile.length() / 2, new byte[64]);
+        final ResultFile results = ResultFile.open(resultFile);
+        try {
+            results.get(0);
+            Assert.fail("The corrupt block was read");
+        } catch (IllegalStateException expected) {
+            Assert.assertTrue(expected.getCause() instanceof IOException);
+        } finally {
+            results.close();
+        }
+    }
+
+    @Test
+    public void testVersionMismatch() throws IOException {
+        ResultFile.write(resultFile, LogFormat.of(TestFiles.PATTERN), parser.parse(logFile));
+        overwrite(ResultFile.MAGIC.length, new byte[] {0, 0, 0, ResultFile.VERSION + 1});
+        try {
+            ResultFile.open(resultFile).close();
+            Assert.fail("A result file of an unsupported version was opened");
+        } catch (IOException expected) {
+            Assert.assertTrue(expected.getMessage().contains("version"), expected.getMessage());
+        }
+    }
+
+    private void assertSameResults(final ResultFile results, final List<LogResult> expected) {
+        Assert.assertEquals(results.size(), expected.size());
+        Assert.assertEquals(TestFiles.keys(results.getResults()), TestFiles.keys(expected));
+        final int dateGroup = dateGroup(results.getFormat());
+        final DateParser dateParser = new DateParser(results.getFormat().getGroups().get(dateGroup));
+        for (int i = 0; i < expected.size(); i++) {
+            final LogResult result = results.get(i);
+            final LogResult other = expected.get(i);
+            Assert.assertEquals(result.getFormatParts().size(), other.getFormatParts().size());
+            for (int part = 0; part < other.getFormatParts().size(); part++) {
+                Assert.assertEquals(result.getFormatParts().get(part).getFormatType(), other.getFormatParts().get(part).getFormatType());
+                Assert.assertEquals(result.getFormatParts().get(part).getValue(), other.getFormatParts().get(part).getValue());
+            }
+            for (int column = 0; column < results.getFormat().getGroups().size(); column++) {
+                Assert.assertEquals(results.getValue(i, column), other.getValue(column));
+            }
+            Assert.assertEquals(results.getTimestamp(i), dateParser.parse(other.getValue(dateGroup)));
+        }
+    }
+
+    private void assertNotResultFile() {
+        try {
+            ResultFile.open(resultFile).close();
+            Assert.fail("A corrupt result file was opened");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+
+    private void overwrite(final long position, final byte[] bytes) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(resultFile, "rw");
+        try {
+            raf.seek(position);
+            raf.write(bytes);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static int dateGroup(final LogFormat format) {
+        for (int i = 0; i < format.getGroups().size(); i++) {
+            if (format.getGroups().get(i).getFormatType() == FormatType.DATE) {
+                return i;
+            }
+        }
+        throw new AssertionError("The format has no date");
+    }
+}
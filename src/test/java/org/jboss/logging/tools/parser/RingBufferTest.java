@@ -0,0 +1,79 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class RingBufferTest {
+
+    @Test
+    public void testRetainsLast() {
+        final RingBuffer<Integer> buffer = new RingBuffer<Integer>(3);
+        Assert.assertTrue(buffer.isEmpty());
+        buffer.add(1);
+        buffer.add(2);
+        Assert.assertEquals(buffer.size(), 2);
+        Assert.assertFalse(buffer.isFull());
+        Assert.assertEquals(Arrays.asList(buffer.toArray()), Arrays.<Object>asList(1, 2));
+        for (int i = 3; i <= 10; i++) {
+            buffer.add(i);
+        }
+        Assert.assertEquals(buffer.size(), 3);
+        Assert.assertTrue(buffer.isFull());
+        Assert.assertEquals(Arrays.asList(buffer.toArray()), Arrays.<Object>asList(8, 9, 10));
+    }
+
+    @Test
+    public void testClear() {
+        final RingBuffer<Integer> buffer = new RingBuffer<Integer>(2);
+        buffer.add(1);
+        buffer.add(2);
+        buffer.add(3);
+        buffer.clear();
+        Assert.assertTrue(buffer.isEmpty());
+        buffer.add(4);
+        Assert.assertEquals(Arrays.asList(buffer.toArray()), Arrays.<Object>asList(4));
+    }
+
+    @Test(expectedExceptions = ConcurrentModificationException.class)
+    public void testConcurrentModification() {
+        final RingBuffer<Integer> buffer = new RingBuffer<Integer>(2);
+        buffer.add(1);
+        final Iterator<Integer> iterator = buffer.iterator();
+        buffer.add(2);
+        iterator.next();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new RingBuffer<Integer>(0);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class TailTest {
+    private File dir;
+    private File logFile;
+    private byte[] log;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        dir = TestFiles.createDirectory();
+        logFile = new File(dir, "server.log");
+        log = TestFiles.log();
+        TestFiles.write(logFile, log, 0, log.length, false);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        TestFiles.delete(dir);
+    }
+
+    @Test
+    public void testTail() throws IOException {
+        final List<String> all = TestFiles.keys(Parser.of(TestFiles.PATTERN).parse(new ByteArrayInputStream(log)));
+        for (int maxResults : new int[] {1, 10, 100, all.size(), all.size() + 10}) {
+            final Parser parser = Parser.of(maxResults, TestFiles.PATTERN);
+            final List<String> expected = all.subList(Math.max(0, all.size() - maxResults), all.size());
+            Assert.assertEquals(TestFiles.keys(parser.tail(logFile)), expected, "max results " + maxResults);
+            // Parsing the whole stream retains the same results
+            Assert.assertEquals(TestFiles.keys(parser.parse(new ByteArrayInputStream(log))), expected);
+        }
+    }
+
+    @Test
+    public void testReverseLines() throws IOException {
+        final byte[] bytes = "first\r\nsecond\n\nfourth".getBytes("UTF-8");
+        TestFiles.write(logFile, bytes, 0, bytes.length, false);
+        final ReverseLineReader reader = new ReverseLineReader(logFile);
+        final List<String> lines = new ArrayList<String>();
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        final List<String> expected = new ArrayList<String>();
+        expected.add("fourth");
+        expected.add("");
+        expected.add("second");
+        expected.add("first");
+        Assert.assertEquals(lines, expected);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Helpers shared by the tests, which parse copies of the {@code last-5000.txt} log.
+ *
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+final class TestFiles {
+
+    /**
+     * The pattern {@code last-5000.txt} was written with.
+     */
+    static final String PATTERN = "%d{HH:mm:ss,SSS} %-5p [%c] (%t) %s%E%n";
+
+    private TestFiles() {
+    }
+
+    /**
+     * Reads the {@code last-5000.txt} log.
+     *
+     * @return the bytes of the log
+     */
+    static byte[] log() throws IOException {
+        final InputStream in = TestFiles.class.getResourceAsStream("/last-5000.txt");
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int len;
+            while ((len = in.read(buffer)) > 0) {
+                out.write(buffer, 0, len);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes the bytes to the file.
+     *
+     * @param file   the file
+     * @param bytes  the bytes
+     * @param offset the offset of the first byte
+     * @param length the number of bytes
+     * @param append {@code true} to append to the file
+     */
+    static void write(final File file, final byte[] bytes, final int offset, final int length, final boolean append) throws IOException {
+        final FileOutputStream out = new FileOutputStream(file, append);
+        try {
+            out.write(bytes, offset, length);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Compresses the bytes as a single gzip member.
+     *
+     * @param bytes  the bytes
+     * @param offset the offset of the first byte
+     * @param length the number of bytes
+     *
+     * @return the gzip member
+     */
+    static byte[] gzip(final byte[] bytes, final int offset, final int length) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final GZIPOutputStream gzip = new GZIPOutputStream(out);
+        gzip.write(bytes, offset, length);
+        gzip.close();
+        return out.toByteArray();
+    }
+
+    /**
+     * Creates an empty directory.
+     *
+     * @return the directory
+     */
+    static File createDirectory() throws IOException {
+        final File dir = File.createTempFile("log-parser", ".test");
+        if (!dir.delete() || !dir.mkdir()) {
+            throw new IOException("Could not create directory " + dir);
+        }
+        return dir;
+    }
+
+    /**
+     * Deletes the directory and the files in it.
+     *
+     * @param dir the directory
+     */
+    static void delete(final File dir) {
+        final File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    delete(file);
+                } else {
+                    file.delete();
+                }
+            }
+        }
+        dir.delete();
+    }
+
+    /**
+     * The line number and text of each result, used to compare results.
+     *
+     * @param results the results
+     *
+     * @return the keys of the results
+     */
+    static List<String> keys(final Iterable<LogResult> results) {
+        final List<String> keys = new ArrayList<String>();
+        for (LogResult result : results) {
+            keys.add(result.getLineNumber() + ": " + result.getText());
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.logging.tools.parser;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * @author <a href="mailto:jperkins@redhat.com">James R. Perkins</a>
+ */
+public class TextIndexTest {
+    private static final String[] QUERIES = {
+            "connectionClosed",
+            "unregisterConnection handles",
+            "\"Returning connection to pool\"",
+            "HornetQ",
+            "OLAP \"Data Mining\"",
+            "default-workqueue-13",
+            "ActionStatus.RUNNING",
+            "notaword",
+    };
+
+    private File dir;
+    private File logFile;
+    private byte[] log;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        dir = TestFiles.createDirectory();
+        logFile = new File(dir, "server.log");
+        log = TestFiles.log();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        TestFiles.delete(dir);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        TestFiles.write(logFile, log, 0, log.length, false);
+        final TextIndex index = TextIndex.open(logFile, TestFiles.PATTERN);
+        try {
+            Assert.assertTrue(TextIndex.getIndexFile(logFile).exists());
+            Assert.assertEquals(index.getSegmentCount(), 1);
+            Assert.assertTrue(index.getRecordCount() > 0);
+            assertSameResults(index);
+        } finally {
+            index.close();
+        }
+
+        final TextIndex read = TextIndex.read(logFile, TextIndex.getIndexFile(logFile));
+        Assert.assertNotNull(read);
+        try {
+            Assert.assertEquals(read.getFormatPattern(), TestFiles.PATTERN);
+            Assert.assertEquals(read.getIndexedLength(), index.getIndexedLength());
+            Assert.assertEquals(read.getLineCount(), index.getLineCount());
+            Assert.assertEquals(read.getRecordCount(), index.getRecordCount());
+            Assert.assertEquals(read.getTermCount(), index.getTermCount());
+            Assert.assertTrue(read.isValid());
+            Assert.assertFalse(read.update());
+            assertSameResults(read);
+        } finally {
+            read.close();
+        }
+    }
+
+    @Test
+    public void testIncrementalUpdate() throws IOException {
+        // Append the log in pieces cut in the middle of lines, each update adds a segment or merges segments
+        final int pieces = 40;
+        final List<Integer> segmentCounts = new ArrayList<Integer>();
+        int written = 0;
+        TextIndex index = null;
+        try {
+            for (int piece = 1; piece <= pieces; piece++) {
+                final int end = (piece == pieces ? log.length : (int) ((long) log.length * piece / pieces) + 7);
+                TestFiles.write(logFile, log, written, end - written, written > 0);
+                written = end;
+                if (index == null) {
+                    index = TextIndex.open(logFile, TestFiles.PATTERN);
+                } else {
+                    index.update();
+                }
+                segmentCounts.add(index.getSegmentCount());
+                assertSameResults(index);
+            }
+        } finally {
+            Parser.safeClose(index);
+        }
+        // The segments are merged, so there are far fewer segments than updates
+        for (int count : segmentCounts) {
+            Assert.assertTrue(count <= 8, "Too many segments: " + segmentCounts);
+        }
+        Assert.assertTrue(segmentCounts.contains(2), "The segments were always merged: " + segmentCounts);
+
+        final TextIndex read = TextIndex.read(logFile, TextIndex.getIndexFile(logFile));
+        Assert.assertNotNull(read);
+        try {
+            Assert.assertEquals(read.getIndexedLength(), index.getIndexedLength());
+            Assert.assertEquals(read.getRecordCount(), index.getRecordCount());
+            Assert.assertEquals(read.getSegmentCount(), index.getSegmentCount());
+            assertSameResults(read);
+        } finally {
+            read.close();
+        }
+
+        // The same records are indexed as an index built at once
+        TextIndex.getIndexFile(logFile).delete();
+        final TextIndex full = TextIndex.open(logFile, TestFiles.PATTERN);
+        try {
+            Assert.assertEquals(full.getIndexedLength(), index.getIndexedLength());
+            Assert.assertEquals(full.getLineCount(), index.getLineCount());
+            Assert.assertEquals(full.getRecordCount(), index.getRecordCount());
+            Assert.assertEquals(full.getTermCount(), index.getTermCount());
+        } finally {
+            full.close();
+        }
+    }
+
+    @Test
+    public void testCorruptFile() throws IOException {
+        TestFiles.write(logFile, log, 0, log.length, false);
+        final File indexFile = TextIndex.getIndexFile(logFile);
+        final byte[] garbage = "not an index".getBytes("UTF-8");
+        TestFiles.write(indexFile, garbage, 0, garbage.length, false);
+        Assert.assertNull(TextIndex.read(logFile, indexFile));
+        assertRebuilt();
+
+        // A truncated index, for example when an update was interrupted
+        final RandomAccessFile raf = new RandomAccessFile(indexFile, "rw");
+        try {
+            raf.setLength(raf.length() - 1);
+        } finally {
+            raf.close();
+        }
+        Assert.assertNull(TextIndex.read(logFile, indexFile));
+        assertRebuilt();
+    }
+
+    @Test
+    public void testVersionMismatch() throws IOException {
+        TestFiles.write(logFile, log, 0, log.length, false);
+        final File indexFile = TextIndex.getIndexFile(logFile);
+        TextIndex.open(logFile, TestFiles.PATTERN).close();
+        final DataOutputStream out = new DataOutputStream(new FileOutputStream(indexFile));
+        try {
+            out.writeInt(0x4c505458);
+            out.writeInt(Integer.MAX_VALUE);
+            out.writeUTF(TestFiles.PATTERN);
+        } finally {
+            out.close();
+        }
+        Assert.assertNull(TextIndex.read(logFile, indexFile));
+        assertRebuilt();
+    }
+
+    private void assertRebuilt() throws IOException {
+        final TextIndex index = TextIndex.open(logFile, TestFiles.PATTERN);
+        try {
+            Assert.assertEquals(index.getIndexedLength(), TextIndex.read(logFile, TextIndex.getIndexFile(logFile)).getIndexedLength());
+            assertSameResults(index);
+        } finally {
+            index.close();
+        }
+    }
+
+    /**
+     * Compares the results of searching with the index to the results of a full parse filtered by the query.
+     */
+    private void assertSameResults(final TextIndex index) throws IOException {
+        final Parser parser = Parser.of(TestFiles.PATTERN);
+        final List<LogResult> all = new ArrayList<LogResult>(parser.parse(logFile));
+        final int[] fields = TextIndex.fields(parser);
+        boolean found = false;
+        for (String query : QUERIES) {
+            final TextQuery textQuery = TextQuery.parse(query);
+            final List<LogResult> expected = new ArrayList<LogResult>();
+            for (LogResult result : all) {
+                if (textQuery.matches(result, fields)) {
+                    expected.add(result);
+                }
+            }
+            found |= !expected.isEmpty();
+            Assert.assertEquals(TestFiles.keys(parser.search(index, query)), TestFiles.keys(expected), query);
+        }
+        Assert.assertTrue(found);
+    }
+}